@@ -0,0 +1,62 @@
+package com.dailyrecycling.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Prints ops/s and allocated bytes/op of a JMH JSON result next to a baseline result.
+ * Usage: BaselineComparison baseline.json result.json
+ */
+public class BaselineComparison {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BaselineComparison <baseline.json> <result.json>");
+            System.exit(2);
+        }
+        Map<String, double[]> baseline = read(new File(args[0]));
+        Map<String, double[]> result = read(new File(args[1]));
+
+        System.out.printf("%-58s %14s %14s %8s %12s %12s%n",
+                "Benchmark", "base ops/s", "ops/s", "change", "base B/op", "B/op");
+        for (Map.Entry<String, double[]> entry : result.entrySet()) {
+            double[] current = entry.getValue();
+            double[] base = baseline.get(entry.getKey());
+            if (base == null) {
+                System.out.printf("%-58s %14s %14.0f %8s %12s %12.0f%n",
+                        entry.getKey(), "-", current[0], "new", "-", current[1]);
+            } else {
+                System.out.printf("%-58s %14.0f %14.0f %+7.1f%% %12.0f %12.0f%n",
+                        entry.getKey(), base[0], current[0], 100 * (current[0] / base[0] - 1), base[1], current[1]);
+            }
+        }
+    }
+
+    /**
+     * Benchmark name with params → {score, gc.alloc.rate.norm or NaN}
+     */
+    private static Map<String, double[]> read(File file) throws IOException {
+        Map<String, double[]> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            StringBuilder name = new StringBuilder(run.get("benchmark").asText()
+                    .replace("com.dailyrecycling.benchmark.", ""));
+            JsonNode params = run.get("params");
+            if (params != null) {
+                params.fields().forEachRemaining(param ->
+                        name.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+            }
+            JsonNode secondary = run.path("secondaryMetrics");
+            JsonNode allocation = secondary.has("gc.alloc.rate.norm")
+                    ? secondary.get("gc.alloc.rate.norm") : secondary.get("·gc.alloc.rate.norm");
+            scores.put(name.toString(), new double[]{
+                    run.path("primaryMetric").path("score").asDouble(),
+                    allocation != null ? allocation.path("score").asDouble() : Double.NaN});
+        }
+        return scores;
+    }
+}
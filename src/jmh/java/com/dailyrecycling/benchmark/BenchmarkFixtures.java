@@ -0,0 +1,194 @@
+package com.dailyrecycling.benchmark;
+
+import com.dailyrecycling.model.ActorAddress;
+import com.dailyrecycling.model.GrossAmount;
+import com.dailyrecycling.model.PolicyEnrichment;
+import com.dailyrecycling.model.PolicyField;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.DatabaseService;
+import com.dailyrecycling.service.EmailService;
+import com.dailyrecycling.service.ErrorCorrectionService;
+import com.dailyrecycling.service.FixedWidthParser;
+import com.dailyrecycling.service.RecordLayout;
+import com.dailyrecycling.service.ReferenceDataDao;
+import com.dailyrecycling.service.rule.AddressFieldsRule;
+import com.dailyrecycling.service.rule.BcuNumberRule;
+import com.dailyrecycling.service.rule.CorrectionRuleRegistry;
+import com.dailyrecycling.service.rule.CountryCodeRule;
+import com.dailyrecycling.service.rule.DurationExceedsRule;
+import com.dailyrecycling.service.rule.FinancingTypeRule;
+import com.dailyrecycling.service.rule.GrossAmountZeroRule;
+import com.dailyrecycling.service.rule.StartDateEndDateRule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.util.ReflectionUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Services wired by hand for the benchmarks, with the database and mail stubbed out
+ */
+final class BenchmarkFixtures {
+
+    static final int MIN_RECORD_LENGTH = 4060;
+
+    private BenchmarkFixtures() {
+    }
+
+    static RecordLayout layout() {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream("/record-layout.csv")) {
+            return RecordLayout.load(in, MIN_RECORD_LENGTH);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static FixedWidthParser parser(RecordLayout layout) {
+        FixedWidthParser parser = new FixedWidthParser();
+        inject(parser, "recordLayout", layout);
+        Method init = ReflectionUtils.findMethod(FixedWidthParser.class, "init");
+        ReflectionUtils.makeAccessible(init);
+        ReflectionUtils.invokeMethod(init, parser);
+        return parser;
+    }
+
+    static ErrorCorrectionService correctionService() {
+        EmailService emailService = new StubEmailService();
+        BcuNumberRule bcuNumberRule = new BcuNumberRule();
+        inject(bcuNumberRule, "emailService", emailService);
+        inject(bcuNumberRule, "recordLayout", layout());
+        initialize(bcuNumberRule);
+        DurationExceedsRule durationExceedsRule = new DurationExceedsRule();
+        inject(durationExceedsRule, "emailService", emailService);
+        CountryCodeRule countryCodeRule = new CountryCodeRule();
+        inject(countryCodeRule, "recordLayout", layout());
+        inject(countryCodeRule, "defaultCountryCode", "FR");
+        initialize(countryCodeRule);
+
+        CorrectionRuleRegistry ruleRegistry = new CorrectionRuleRegistry();
+        inject(ruleRegistry, "correctionRules", Arrays.asList(new StartDateEndDateRule(), new GrossAmountZeroRule(),
+                new FinancingTypeRule(), new AddressFieldsRule(), bcuNumberRule, countryCodeRule, durationExceedsRule));
+        inject(ruleRegistry, "meterRegistry", new SimpleMeterRegistry());
+        Method init = ReflectionUtils.findMethod(CorrectionRuleRegistry.class, "init");
+        ReflectionUtils.makeAccessible(init);
+        ReflectionUtils.invokeMethod(init, ruleRegistry);
+
+        ErrorCorrectionService service = new ErrorCorrectionService();
+        inject(service, "databaseService", new StubDatabaseService());
+        inject(service, "ruleRegistry", ruleRegistry);
+        return service;
+    }
+
+    /**
+     * DAO without query timeouts: H2 applies them with an extra statement per query
+     */
+    static ReferenceDataDao referenceDataDao(DataSource dataSource) {
+        ReferenceDataDao dao = new ReferenceDataDao();
+        inject(dao, "dataSource", dataSource);
+        inject(dao, "meterRegistry", new SimpleMeterRegistry());
+        inject(dao, "queryTimeout", Duration.ZERO);
+        inject(dao, "bulkQueryTimeout", Duration.ZERO);
+        Method init = ReflectionUtils.findMethod(ReferenceDataDao.class, "init");
+        ReflectionUtils.makeAccessible(init);
+        ReflectionUtils.invokeMethod(init, dao);
+        return dao;
+    }
+
+    /**
+     * Run the @PostConstruct init method the way Spring would
+     */
+    private static void initialize(Object target) {
+        Method init = ReflectionUtils.findMethod(target.getClass(), "init");
+        ReflectionUtils.makeAccessible(init);
+        ReflectionUtils.invokeMethod(init, target);
+    }
+
+    /**
+     * Set an @Autowired field the way Spring would
+     */
+    private static void inject(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+
+    static PolicyEnrichment enrichment(String policyNumber) {
+        ActorAddress address = new ActorAddress("1 RUE DE PARIS", "APT 3", "LYON", "69001");
+        return new PolicyEnrichment(policyNumber, 42L, address, null, GrossAmount.of(0.0));
+    }
+
+    /**
+     * Detached copy of a parsed record, so each operation corrects pristine values
+     */
+    static PolicyRecord copy(PolicyRecord source) {
+        PolicyRecord copy = new PolicyRecord();
+        for (PolicyField field : PolicyField.values()) {
+            field.set(copy, field.get(source));
+        }
+        copy.setRawRecord(source.getRawRecord());
+        return copy;
+    }
+
+    /**
+     * Answers every lookup from memory: actor 42 with an address, no BCU number, gross amount 0
+     */
+    static final class StubDatabaseService extends DatabaseService {
+
+        @Override
+        public Long getActorIdByPolicyNumber(String policyNumber) {
+            return 42L;
+        }
+
+        @Override
+        public ActorAddress getAddressByActorId(Long actorId) {
+            return enrichment(null).getAddress();
+        }
+
+        @Override
+        public String getBcuNumberByActorId(Long actorId) {
+            return null;
+        }
+
+        @Override
+        public GrossAmount getGrossAmountByPolicyNumber(String policyNumber) {
+            return GrossAmount.of(0.0);
+        }
+
+        @Override
+        public PolicyEnrichment getActorReferenceByPolicyNumber(String policyNumber) {
+            return enrichment(policyNumber);
+        }
+
+        @Override
+        public Map<String, PolicyEnrichment> getEnrichmentByPolicyNumbers(Collection<String> policyNumbers) {
+            Map<String, PolicyEnrichment> result = new HashMap<>();
+            for (String policyNumber : policyNumbers) {
+                result.put(policyNumber, enrichment(policyNumber));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Drops notifications instead of queueing them
+     */
+    static final class StubEmailService extends EmailService {
+
+        @Override
+        public void sendBcuNumberMissingEmail(String policyNumber, String appCode) {
+        }
+
+        @Override
+        public void sendDurationExceedsEmail(String policyNumber, String appCode, int duration) {
+        }
+    }
+}
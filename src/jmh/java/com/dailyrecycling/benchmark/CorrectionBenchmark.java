@@ -0,0 +1,80 @@
+package com.dailyrecycling.benchmark;
+
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.ErrorCorrectionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each ErrorCorrectionService correction on its own against a stubbed DatabaseService.
+ * Every operation corrects a fresh copy of a parsed record; copyOnly is the cost of that copy.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CorrectionBenchmark {
+
+    private ErrorCorrectionService corrections;
+    private PolicyRecord[] parsed;
+
+    @Setup
+    public void setUp(RecordData data) {
+        corrections = BenchmarkFixtures.correctionService();
+        parsed = new PolicyRecord[data.records.length];
+        for (int i = 0; i < data.records.length; i++) {
+            parsed[i] = data.parser.parseRecord(data.records[i]);
+        }
+    }
+
+    private PolicyRecord nextRecord(RecordData data) {
+        return BenchmarkFixtures.copy(parsed[data.next()]);
+    }
+
+    @Benchmark
+    public PolicyRecord copyOnly(RecordData data) {
+        return nextRecord(data);
+    }
+
+    @Benchmark
+    public PolicyRecord correctStartDateEndDateIssue(RecordData data) {
+        return corrections.correctStartDateEndDateIssue(nextRecord(data));
+    }
+
+    @Benchmark
+    public PolicyRecord correctGrossAmountZero(RecordData data) {
+        return corrections.correctGrossAmountZero(nextRecord(data));
+    }
+
+    @Benchmark
+    public PolicyRecord correctFinancingType(RecordData data) {
+        return corrections.correctFinancingType(nextRecord(data));
+    }
+
+    @Benchmark
+    public PolicyRecord correctAddressFields(RecordData data) {
+        return corrections.correctAddressFields(nextRecord(data));
+    }
+
+    @Benchmark
+    public PolicyRecord correctBcuNumber(RecordData data) {
+        return corrections.correctBcuNumber(nextRecord(data));
+    }
+
+    @Benchmark
+    public PolicyRecord applyAll(RecordData data) {
+        return corrections.applyCorrections(nextRecord(data), "ALL");
+    }
+}
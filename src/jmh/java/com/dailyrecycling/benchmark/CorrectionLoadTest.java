@@ -0,0 +1,179 @@
+package com.dailyrecycling.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop load test of a running application: each client thread posts records to
+ * /correct, then to /reactive/correct, back to back for the given time, after a warm-up.
+ * Prints throughput, latency percentiles and response status counts per endpoint.
+ * <p>
+ * Start the application with the correction and reference caches off
+ * (correction.cache.enabled=false, reference.cache.ttl=PT0S) so every request reaches
+ * the database, and with the records' policy numbers present in pcb.pcbqtaso.
+ * <p>
+ * Usage: CorrectionLoadTest base-url records-file error-type clients seconds
+ */
+public class CorrectionLoadTest {
+
+    private static final long WARM_UP_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 5) {
+            System.err.println("Usage: CorrectionLoadTest <base-url> <records-file> <error-type> <clients> <seconds>");
+            System.exit(2);
+        }
+        String baseUrl = args[0];
+        List<String> records = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(args[1]), StandardCharsets.ISO_8859_1)) {
+            if (!line.isEmpty()) {
+                records.add(line);
+            }
+        }
+        String errorType = args[2];
+        int clients = Integer.parseInt(args[3]);
+        int seconds = Integer.parseInt(args[4]);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<byte[]> bodies = new ArrayList<>();
+        for (String record : records) {
+            Map<String, String> request = new LinkedHashMap<>();
+            request.put("record", record);
+            request.put("errorType", errorType);
+            bodies.add(objectMapper.writeValueAsBytes(request));
+        }
+
+        System.out.printf("%-20s %8s %10s %10s %10s %10s  %s%n",
+                "Endpoint", "clients", "req/s", "p50 ms", "p99 ms", "max ms", "status");
+        for (String path : new String[] {"/api/recycling/correct", "/api/recycling/reactive/correct"}) {
+            run(new URL(baseUrl + path), bodies, clients, seconds).print(path.substring("/api/recycling".length()), clients);
+        }
+    }
+
+    private static Result run(URL url, List<byte[]> bodies, int clients, int seconds) throws InterruptedException {
+        long measureFrom = System.nanoTime() + WARM_UP_NANOS;
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicInteger next = new AtomicInteger();
+        Result[] results = new Result[clients];
+        Thread[] threads = new Thread[clients];
+        for (int t = 0; t < clients; t++) {
+            Result result = new Result(seconds);
+            results[t] = result;
+            threads[t] = new Thread(() -> {
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    byte[] body = bodies.get(Math.floorMod(next.getAndIncrement(), bodies.size()));
+                    int status = post(url, body);
+                    long nanos = System.nanoTime() - now;
+                    if (now >= measureFrom) {
+                        result.record(status, nanos);
+                    }
+                }
+            }, "load-" + t);
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Result total = new Result(seconds);
+        for (Result result : results) {
+            total.add(result);
+        }
+        return total;
+    }
+
+    /**
+     * Status code of the response, 0 if the request failed
+     */
+    private static int post(URL url, byte[] body) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(10_000);
+            connection.setReadTimeout(30_000);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            int status = connection.getResponseCode();
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                drain(in);
+            }
+            return status;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) >= 0) {
+            // Read the body so the connection can be reused
+        }
+    }
+
+    private static final class Result {
+        private final int seconds;
+        private final Map<Integer, Integer> statuses = new TreeMap<>();
+        private long[] okNanos = new long[1024];
+        private int ok;
+
+        private Result(int seconds) {
+            this.seconds = seconds;
+        }
+
+        void record(int status, long nanos) {
+            statuses.merge(status, 1, Integer::sum);
+            if (status == 200) {
+                if (ok == okNanos.length) {
+                    okNanos = Arrays.copyOf(okNanos, ok * 2);
+                }
+                okNanos[ok++] = nanos;
+            }
+        }
+
+        void add(Result other) {
+            other.statuses.forEach((status, count) -> statuses.merge(status, count, Integer::sum));
+            okNanos = Arrays.copyOf(okNanos, ok + other.ok);
+            System.arraycopy(other.okNanos, 0, okNanos, ok, other.ok);
+            ok += other.ok;
+        }
+
+        void print(String endpoint, int clients) {
+            long[] sorted = Arrays.copyOf(okNanos, ok);
+            Arrays.sort(sorted);
+            System.out.printf("%-20s %8d %10.0f %10.1f %10.1f %10.1f  %s%n", endpoint, clients,
+                    ok / (double) seconds, percentile(sorted, 0.50), percentile(sorted, 0.99),
+                    percentile(sorted, 1.0), statuses);
+        }
+
+        private static double percentile(long[] sorted, double fraction) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = Math.min(sorted.length - 1, (int) (sorted.length * fraction));
+            return sorted[index] / 1e6;
+        }
+    }
+}
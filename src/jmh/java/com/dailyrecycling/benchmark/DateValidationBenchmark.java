@@ -0,0 +1,86 @@
+package com.dailyrecycling.benchmark;
+
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.MappedPolicyRecord;
+import com.dailyrecycling.service.rule.DurationExceedsRule;
+import com.dailyrecycling.service.rule.StartDateEndDateRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Start/end date and duration checks of one record, on the mapped byte path, on
+ * String records, and parsing the dates with LocalDate for comparison
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DateValidationBenchmark {
+
+    private final StartDateEndDateRule startDateEndDateRule = new StartDateEndDateRule();
+    private final DurationExceedsRule durationExceedsRule = new DurationExceedsRule();
+
+    private MappedPolicyRecord[] mapped;
+    private PolicyRecord[] parsed;
+
+    @Setup
+    public void setUp(RecordData data) {
+        mapped = new MappedPolicyRecord[data.records.length];
+        parsed = new PolicyRecord[data.records.length];
+        for (int i = 0; i < data.records.length; i++) {
+            mapped[i] = data.parser.parseRecord(data.buffer, data.offsets[i], data.lengths[i],
+                    StandardCharsets.ISO_8859_1);
+            parsed[i] = data.parser.parseRecord(data.records[i]);
+        }
+    }
+
+    /**
+     * Both date checks read the dates straight from the input buffer
+     */
+    @Benchmark
+    public int validateMapped(RecordData data) {
+        return validate(mapped[data.next()]);
+    }
+
+    @Benchmark
+    public int validateString(RecordData data) {
+        return validate(parsed[data.next()]);
+    }
+
+    /**
+     * The same checks with the dates parsed by DateTimeFormatter into LocalDate
+     */
+    @Benchmark
+    public int validateLocalDate(RecordData data) {
+        PolicyRecord record = parsed[data.next()];
+        try {
+            LocalDate start = LocalDate.parse(record.getPolicyStartDate(), DateTimeFormatter.BASIC_ISO_DATE);
+            LocalDate end = LocalDate.parse(record.getPolicyEndDate(), DateTimeFormatter.BASIC_ISO_DATE);
+            long duration = ChronoUnit.DAYS.between(start, end);
+            return (duration < 0 ? 1 : 0) | (duration > 9999 ? 2 : 0);
+        } catch (DateTimeException | NullPointerException e) {
+            return 0;
+        }
+    }
+
+    private int validate(PolicyRecord record) {
+        return (startDateEndDateRule.detect(record) ? 1 : 0) | (durationExceedsRule.detect(record) ? 2 : 0);
+    }
+}
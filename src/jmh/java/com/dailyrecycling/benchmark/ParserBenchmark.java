@@ -0,0 +1,79 @@
+package com.dailyrecycling.benchmark;
+
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.ErrorCorrectionService;
+import com.dailyrecycling.service.MappedPolicyRecord;
+import com.dailyrecycling.service.RecordLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FixedWidthParser parse and update, on String records and on the mapped byte path
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+    private PolicyRecord[] corrected;
+    private MappedPolicyRecord[] correctedMapped;
+    private byte[] target;
+
+    @Setup
+    public void setUp(RecordData data) {
+        ErrorCorrectionService corrections = BenchmarkFixtures.correctionService();
+        corrected = new PolicyRecord[data.records.length];
+        correctedMapped = new MappedPolicyRecord[data.records.length];
+        for (int i = 0; i < data.records.length; i++) {
+            corrected[i] = corrections.applyCorrections(data.parser.parseRecord(data.records[i]), "ALL");
+            correctedMapped[i] = data.parser.parseRecord(data.buffer, data.offsets[i], data.lengths[i],
+                    StandardCharsets.ISO_8859_1);
+            corrections.applyCorrections(correctedMapped[i], "ALL");
+        }
+        target = new byte[8192];
+    }
+
+    @Benchmark
+    public PolicyRecord parseString(RecordData data) {
+        return data.parser.parseRecord(data.records[data.next()]);
+    }
+
+    /**
+     * Mapped parse plus decoding every column, the worst case for the lazy record
+     */
+    @Benchmark
+    public void parseMappedAllFields(RecordData data, Blackhole blackhole) {
+        int i = data.next();
+        MappedPolicyRecord record = data.parser.parseRecord(data.buffer, data.offsets[i], data.lengths[i],
+                StandardCharsets.ISO_8859_1);
+        for (RecordLayout.Column column : data.layout.getColumns()) {
+            blackhole.consume(column.getField().get(record));
+        }
+    }
+
+    @Benchmark
+    public String updateString(RecordData data) {
+        int i = data.next();
+        return data.parser.updateRecord(data.records[i], corrected[i]);
+    }
+
+    @Benchmark
+    public boolean updateMapped(RecordData data) {
+        return data.parser.updateRecord(correctedMapped[data.next()], target);
+    }
+}
@@ -0,0 +1,62 @@
+package com.dailyrecycling.benchmark;
+
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.CorrectionContext;
+import com.dailyrecycling.service.ErrorCorrectionService;
+import com.dailyrecycling.service.MappedPolicyRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full parse → correct → patch chain per record: the /correct String path and
+ * the batch path over the mapped buffer with prefetched reference data
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PipelineBenchmark {
+
+    private ErrorCorrectionService corrections;
+    private byte[] target;
+
+    @Setup
+    public void setUp() {
+        corrections = BenchmarkFixtures.correctionService();
+        target = new byte[8192];
+    }
+
+    @Benchmark
+    public String stringPipeline(RecordData data) {
+        String record = data.records[data.next()];
+        PolicyRecord policyRecord = data.parser.parseRecord(record);
+        corrections.applyCorrections(policyRecord, "ALL");
+        return data.parser.updateRecord(record, policyRecord);
+    }
+
+    @Benchmark
+    public Object mappedPipeline(RecordData data) {
+        int i = data.next();
+        MappedPolicyRecord policyRecord = data.parser.parseRecord(data.buffer, data.offsets[i], data.lengths[i],
+                StandardCharsets.ISO_8859_1);
+        corrections.applyCorrections(policyRecord, "ALL",
+                CorrectionContext.prefetched(BenchmarkFixtures.enrichment(policyRecord.getPolicyNumber())));
+        if (data.parser.canUpdateInPlace(policyRecord, data.lengths[i])) {
+            return data.parser.updateRecord(policyRecord, target);
+        }
+        return data.parser.updateRecord(policyRecord.getRawRecord(), policyRecord);
+    }
+}
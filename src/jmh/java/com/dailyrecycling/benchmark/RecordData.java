@@ -0,0 +1,64 @@
+package com.dailyrecycling.benchmark;
+
+import com.dailyrecycling.service.FixedWidthParser;
+import com.dailyrecycling.service.RecordLayout;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A fixed set of synthetic records, as strings and packed in one ISO-8859-1
+ * buffer like a mapped batch file, cycled through by the benchmarks
+ */
+@State(Scope.Thread)
+public class RecordData {
+
+    private static final int RECORD_COUNT = 1024;
+
+    @Param({"0.2"})
+    public double defectRate;
+
+    @Param({"200"})
+    public int lengthSpread;
+
+    RecordLayout layout;
+    FixedWidthParser parser;
+    String[] records;
+    ByteBuffer buffer;
+    int[] offsets;
+    int[] lengths;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        layout = BenchmarkFixtures.layout();
+        parser = BenchmarkFixtures.parser(layout);
+        records = new RecordGenerator(layout, 42, defectRate).next(RECORD_COUNT, lengthSpread);
+
+        int total = 0;
+        for (String record : records) {
+            total += record.length() + 1;
+        }
+        buffer = ByteBuffer.allocate(total);
+        offsets = new int[RECORD_COUNT];
+        lengths = new int[RECORD_COUNT];
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            offsets[i] = buffer.position();
+            lengths[i] = records[i].length();
+            buffer.put(records[i].getBytes(StandardCharsets.ISO_8859_1)).put((byte) '\n');
+        }
+    }
+
+    /**
+     * Index of the next record, wrapping around
+     */
+    int next() {
+        int index = next;
+        next = (next + 1) & (RECORD_COUNT - 1);
+        return index;
+    }
+}
@@ -0,0 +1,108 @@
+package com.dailyrecycling.benchmark;
+
+import com.dailyrecycling.model.PolicyField;
+import com.dailyrecycling.service.RecordLayout;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Synthetic fixed-width records for the benchmarks. Every layout column gets
+ * a plausible value, the rest of the record is filler; a share of the records
+ * carries the defects the corrections fix (blank fields, dashed rates,
+ * start dates after end dates, short values).
+ */
+public class RecordGenerator {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String ALPHANUMERIC = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static final String[] STREETS = {"RUE DE LA PAIX", "AVENUE FOCH", "BOULEVARD HAUSSMANN", "PLACE BELLECOUR"};
+    private static final String[] CITIES = {"PARIS", "LYON", "MARSEILLE", "TOULOUSE", "BORDEAUX", "LILLE"};
+
+    private final RecordLayout layout;
+    private final Random random;
+    private final double defectRate;
+
+    public RecordGenerator(RecordLayout layout, long seed, double defectRate) {
+        this.layout = layout;
+        this.random = new Random(seed);
+        this.defectRate = defectRate;
+    }
+
+    /**
+     * One record of the given length, at least the layout minimum
+     */
+    public String next(int length) {
+        char[] record = new char[Math.max(length, layout.getMinRecordLength())];
+        for (int i = 0; i < record.length; i++) {
+            record[i] = random.nextInt(8) == 0 ? ' ' : ALPHANUMERIC.charAt(random.nextInt(ALPHANUMERIC.length()));
+        }
+
+        LocalDate start = LocalDate.of(2020, 1, 1).plusDays(random.nextInt(1500));
+        LocalDate end = start.plusDays(30 + random.nextInt(1000));
+        if (defect()) {
+            LocalDate swap = start;
+            start = end;
+            end = swap;
+        }
+
+        for (RecordLayout.Column column : layout.getColumns()) {
+            String value = defect() ? "" : value(column.getField(), start, end);
+            write(record, column, value);
+        }
+        return new String(record);
+    }
+
+    /**
+     * Records of random length between the layout minimum and that plus spread
+     */
+    public String[] next(int count, int spread) {
+        String[] records = new String[count];
+        for (int i = 0; i < count; i++) {
+            records[i] = next(layout.getMinRecordLength() + random.nextInt(spread + 1));
+        }
+        return records;
+    }
+
+    private String value(PolicyField field, LocalDate start, LocalDate end) {
+        switch (field) {
+            case POLICY_START_DATE:
+                return start.format(DATE);
+            case POLICY_END_DATE:
+                return end.format(DATE);
+            case DURATION_OF_INSURANCE:
+                return String.valueOf(random.nextInt(999));
+            case FINANCING_TYPE:
+                return String.valueOf(1 + random.nextInt(3));
+            case FINANCING_RATE:
+                return defect() ? "-" : String.format("%.2f", random.nextDouble() * 10);
+            case TOTAL_PREMIUM_AMOUNT:
+                return String.valueOf(random.nextInt(1_000_000));
+            case FIRST_LINE_ADDRESS:
+                return (1 + random.nextInt(200)) + " " + STREETS[random.nextInt(STREETS.length)];
+            case SECOND_LINE_ADDRESS:
+                return "APT " + (1 + random.nextInt(50));
+            case CITY:
+                return CITIES[random.nextInt(CITIES.length)];
+            case POSTAL_CODE:
+                return String.format("%05d", random.nextInt(100_000));
+            default:
+                return random.nextBoolean() ? "X" : "";
+        }
+    }
+
+    private boolean defect() {
+        return random.nextDouble() < defectRate;
+    }
+
+    private static void write(char[] record, RecordLayout.Column column, String value) {
+        char[] field = new char[column.getLength()];
+        Arrays.fill(field, column.getPadding() == RecordLayout.Padding.ZEROS_LEFT ? '0' : ' ');
+        int length = Math.min(value.length(), field.length);
+        int offset = column.getPadding() == RecordLayout.Padding.ZEROS_LEFT ? field.length - length : 0;
+        value.getChars(0, length, field, offset);
+        System.arraycopy(field, 0, record, column.getStart(), field.length);
+    }
+}
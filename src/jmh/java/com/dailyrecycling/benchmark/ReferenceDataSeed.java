@@ -0,0 +1,128 @@
+package com.dailyrecycling.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reference tables for the benchmarks and load tests: one actor per policy, with an
+ * address carrying audit columns like the production table, a BCU number and twelve
+ * gross amount rows. Against PostgreSQL, a round trip can be simulated: the actor
+ * lookup then sleeps that long per row while it holds its connection, as a lookup
+ * over the network would.
+ * <p>
+ * Drops and recreates the pcb schema, so point it at a scratch database only.
+ * <p>
+ * Usage: ReferenceDataSeed jdbc-url policies round-trip-millis [records-file]
+ * <br>The records file gets one record per policy, with its policy number in columns
+ * 0-20 and a blank address, for CorrectionLoadTest; map policyNumber,0,20 in the record
+ * layout of the application under test.
+ */
+public class ReferenceDataSeed {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int GROSS_AMOUNT_ROWS = 12;
+    private static final int RECORD_LENGTH = 4060;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || args.length > 4) {
+            System.err.println("Usage: ReferenceDataSeed <jdbc-url> <policies> <round-trip-millis> [records-file]");
+            System.exit(2);
+        }
+        int policies = Integer.parseInt(args[1]);
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(args[0]);
+        seed(new JdbcTemplate(dataSource), policies, Duration.ofMillis(Long.parseLong(args[2])));
+        System.out.printf("Seeded %d policies%n", policies);
+        if (args.length == 4) {
+            writeRecords(args[3], policies);
+            System.out.printf("Wrote %d records to %s%n", policies, args[3]);
+        }
+    }
+
+    /**
+     * Policy number of the policy of the given actor; 20 characters, application code FR1000...
+     */
+    static String policyNumber(int actor) {
+        return "FR" + (100000000000L + actor) + "FR5H01";
+    }
+
+    /**
+     * Recreate the pcb schema with the given number of policies. A non-zero round trip needs PostgreSQL.
+     */
+    static void seed(JdbcTemplate jdbcTemplate, int policies, Duration roundTrip) {
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS pcb CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA pcb");
+        String policyTable = roundTrip.isZero() ? "pcb.pcbqtaso" : "pcb.pcbqtaso_rows";
+        jdbcTemplate.execute("CREATE TABLE " + policyTable + " (policy_number VARCHAR(40), id_actor BIGINT)");
+        jdbcTemplate.execute("CREATE TABLE pcb.pcbqtadr (id_actor BIGINT, first_line_address VARCHAR(64), " +
+                "second_line_address VARCHAR(64), city VARCHAR(64), postal_code VARCHAR(16), country_code VARCHAR(3), " +
+                "address_type VARCHAR(8), valid_from DATE, valid_to DATE, created_by VARCHAR(32), " +
+                "created_at TIMESTAMP, updated_by VARCHAR(32), updated_at TIMESTAMP, comment_text VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE pcb.pcbqtaco (id_actor BIGINT, bcu_number VARCHAR(32))");
+        jdbcTemplate.execute("CREATE TABLE pcb.pcbqtiny (policy_number VARCHAR(40), amount_gross DOUBLE PRECISION)");
+
+        List<Object[]> actors = new ArrayList<>();
+        List<Object[]> addresses = new ArrayList<>();
+        List<Object[]> bcuNumbers = new ArrayList<>();
+        List<Object[]> grossAmounts = new ArrayList<>();
+        for (int actor = 0; actor < policies; actor++) {
+            actors.add(new Object[] {policyNumber(actor), (long) actor});
+            addresses.add(new Object[] {(long) actor, actor + " RUE DE PARIS"});
+            bcuNumbers.add(new Object[] {(long) actor, "BCU" + actor});
+            for (int row = 0; row < GROSS_AMOUNT_ROWS; row++) {
+                grossAmounts.add(new Object[] {policyNumber(actor), (double) row});
+            }
+            if (actors.size() == BATCH_SIZE || actor == policies - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO " + policyTable + " VALUES (?, ?)", actors);
+                jdbcTemplate.batchUpdate("INSERT INTO pcb.pcbqtadr VALUES (?, ?, 'APT 3', 'LYON', '69001', 'FR', " +
+                        "'MAIN', DATE '2000-01-01', DATE '9999-12-31', 'BATCH', CURRENT_TIMESTAMP, 'BATCH', " +
+                        "CURRENT_TIMESTAMP, 'Imported from the legacy policy system')", addresses);
+                jdbcTemplate.batchUpdate("INSERT INTO pcb.pcbqtaco VALUES (?, ?)", bcuNumbers);
+                jdbcTemplate.batchUpdate("INSERT INTO pcb.pcbqtiny VALUES (?, ?)", grossAmounts);
+                actors.clear();
+                addresses.clear();
+                bcuNumbers.clear();
+                grossAmounts.clear();
+            }
+        }
+
+        jdbcTemplate.execute("CREATE INDEX ON " + policyTable + " (policy_number)");
+        jdbcTemplate.execute("CREATE INDEX ON pcb.pcbqtadr (id_actor)");
+        jdbcTemplate.execute("CREATE INDEX ON pcb.pcbqtaco (id_actor)");
+        jdbcTemplate.execute("CREATE INDEX ON pcb.pcbqtiny (policy_number)");
+        if (!roundTrip.isZero()) {
+            jdbcTemplate.execute("CREATE FUNCTION pcb.round_trip() RETURNS boolean VOLATILE LANGUAGE plpgsql AS " +
+                    "'BEGIN PERFORM pg_sleep(" + roundTrip.toMillis() / 1000.0 + "); RETURN true; END'");
+            jdbcTemplate.execute("CREATE VIEW pcb.pcbqtaso AS SELECT policy_number, id_actor " +
+                    "FROM pcb.pcbqtaso_rows WHERE pcb.round_trip()");
+        }
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private static void writeRecords(String file, int policies) throws IOException {
+        char[] record = new char[RECORD_LENGTH];
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(file), StandardCharsets.ISO_8859_1)) {
+            for (int actor = 0; actor < policies; actor++) {
+                Arrays.fill(record, ' ');
+                put(record, 0, policyNumber(actor));
+                put(record, 310, "20240101");
+                put(record, 318, "20250101");
+                out.write(record);
+                out.newLine();
+            }
+        }
+    }
+
+    private static void put(char[] record, int offset, String value) {
+        value.getChars(0, value.length(), record, offset);
+    }
+}
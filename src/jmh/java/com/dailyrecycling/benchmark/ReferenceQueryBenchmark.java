@@ -0,0 +1,100 @@
+package com.dailyrecycling.benchmark;
+
+import com.dailyrecycling.model.ActorAddress;
+import com.dailyrecycling.model.PolicyEnrichment;
+import com.dailyrecycling.service.ReferenceDataDao;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reference lookups through ReferenceDataDao next to the SELECT * / queryForList lookup
+ * it replaced. The address table carries audit columns like the production one, which a
+ * SELECT * reads and boxes into a map for every lookup.
+ * <p>
+ * Runs against an in-memory H2 database in PostgreSQL mode, seeded for the run, unless
+ * jdbcUrl names a database seeded by {@link ReferenceDataSeed} with no round trip,
+ * e.g. -p jdbcUrl=jdbc:postgresql://localhost:5432/scratch?user=bench&amp;prepareThreshold=1
+ * (several comma-separated URLs compare prepareThreshold settings).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReferenceQueryBenchmark {
+
+    private static final int ACTORS = 10000;
+
+    @Param("")
+    public String jdbcUrl;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ReferenceDataDao dao;
+    private boolean seeded;
+
+    @Setup
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        seeded = jdbcUrl.isEmpty();
+        dataSource.setJdbcUrl(seeded ? "jdbc:h2:mem:reference;MODE=PostgreSQL;DB_CLOSE_DELAY=-1" : jdbcUrl);
+        dataSource.setMaximumPoolSize(2);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        if (seeded) {
+            ReferenceDataSeed.seed(jdbcTemplate, ACTORS, Duration.ZERO);
+        }
+        dao = BenchmarkFixtures.referenceDataDao(dataSource);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (seeded) {
+            jdbcTemplate.execute("DROP ALL OBJECTS");
+        }
+        dataSource.close();
+    }
+
+    private static String policyNumber(int actor) {
+        return ReferenceDataSeed.policyNumber(actor);
+    }
+
+    private static int nextActor() {
+        return ThreadLocalRandom.current().nextInt(ACTORS);
+    }
+
+    @Benchmark
+    public Map<String, Object> addressSelectStar() {
+        List<Map<String, Object>> results = jdbcTemplate.queryForList(
+                "SELECT * FROM pcb.pcbqtadr WHERE id_actor = ?", (long) nextActor());
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    @Benchmark
+    public ActorAddress addressProjected() {
+        return dao.findAddress((long) nextActor()).orElse(null);
+    }
+
+    @Benchmark
+    public PolicyEnrichment actorReference() {
+        return dao.findActorReference(policyNumber(nextActor()));
+    }
+}
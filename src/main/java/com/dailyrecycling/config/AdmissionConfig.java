@@ -0,0 +1,28 @@
+package com.dailyrecycling.config;
+
+import com.dailyrecycling.service.AdmissionControlService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class AdmissionConfig {
+
+    /**
+     * Admission filter, run after CORS so rejections still carry the CORS headers
+     */
+    @Bean
+    public FilterRegistrationBean<AdmissionFilter> admissionFilter(AdmissionControlService admissionControlService,
+                                                                   ObjectMapper objectMapper,
+                                                                   @Value("${admission.retry-after:PT1S}") Duration retryAfter) {
+        FilterRegistrationBean<AdmissionFilter> registration = new FilterRegistrationBean<>(
+                new AdmissionFilter(admissionControlService, objectMapper, retryAfter));
+        registration.addUrlPatterns("/api/recycling/*");
+        registration.setOrder(CorsConfig.ORDER + 1);
+        return registration;
+    }
+}
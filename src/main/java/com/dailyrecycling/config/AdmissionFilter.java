@@ -0,0 +1,157 @@
+package com.dailyrecycling.config;
+
+import com.dailyrecycling.service.AdmissionControlService;
+import com.dailyrecycling.service.AdmissionLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs every POST endpoint (correction, parsing, batch submission and the admin
+ * reloads and flushes) through its admission lane and rejects what the lane cannot
+ * take: 429 when its queue is full, 503 when the wait for a permit runs out, both
+ * with a Retry-After header. GET requests, /health included, pass straight through
+ * and answer on the servlet threads the lanes leave free. Permits of asynchronous
+ * requests (the reactive and streamed endpoints) are held until the response completes.
+ */
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private final AdmissionControlService admissionControlService;
+    private final ObjectMapper objectMapper;
+    private final String retryAfterSeconds;
+
+    public AdmissionFilter(AdmissionControlService admissionControlService, ObjectMapper objectMapper,
+                           Duration retryAfter) {
+        this.admissionControlService = admissionControlService;
+        this.objectMapper = objectMapper;
+        this.retryAfterSeconds = String.valueOf(Math.max(1, (retryAfter.toMillis() + 999) / 1000));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AdmissionLimiter limiter = admissionControlService.getLane(lane(request));
+        if (limiter == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        AdmissionLimiter.Result result;
+        try {
+            result = admissionControlService.acquire(limiter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = AdmissionLimiter.Result.TIMED_OUT;
+        }
+        if (result != AdmissionLimiter.Result.ADMITTED) {
+            reject(response, limiter.getLane(), result);
+            return;
+        }
+
+        Permit permit = new Permit(limiter);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(permit);
+            } else {
+                permit.release();
+            }
+        }
+    }
+
+    /**
+     * Admission lane of the request, null for endpoints that are not limited
+     */
+    private static String lane(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod())) {
+            return null;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        switch (path) {
+            case "/api/recycling/correct":
+                return AdmissionControlService.CORRECT;
+            case "/api/recycling/correct/stream":
+                return AdmissionControlService.STREAM;
+            case "/api/recycling/reactive/correct":
+                return AdmissionControlService.REACTIVE;
+            case "/api/recycling/batch":
+                return AdmissionControlService.BATCH;
+            case "/api/recycling/parse":
+                return AdmissionControlService.PARSE;
+            default:
+                if (path.startsWith("/api/recycling/batch/") && path.endsWith("/resume")) {
+                    return AdmissionControlService.BATCH;
+                }
+                return path.startsWith("/api/recycling/admin/") ? AdmissionControlService.ADMIN : null;
+        }
+    }
+
+    private void reject(HttpServletResponse response, String lane, AdmissionLimiter.Result result) throws IOException {
+        boolean queueFull = result == AdmissionLimiter.Result.QUEUE_FULL;
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("error", queueFull ? "Too many requests" : "Service overloaded");
+        error.put("message", queueFull
+                ? "The " + lane + " lane and its queue are full, retry later"
+                : "No " + lane + " capacity freed up in time, retry later");
+        response.setStatus(queueFull ? HttpStatus.TOO_MANY_REQUESTS.value() : HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), error);
+    }
+
+    /**
+     * Permit of an admitted request, released once whether the request ends on its
+     * thread or, for an asynchronous one, completes, fails or times out later
+     */
+    private static final class Permit implements AsyncListener {
+        private final AdmissionLimiter limiter;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(AdmissionLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                limiter.release();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Keep listening across a restarted async cycle
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
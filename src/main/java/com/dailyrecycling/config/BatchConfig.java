@@ -0,0 +1,57 @@
+package com.dailyrecycling.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class BatchConfig {
+
+    /**
+     * Executor running batch jobs, one thread per concurrently running job
+     */
+    @Bean(name = "batchExecutor")
+    public ThreadPoolTaskExecutor batchExecutor(@Value("${batch.max-concurrent-jobs:2}") int maxConcurrentJobs) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrentJobs);
+        executor.setMaxPoolSize(maxConcurrentJobs);
+        executor.setThreadNamePrefix("batch-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+
+    /**
+     * Worker pool running parse, correct and patch on chunks of all running jobs
+     */
+    @Bean(name = "batchWorkerExecutor")
+    public ThreadPoolTaskExecutor batchWorkerExecutor(@Value("${batch.worker-threads:0}") int workerThreads) {
+        int threads = workerThreads(workerThreads);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("batch-worker-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+
+    /**
+     * Executor writing correction reports, one thread per concurrently running job
+     */
+    @Bean(name = "batchReportExecutor")
+    public ThreadPoolTaskExecutor batchReportExecutor(@Value("${batch.max-concurrent-jobs:2}") int maxConcurrentJobs) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrentJobs);
+        executor.setMaxPoolSize(maxConcurrentJobs);
+        executor.setThreadNamePrefix("batch-report-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+
+    /**
+     * Batch worker thread count: the configured value, or one per core if 0
+     */
+    static int workerThreads(int configured) {
+        return configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+    }
+}
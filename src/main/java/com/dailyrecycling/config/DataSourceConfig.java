@@ -0,0 +1,38 @@
+package com.dailyrecycling.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// DataSourceProperties are bound here: the DataSource auto-configuration backs off
+// once the R2DBC ConnectionFactory of the reactive endpoint exists
+@Configuration
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class DataSourceConfig {
+
+    /**
+     * Hikari pool sized so no admitted request waits for a connection: one per batch worker,
+     * which holds it while it looks up a chunk, one per request the correct and stream
+     * admission lanes run at once, each looking up one record at a time over JDBC, plus
+     * extra connections for the preload scans and unlimited endpoints. Raising a lane's
+     * max-concurrency therefore grows the pool; the reactive lane uses R2DBC connections.
+     * spring.datasource.hikari.* properties are bound afterwards and take precedence.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties,
+                                       @Value("${batch.worker-threads:0}") int workerThreads,
+                                       @Value("${admission.correct.max-concurrency:48}") int correctConcurrency,
+                                       @Value("${admission.stream.max-concurrency:4}") int streamConcurrency,
+                                       @Value("${database.pool.extra-connections:4}") int extraConnections) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("reference-pool");
+        dataSource.setMaximumPoolSize(BatchConfig.workerThreads(workerThreads) + correctConcurrency
+                + streamConcurrency + extraConnections);
+        return dataSource;
+    }
+}
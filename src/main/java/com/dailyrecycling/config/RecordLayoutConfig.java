@@ -0,0 +1,34 @@
+package com.dailyrecycling.config;
+
+import com.dailyrecycling.model.PolicyField;
+import com.dailyrecycling.service.RecordLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+
+@Configuration
+public class RecordLayoutConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(RecordLayoutConfig.class);
+
+    /**
+     * Fixed-width record layout, compiled once at startup
+     */
+    @Bean
+    public RecordLayout recordLayout(@Value("${record.layout.location:classpath:record-layout.csv}") Resource location,
+                                     @Value("${record.layout.min-length:4060}") int minRecordLength) throws IOException {
+        RecordLayout layout = RecordLayout.load(location.getInputStream(), minRecordLength);
+        if (layout.column(PolicyField.POLICY_NUMBER) == null) {
+            // Every reference lookup is keyed by policy number
+            log.warn("policyNumber is not mapped in the record layout {}: address, BCU number and gross amount "
+                    + "corrections find no reference data and batch chunks skip the bulk enrichment query "
+                    + "until its column is added", location);
+        }
+        return layout;
+    }
+}
@@ -0,0 +1,184 @@
+package com.dailyrecycling.controller;
+
+import com.dailyrecycling.service.AdmissionControlService;
+import com.dailyrecycling.service.CorrectionResultCache;
+import com.dailyrecycling.service.EmailOutbox;
+import com.dailyrecycling.service.GrossAmountIndexService;
+import com.dailyrecycling.service.ReferenceDataCache;
+import com.dailyrecycling.service.ReferencePreloadService;
+import com.dailyrecycling.service.rule.CorrectionRuleRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/recycling/admin")
+@CrossOrigin(origins = "http://localhost:3000")
+public class AdminController {
+
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
+    @Autowired
+    private ReferencePreloadService referencePreloadService;
+
+    @Autowired
+    private GrossAmountIndexService grossAmountIndexService;
+
+    @Autowired
+    private EmailOutbox emailOutbox;
+
+    @Autowired
+    private CorrectionRuleRegistry correctionRuleRegistry;
+
+    @Autowired
+    private CorrectionResultCache correctionResultCache;
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    /**
+     * Reference data cache statistics
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("caches", referenceDataCache.getStats());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Flush the reference data cache, and the correction results computed from it
+     */
+    @PostMapping("/cache/flush")
+    public ResponseEntity<Map<String, Object>> flushCache() {
+        referenceDataCache.invalidateAll();
+        correctionResultCache.invalidateAll();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("message", "Reference data cache flushed");
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Correction result cache statistics
+     */
+    @GetMapping("/result-cache")
+    public ResponseEntity<Map<String, Object>> getResultCacheStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("resultCache", correctionResultCache.getStats());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Flush the correction result cache
+     */
+    @PostMapping("/result-cache/flush")
+    public ResponseEntity<Map<String, Object>> flushResultCache() {
+        correctionResultCache.invalidateAll();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("message", "Correction result cache flushed");
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Reference preload index statistics
+     */
+    @GetMapping("/preload")
+    public ResponseEntity<Map<String, Object>> getPreloadStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("preload", referencePreloadService.getStats());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Reload the reference preload index from the database
+     */
+    @PostMapping("/preload/reload")
+    public ResponseEntity<Map<String, Object>> reloadPreload() {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            referencePreloadService.reload();
+            correctionResultCache.invalidateAll();
+            result.put("success", true);
+            result.put("preload", referencePreloadService.getStats());
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(result);
+        }
+    }
+
+    /**
+     * Gross amount index statistics
+     */
+    @GetMapping("/gross-amounts")
+    public ResponseEntity<Map<String, Object>> getGrossAmountIndexStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("grossAmounts", grossAmountIndexService.getStats());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Rebuild the gross amount index from the database
+     */
+    @PostMapping("/gross-amounts/reload")
+    public ResponseEntity<Map<String, Object>> reloadGrossAmountIndex() {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            grossAmountIndexService.reload();
+            correctionResultCache.invalidateAll();
+            result.put("success", true);
+            result.put("grossAmounts", grossAmountIndexService.getStats());
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(result);
+        }
+    }
+
+    /**
+     * Back office email outbox counters and recent dead letters
+     */
+    @GetMapping("/email-outbox")
+    public ResponseEntity<Map<String, Object>> getEmailOutboxStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("outbox", emailOutbox.getStats());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Admission lane limits, load and rejections
+     */
+    @GetMapping("/admission")
+    public ResponseEntity<Map<String, Object>> getAdmissionStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("admission", admissionControlService.getStats());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Correction rules in run order with their detector hit rates
+     */
+    @GetMapping("/rules")
+    public ResponseEntity<Map<String, Object>> getRuleStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("rules", correctionRuleRegistry.getStats());
+        return ResponseEntity.ok(result);
+    }
+}
@@ -0,0 +1,56 @@
+package com.dailyrecycling.controller;
+
+import com.dailyrecycling.service.ReactiveCorrectionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Non-blocking variant of the correction endpoint. Requests are served asynchronously:
+ * the request thread is released while reference data is looked up over R2DBC, so
+ * concurrent corrections are bounded by the R2DBC pool, not by the servlet threads.
+ */
+@RestController
+@RequestMapping("/api/recycling/reactive")
+@CrossOrigin(origins = "http://localhost:3000")
+public class ReactiveRecyclingController {
+
+    @Autowired
+    private ReactiveCorrectionService reactiveCorrectionService;
+
+    /**
+     * Correct record errors, same request and response as /api/recycling/correct
+     */
+    @PostMapping("/correct")
+    public Mono<ResponseEntity<?>> correctRecord(@RequestBody Map<String, String> request) {
+        String record = request.get("record");
+        String errorType = request.get("errorType");
+
+        if (record == null || record.trim().isEmpty()) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Record is required");
+            return Mono.just(ResponseEntity.badRequest().body(error));
+        }
+
+        return reactiveCorrectionService.correct(record, errorType)
+                .<ResponseEntity<?>>map(correction -> {
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("success", true);
+                    result.put("message", "Record corrected successfully");
+                    result.put("correctedRecord", correction.getCorrectedRecord());
+                    result.put("policyRecord", correction.getPolicyRecord());
+                    result.put("cached", correction.isCached());
+                    return ResponseEntity.ok(result);
+                })
+                .onErrorResume(e -> {
+                    Map<String, String> error = new HashMap<>();
+                    error.put("error", "Correction failed");
+                    error.put("message", e.getMessage());
+                    return Mono.just(ResponseEntity.badRequest().body(error));
+                });
+    }
+}
@@ -1,12 +1,32 @@
 package com.dailyrecycling.controller;
 
+import com.dailyrecycling.model.BatchJob;
+import com.dailyrecycling.model.BatchJobStatus;
 import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.BatchProcessingService;
+import com.dailyrecycling.service.CorrectionReportService;
+import com.dailyrecycling.service.CorrectionResultCache;
 import com.dailyrecycling.service.ErrorCorrectionService;
 import com.dailyrecycling.service.FixedWidthParser;
+import com.dailyrecycling.service.StreamCorrectionService;
+import com.dailyrecycling.service.rule.CorrectionRuleRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -21,6 +41,25 @@ public class RecyclingController {
     @Autowired
     private ErrorCorrectionService errorCorrectionService;
 
+    @Autowired
+    private BatchProcessingService batchProcessingService;
+
+    @Autowired
+    private StreamCorrectionService streamCorrectionService;
+
+    @Autowired
+    private CorrectionRuleRegistry correctionRuleRegistry;
+
+    @Autowired
+    private CorrectionResultCache correctionResultCache;
+
+    @Autowired
+    private CorrectionReportService correctionReportService;
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private static final String XLSX = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
     /**
      * Health check endpoint
      */
@@ -76,43 +115,27 @@ public class RecyclingController {
                 return ResponseEntity.badRequest().body(error);
             }
 
+            CorrectionResultCache.Hit cached = correctionResultCache.lookup(record, errorType);
+            long stamp = correctionResultCache.stamp();
             PolicyRecord policyRecord = fixedWidthParser.parseRecord(record);
-            
-            // Apply corrections based on error type
-            if (errorType != null) {
-                switch (errorType.toUpperCase()) {
-                    case "START_DATE_END_DATE":
-                        policyRecord = errorCorrectionService.correctStartDateEndDateIssue(policyRecord);
-                        break;
-                    case "GROSS_AMOUNT_ZERO":
-                        policyRecord = errorCorrectionService.correctGrossAmountZero(policyRecord);
-                        break;
-                    case "FINANCING_TYPE":
-                        policyRecord = errorCorrectionService.correctFinancingType(policyRecord);
-                        break;
-                    case "ADDRESS_FIELDS":
-                        policyRecord = errorCorrectionService.correctAddressFields(policyRecord);
-                        break;
-                    case "BCU_NUMBER":
-                        policyRecord = errorCorrectionService.correctBcuNumber(policyRecord);
-                        break;
-                    default:
-                        // Apply all corrections
-                        policyRecord = errorCorrectionService.correctStartDateEndDateIssue(policyRecord);
-                        policyRecord = errorCorrectionService.correctGrossAmountZero(policyRecord);
-                        policyRecord = errorCorrectionService.correctFinancingType(policyRecord);
-                        policyRecord = errorCorrectionService.correctAddressFields(policyRecord);
-                        policyRecord = errorCorrectionService.correctBcuNumber(policyRecord);
-                }
-            }
+            String correctedRecord;
+            if (cached != null) {
+                cached.applyTo(policyRecord);
+                correctedRecord = cached.getCorrectedRecord();
+            } else {
+                // Apply corrections based on error type
+                policyRecord = errorCorrectionService.applyCorrections(policyRecord, errorType);
 
-            String correctedRecord = fixedWidthParser.updateRecord(record, policyRecord);
+                correctedRecord = fixedWidthParser.updateRecord(record, policyRecord);
+                correctionResultCache.store(record, errorType, policyRecord, correctedRecord, stamp);
+            }
             
             Map<String, Object> result = new HashMap<>();
             result.put("success", true);
             result.put("message", "Record corrected successfully");
             result.put("correctedRecord", correctedRecord);
             result.put("policyRecord", policyRecord);
+            result.put("cached", cached != null);
             return ResponseEntity.ok(result);
 
         } catch (Exception e) {
@@ -124,33 +147,170 @@ public class RecyclingController {
     }
 
     /**
-     * Process batch of records
+     * Correct many records in one streamed request, one record per line.
+     * Accepts NDJSON objects ({"record": ..., "errorType": ...}) or raw fixed-width
+     * lines, and streams one NDJSON result per line as each record is corrected.
+     */
+    @PostMapping(value = "/correct/stream", consumes = {NDJSON, MediaType.TEXT_PLAIN_VALUE}, produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> correctRecordStream(
+            HttpServletRequest request,
+            @RequestParam(value = "errorType", defaultValue = "ALL") String errorType,
+            @RequestParam(value = "output", defaultValue = "LINE") String outputMode) {
+        StreamCorrectionService.Output output;
+        try {
+            output = StreamCorrectionService.Output.valueOf(outputMode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "output must be LINE, DIFF or FULL");
+        }
+
+        // Read the charset from the header: the request encoding is forced to UTF-8 by default
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        boolean ndjson = contentType.isCompatibleWith(MediaType.parseMediaType(NDJSON));
+        Charset charset = ndjson ? StandardCharsets.UTF_8
+                : contentType.getCharset() != null ? contentType.getCharset()
+                : streamCorrectionService.getDefaultRawCharset();
+
+        StreamingResponseBody body = out -> streamCorrectionService.correct(
+                request.getInputStream(), charset, ndjson, errorType, output, out);
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    /**
+     * Start a batch job over an uploaded file or a file on the server
      */
     @PostMapping("/batch")
-    public ResponseEntity<Map<String, Object>> processBatch() {
+    public ResponseEntity<?> processBatch(@RequestParam(value = "file", required = false) MultipartFile file,
+                                          @RequestParam(value = "inputPath", required = false) String inputPath,
+                                          @RequestParam(value = "errorType", defaultValue = "ALL") String errorType) {
+        try {
+            BatchJob job;
+            if (file != null && !file.isEmpty()) {
+                job = batchProcessingService.submitUpload(file, errorType);
+            } else if (inputPath != null && !inputPath.trim().isEmpty()) {
+                job = batchProcessingService.submitFile(inputPath, errorType);
+            } else {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Input is required");
+                error.put("message", "Please upload a file or provide an inputPath");
+                return ResponseEntity.badRequest().body(error);
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("message", "Batch processing initiated");
+            result.put("jobId", job.getJobId());
+            result.put("job", job);
+            return ResponseEntity.accepted().body(result);
+
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Batch submission failed");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * List batch jobs
+     */
+    @GetMapping("/batch")
+    public ResponseEntity<Map<String, Object>> listBatchJobs() {
         Map<String, Object> result = new HashMap<>();
         result.put("success", true);
-        result.put("message", "Batch processing initiated");
+        result.put("jobs", batchProcessingService.getJobs());
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Get batch job progress
+     */
+    @GetMapping("/batch/{jobId}")
+    public ResponseEntity<?> getBatchJob(@PathVariable String jobId) {
+        BatchJob job = batchProcessingService.getJob(jobId);
+        if (job == null) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Job not found");
+            error.put("message", "No batch job with id " + jobId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("job", job);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Resume a failed or interrupted batch job from its last checkpoint
+     */
+    @PostMapping("/batch/{jobId}/resume")
+    public ResponseEntity<?> resumeBatchJob(@PathVariable String jobId) {
+        try {
+            BatchJob job = batchProcessingService.resume(jobId);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("message", "Batch processing resumed");
+            result.put("job", job);
+            return ResponseEntity.accepted().body(result);
+
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Batch resume failed");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * Download the corrected file of a completed batch job
+     */
+    @GetMapping("/batch/{jobId}/output")
+    public ResponseEntity<?> downloadBatchOutput(@PathVariable String jobId) throws IOException {
+        BatchJob job = batchProcessingService.getJob(jobId);
+        Path outputFile = job == null ? null : batchProcessingService.getOutput(job);
+        if (job == null || job.getStatus() != BatchJobStatus.COMPLETED || outputFile == null) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Output not available");
+            error.put("message", job == null ? "No batch job with id " + jobId
+                    : outputFile == null ? "Job output is outside the batch work directory" : "Job status is " + job.getStatus());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+
+        Resource output = new FileSystemResource(outputFile);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + jobId + "-corrected.dat\"")
+                .body(output);
+    }
+
+    /**
+     * Download the correction report of the job's latest run
+     */
+    @GetMapping("/batch/{jobId}/report")
+    public ResponseEntity<?> downloadBatchReport(@PathVariable String jobId) throws IOException {
+        Path report = batchProcessingService.getJob(jobId) == null ? null : correctionReportService.latestReport(jobId);
+        if (report == null) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Report not available");
+            error.put("message", "No correction report for job " + jobId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(XLSX))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + report.getFileName() + "\"")
+                .body(new FileSystemResource(report));
+    }
+
     /**
      * Get error types
      */
     @GetMapping("/errorTypes")
     public ResponseEntity<Map<String, Object>> getErrorTypes() {
-        Map<String, String> errorTypes = new HashMap<>();
-        errorTypes.put("START_DATE_END_DATE", "Start Date - End Date Issue (Event Type 1RA)");
-        errorTypes.put("GROSS_AMOUNT_ZERO", "Event Type ≠ 1RA & Gross Amount = 0");
-        errorTypes.put("FINANCING_TYPE", "Financing Type Missing");
-        errorTypes.put("ADDRESS_FIELDS", "Address Fields (1st Line, 2nd Line, City, Postal Code)");
-        errorTypes.put("BCU_NUMBER", "BCU Number Null");
-        errorTypes.put("CODE_PAYS_ASSURE", "Code Pays Assure");
-        errorTypes.put("DURATION_EXCEEDS_9999", "Duration Exceeds 9999 Days");
-
         Map<String, Object> result = new HashMap<>();
         result.put("success", true);
-        result.put("errorTypes", errorTypes);
+        result.put("errorTypes", correctionRuleRegistry.getDescriptions());
         return ResponseEntity.ok(result);
     }
 }
@@ -0,0 +1,18 @@
+package com.dailyrecycling.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Address row (pcbqtadr) of an actor
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActorAddress {
+    private String firstLineAddress;
+    private String secondLineAddress;
+    private String city;
+    private String postalCode;
+}
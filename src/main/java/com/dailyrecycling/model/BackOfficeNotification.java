@@ -0,0 +1,26 @@
+package com.dailyrecycling.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One back office action waiting in the email outbox
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BackOfficeNotification {
+
+    public enum Type {
+        BCU_NUMBER_MISSING,
+        DURATION_EXCEEDS
+    }
+
+    private Type type;
+    private String mailbox;
+    private String policyNumber;
+    private String appCode;
+    private Integer duration;
+    private long createdAt;
+}
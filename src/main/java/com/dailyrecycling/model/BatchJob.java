@@ -0,0 +1,233 @@
+package com.dailyrecycling.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State and progress counters of a batch correction job.
+ * Counters are updated by the job thread as chunks are written and read by status polls.
+ */
+public class BatchJob {
+    private final String jobId;
+    private final String inputPath;
+    private final String outputPath;
+    private final String errorType;
+    private final long totalBytes;
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong outputBytes = new AtomicLong();
+    private final AtomicLong recordsProcessed = new AtomicLong();
+    private final AtomicLong recordsCorrected = new AtomicLong();
+    private final AtomicLong recordsFailed = new AtomicLong();
+
+    private volatile BatchJobStatus status = BatchJobStatus.QUEUED;
+    private volatile long submittedAt = System.currentTimeMillis();
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile String errorMessage;
+    private volatile long checkpointedAt;
+    private volatile String reportPath;
+
+    // Counters already reached when the job was resumed, left out of the rates
+    private volatile long resumedBytes;
+    private volatile long resumedRecords;
+
+    public BatchJob(String jobId, String inputPath, String outputPath, String errorType, long totalBytes) {
+        this.jobId = jobId;
+        this.inputPath = inputPath;
+        this.outputPath = outputPath;
+        this.errorType = errorType;
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Rebuild a job from its last checkpoint
+     */
+    public static BatchJob fromCheckpoint(BatchJobCheckpoint checkpoint) {
+        BatchJob job = new BatchJob(checkpoint.getJobId(), checkpoint.getInputPath(), checkpoint.getOutputPath(),
+                checkpoint.getErrorType(), checkpoint.getTotalBytes());
+        job.status = checkpoint.getStatus();
+        job.errorMessage = checkpoint.getErrorMessage();
+        job.submittedAt = checkpoint.getSubmittedAt();
+        job.startedAt = checkpoint.getStartedAt();
+        job.finishedAt = checkpoint.getFinishedAt();
+        job.bytesRead.set(checkpoint.getBytesRead());
+        job.outputBytes.set(checkpoint.getOutputBytes());
+        job.recordsProcessed.set(checkpoint.getRecordsProcessed());
+        job.recordsCorrected.set(checkpoint.getRecordsCorrected());
+        job.recordsFailed.set(checkpoint.getRecordsFailed());
+        job.checkpointedAt = checkpoint.getCheckpointedAt();
+        return job;
+    }
+
+    /**
+     * Current state as a checkpoint
+     */
+    public BatchJobCheckpoint checkpoint() {
+        BatchJobCheckpoint checkpoint = new BatchJobCheckpoint();
+        checkpoint.setJobId(jobId);
+        checkpoint.setInputPath(inputPath);
+        checkpoint.setOutputPath(outputPath);
+        checkpoint.setErrorType(errorType);
+        checkpoint.setTotalBytes(totalBytes);
+        checkpoint.setStatus(status);
+        checkpoint.setErrorMessage(errorMessage);
+        checkpoint.setSubmittedAt(submittedAt);
+        checkpoint.setStartedAt(startedAt);
+        checkpoint.setFinishedAt(finishedAt);
+        checkpoint.setBytesRead(bytesRead.get());
+        checkpoint.setOutputBytes(outputBytes.get());
+        checkpoint.setRecordsProcessed(recordsProcessed.get());
+        checkpoint.setRecordsCorrected(recordsCorrected.get());
+        checkpoint.setRecordsFailed(recordsFailed.get());
+        checkpoint.setCheckpointedAt(checkpointedAt);
+        return checkpoint;
+    }
+
+    public void markRunning() {
+        startedAt = System.currentTimeMillis();
+        finishedAt = 0;
+        errorMessage = null;
+        status = BatchJobStatus.RUNNING;
+    }
+
+    /**
+     * Queue the job again to continue from its current counters
+     */
+    public void markResumed() {
+        resumedBytes = bytesRead.get();
+        resumedRecords = recordsProcessed.get();
+        status = BatchJobStatus.QUEUED;
+    }
+
+    public void markCompleted() {
+        finishedAt = System.currentTimeMillis();
+        status = BatchJobStatus.COMPLETED;
+    }
+
+    public void markFailed(String message) {
+        finishedAt = System.currentTimeMillis();
+        errorMessage = message;
+        status = BatchJobStatus.FAILED;
+    }
+
+    public void markCheckpointed(long time) {
+        checkpointedAt = time;
+    }
+
+    /**
+     * Account for a chunk written to the output
+     */
+    public void addChunk(long chunkBytesRead, long chunkOutputBytes, long processed, long corrected, long failed) {
+        bytesRead.addAndGet(chunkBytesRead);
+        outputBytes.addAndGet(chunkOutputBytes);
+        recordsProcessed.addAndGet(processed);
+        recordsCorrected.addAndGet(corrected);
+        recordsFailed.addAndGet(failed);
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getInputPath() {
+        return inputPath;
+    }
+
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    public String getErrorType() {
+        return errorType;
+    }
+
+    public BatchJobStatus getStatus() {
+        return status;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getOutputBytes() {
+        return outputBytes.get();
+    }
+
+    public long getCheckpointedAt() {
+        return checkpointedAt;
+    }
+
+    /**
+     * Correction report of this run, once written
+     */
+    public String getReportPath() {
+        return reportPath;
+    }
+
+    public void setReportPath(String reportPath) {
+        this.reportPath = reportPath;
+    }
+
+    public long getRecordsProcessed() {
+        return recordsProcessed.get();
+    }
+
+    public long getRecordsCorrected() {
+        return recordsCorrected.get();
+    }
+
+    public long getRecordsFailed() {
+        return recordsFailed.get();
+    }
+
+    /**
+     * Percentage of the input consumed so far (0-100)
+     */
+    public double getProgressPercent() {
+        if (status == BatchJobStatus.COMPLETED) {
+            return 100.0;
+        }
+        if (totalBytes <= 0) {
+            return 0.0;
+        }
+        return Math.min(100.0, getBytesRead() * 100.0 / totalBytes);
+    }
+
+    public long getElapsedMillis() {
+        if (startedAt == 0) {
+            return 0;
+        }
+        long end = finishedAt != 0 ? finishedAt : System.currentTimeMillis();
+        return end - startedAt;
+    }
+
+    public double getRecordsPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0.0 : (getRecordsProcessed() - resumedRecords) * 1000.0 / elapsed;
+    }
+
+    public double getMegabytesPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0.0 : (getBytesRead() - resumedBytes) / (1024.0 * 1024.0) * 1000.0 / elapsed;
+    }
+}
@@ -0,0 +1,29 @@
+package com.dailyrecycling.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Persisted state of a batch job. bytesRead and outputBytes mark the record
+ * boundary up to which the output is durable; a resumed job continues there.
+ */
+@Data
+@NoArgsConstructor
+public class BatchJobCheckpoint {
+    private String jobId;
+    private String inputPath;
+    private String outputPath;
+    private String errorType;
+    private long totalBytes;
+    private BatchJobStatus status;
+    private String errorMessage;
+    private long submittedAt;
+    private long startedAt;
+    private long finishedAt;
+    private long bytesRead;
+    private long outputBytes;
+    private long recordsProcessed;
+    private long recordsCorrected;
+    private long recordsFailed;
+    private long checkpointedAt;
+}
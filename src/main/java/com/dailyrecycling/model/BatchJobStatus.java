@@ -0,0 +1,8 @@
+package com.dailyrecycling.model;
+
+public enum BatchJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,75 @@
+package com.dailyrecycling.model;
+
+/**
+ * Sum of a policy's gross amounts (pcbqtiny) as a lookup resolved it: a sum,
+ * possibly zero; no instalment rows at all; or unknown because the lookup failed
+ */
+public final class GrossAmount {
+
+    public enum Status {
+        FOUND,
+        NO_ROWS,
+        FAILED
+    }
+
+    private static final GrossAmount ZERO = new GrossAmount(Status.FOUND, 0.0);
+    private static final GrossAmount NO_ROWS = new GrossAmount(Status.NO_ROWS, 0.0);
+    private static final GrossAmount FAILED = new GrossAmount(Status.FAILED, 0.0);
+
+    private final Status status;
+    private final double amount;
+
+    private GrossAmount(Status status, double amount) {
+        this.status = status;
+        this.amount = amount;
+    }
+
+    public static GrossAmount of(double amount) {
+        return amount == 0.0 ? ZERO : new GrossAmount(Status.FOUND, amount);
+    }
+
+    public static GrossAmount noRows() {
+        return NO_ROWS;
+    }
+
+    public static GrossAmount failed() {
+        return FAILED;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * The sum, 0 when there are no rows or the lookup failed
+     */
+    public double getAmount() {
+        return amount;
+    }
+
+    public boolean isFailed() {
+        return status == Status.FAILED;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GrossAmount)) {
+            return false;
+        }
+        GrossAmount other = (GrossAmount) o;
+        return status == other.status && Double.compare(amount, other.amount) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * status.hashCode() + Double.hashCode(amount);
+    }
+
+    @Override
+    public String toString() {
+        return status == Status.FOUND ? String.valueOf(amount) : status.name();
+    }
+}
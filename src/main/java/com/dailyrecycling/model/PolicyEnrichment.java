@@ -0,0 +1,26 @@
+package com.dailyrecycling.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Reference data of one policy, resolved in bulk for a chunk of records.
+ * Null values mean the row was not found; a null gross amount means the policy has no rows.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PolicyEnrichment {
+    private String policyNumber;
+    private Long actorId;
+    private ActorAddress address;
+    private String bcuNumber;
+    private GrossAmount grossAmount;
+
+    public static PolicyEnrichment notFound(String policyNumber) {
+        PolicyEnrichment enrichment = new PolicyEnrichment();
+        enrichment.setPolicyNumber(policyNumber);
+        return enrichment;
+    }
+}
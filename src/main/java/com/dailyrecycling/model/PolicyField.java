@@ -0,0 +1,60 @@
+package com.dailyrecycling.model;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * String properties of {@link PolicyRecord} that can be mapped to record columns
+ */
+public enum PolicyField {
+    RECORD_ID("recordId", PolicyRecord::getRecordId, PolicyRecord::setRecordId),
+    POLICY_NUMBER("policyNumber", PolicyRecord::getPolicyNumber, PolicyRecord::setPolicyNumber),
+    EVENT_TYPE("eventType", PolicyRecord::getEventType, PolicyRecord::setEventType),
+    POLICY_START_DATE("policyStartDate", PolicyRecord::getPolicyStartDate, PolicyRecord::setPolicyStartDate),
+    POLICY_END_DATE("policyEndDate", PolicyRecord::getPolicyEndDate, PolicyRecord::setPolicyEndDate),
+    DURATION_OF_INSURANCE("durationOfInsurance", PolicyRecord::getDurationOfInsurance, PolicyRecord::setDurationOfInsurance),
+    TOTAL_PREMIUM_AMOUNT("totalPremiumAmount", PolicyRecord::getTotalPremiumAmount, PolicyRecord::setTotalPremiumAmount),
+    FINANCING_TYPE("financingType", PolicyRecord::getFinancingType, PolicyRecord::setFinancingType),
+    FINANCING_RATE("financingRate", PolicyRecord::getFinancingRate, PolicyRecord::setFinancingRate),
+    FIRST_LINE_ADDRESS("firstLineAddress", PolicyRecord::getFirstLineAddress, PolicyRecord::setFirstLineAddress),
+    SECOND_LINE_ADDRESS("secondLineAddress", PolicyRecord::getSecondLineAddress, PolicyRecord::setSecondLineAddress),
+    CITY("city", PolicyRecord::getCity, PolicyRecord::setCity),
+    POSTAL_CODE("postalCode", PolicyRecord::getPostalCode, PolicyRecord::setPostalCode),
+    BCU_NUMBER("bcuNumber", PolicyRecord::getBcuNumber, PolicyRecord::setBcuNumber),
+    COUNTRY_CODE("countryCode", PolicyRecord::getCountryCode, PolicyRecord::setCountryCode),
+    GROSS_AMOUNT("grossAmount", PolicyRecord::getGrossAmount, PolicyRecord::setGrossAmount);
+
+    private final String propertyName;
+    private final Function<PolicyRecord, String> getter;
+    private final BiConsumer<PolicyRecord, String> setter;
+
+    PolicyField(String propertyName, Function<PolicyRecord, String> getter, BiConsumer<PolicyRecord, String> setter) {
+        this.propertyName = propertyName;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public String get(PolicyRecord record) {
+        return getter.apply(record);
+    }
+
+    public void set(PolicyRecord record, String value) {
+        setter.accept(record, value);
+    }
+
+    /**
+     * Find the field for a PolicyRecord property name, e.g. "policyStartDate"
+     */
+    public static PolicyField forProperty(String propertyName) {
+        for (PolicyField field : values()) {
+            if (field.propertyName.equals(propertyName)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown PolicyRecord property: " + propertyName);
+    }
+}
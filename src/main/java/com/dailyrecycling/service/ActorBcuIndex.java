@@ -0,0 +1,143 @@
+package com.dailyrecycling.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from actor ID to BCU number with primitive long keys.
+ * BCU numbers are stored as ISO-8859-1 bytes in one shared array.
+ * Not thread-safe while building; read-only use after loading is safe.
+ */
+public final class ActorBcuIndex {
+
+    private static final float MAX_LOAD = 0.7f;
+    private static final int NULL_VALUE = -1;
+
+    private int[] slots;
+    private int mask;
+
+    private long[] actorIds;
+    private int[] valueOffsets;
+    private int[] valueLengths;
+    private byte[] values;
+    private int size;
+    private int valueBytes;
+
+    public ActorBcuIndex(int expectedSize) {
+        int capacity = tableSizeFor((int) Math.ceil(Math.max(16, expectedSize) / MAX_LOAD));
+        slots = new int[capacity];
+        mask = capacity - 1;
+        actorIds = new long[Math.max(16, expectedSize)];
+        valueOffsets = new int[actorIds.length];
+        valueLengths = new int[actorIds.length];
+        values = new byte[actorIds.length * 12];
+    }
+
+    /**
+     * Map an actor to a BCU number; null values and actors mapped twice resolve to null
+     */
+    public void put(long actorId, String bcuNumber) {
+        int slot = find(actorId);
+        if (slots[slot] != 0) {
+            // Several rows for one actor: the single-row lookup treats this as missing
+            valueLengths[slots[slot] - 1] = NULL_VALUE;
+            return;
+        }
+
+        byte[] bytes = bcuNumber == null ? null : bcuNumber.getBytes(StandardCharsets.ISO_8859_1);
+        ensureEntryCapacity(bytes == null ? 0 : bytes.length);
+        int entry = size++;
+        actorIds[entry] = actorId;
+        valueOffsets[entry] = valueBytes;
+        if (bytes == null) {
+            valueLengths[entry] = NULL_VALUE;
+        } else {
+            System.arraycopy(bytes, 0, values, valueBytes, bytes.length);
+            valueLengths[entry] = bytes.length;
+            valueBytes += bytes.length;
+        }
+        slots[slot] = entry + 1;
+
+        if (size > slots.length * MAX_LOAD) {
+            rehash(slots.length * 2);
+        }
+    }
+
+    /**
+     * BCU number of the actor, null if unknown or not set
+     */
+    public String get(long actorId) {
+        int entry = slots[find(actorId)] - 1;
+        if (entry < 0 || valueLengths[entry] == NULL_VALUE) {
+            return null;
+        }
+        return new String(values, valueOffsets[entry], valueLengths[entry], StandardCharsets.ISO_8859_1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Bytes held by the index arrays
+     */
+    public long footprintBytes() {
+        return 4L * slots.length + 8L * actorIds.length + 4L * valueOffsets.length
+                + 4L * valueLengths.length + values.length;
+    }
+
+    /**
+     * Release unused capacity once loading is done
+     */
+    public void trim() {
+        actorIds = Arrays.copyOf(actorIds, Math.max(1, size));
+        valueOffsets = Arrays.copyOf(valueOffsets, Math.max(1, size));
+        valueLengths = Arrays.copyOf(valueLengths, Math.max(1, size));
+        values = Arrays.copyOf(values, valueBytes);
+    }
+
+    private int find(long actorId) {
+        int slot = hash(actorId) & mask;
+        while (true) {
+            int entry = slots[slot] - 1;
+            if (entry < 0 || actorIds[entry] == actorId) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void ensureEntryCapacity(int valueLength) {
+        if (size == actorIds.length) {
+            int capacity = actorIds.length + (actorIds.length >> 1);
+            actorIds = Arrays.copyOf(actorIds, capacity);
+            valueOffsets = Arrays.copyOf(valueOffsets, capacity);
+            valueLengths = Arrays.copyOf(valueLengths, capacity);
+        }
+        if (valueBytes + valueLength > values.length) {
+            values = Arrays.copyOf(values, Math.max(valueBytes + valueLength, values.length + (values.length >> 1)));
+        }
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        mask = capacity - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = hash(actorIds[entry]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(int n) {
+        int capacity = Integer.highestOneBit(Math.max(2, n - 1)) << 1;
+        return capacity < 0 ? 1 << 30 : capacity;
+    }
+}
@@ -0,0 +1,295 @@
+package com.dailyrecycling.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission lanes of the correction, parsing, batch and admin endpoints, each an
+ * {@link AdmissionLimiter}.
+ * Requests over a lane's limit wait in its queue for up to max-queue-wait; when the
+ * queue is full or the wait runs out they are rejected, so a burst is turned away
+ * quickly instead of piling up on the connection pools and the servlet threads.
+ * <p>
+ * The limits of the adaptive lanes follow the latency of the reference lookups
+ * ({@link DatabaseService#getLookupNanos()}): each interval, a lookup latency above
+ * latency-tolerance times the lowest one seen cuts the limits by a fifth, and a lane
+ * that reached its limit without that gets one more permit, up to its max-concurrency.
+ */
+@Service
+public class AdmissionControlService {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControlService.class);
+
+    public static final String CORRECT = "correct";
+    public static final String STREAM = "stream";
+    public static final String REACTIVE = "reactive";
+    public static final String BATCH = "batch";
+    public static final String PARSE = "parse";
+    public static final String ADMIN = "admin";
+
+    private static final double DECREASE_FACTOR = 0.8;
+
+    // Share of the gap closed each interval when lookups stay slower than the baseline,
+    // so a lasting change in database latency eventually becomes the new baseline
+    private static final double BASELINE_DRIFT = 0.01;
+
+    @Autowired
+    private DatabaseService databaseService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${admission.max-queue-wait:PT1S}")
+    private Duration maxQueueWait;
+
+    @Value("${admission.correct.max-concurrency:48}")
+    private int correctMaxConcurrency;
+
+    @Value("${admission.correct.queue-size:64}")
+    private int correctQueueSize;
+
+    @Value("${admission.stream.max-concurrency:4}")
+    private int streamMaxConcurrency;
+
+    @Value("${admission.stream.queue-size:0}")
+    private int streamQueueSize;
+
+    @Value("${admission.reactive.max-concurrency:256}")
+    private int reactiveMaxConcurrency;
+
+    @Value("${admission.reactive.queue-size:32}")
+    private int reactiveQueueSize;
+
+    @Value("${admission.batch.max-concurrency:2}")
+    private int batchMaxConcurrency;
+
+    @Value("${admission.batch.queue-size:0}")
+    private int batchQueueSize;
+
+    @Value("${admission.parse.max-concurrency:8}")
+    private int parseMaxConcurrency;
+
+    @Value("${admission.parse.queue-size:16}")
+    private int parseQueueSize;
+
+    @Value("${admission.admin.max-concurrency:2}")
+    private int adminMaxConcurrency;
+
+    @Value("${admission.admin.queue-size:0}")
+    private int adminQueueSize;
+
+    @Value("${admission.adaptive.enabled:true}")
+    private boolean adaptive;
+
+    @Value("${admission.adaptive.interval:PT1S}")
+    private Duration adaptiveInterval;
+
+    @Value("${admission.adaptive.min-concurrency:4}")
+    private int minConcurrency;
+
+    @Value("${admission.adaptive.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    @Value("${admission.adaptive.min-samples:10}")
+    private int minSamples;
+
+    @Value("${server.tomcat.threads.max:200}")
+    private int servletThreads;
+
+    private final Map<String, AdmissionLimiter> lanes = new LinkedHashMap<>();
+    private final Map<String, Timer> waitTimers = new LinkedHashMap<>();
+
+    // Adjuster thread only, read by getStats
+    private volatile long baselineNanos;
+    private volatile long lastLatencyNanos;
+    private long lastLookupCount;
+    private long lastLookupNanos;
+
+    private ScheduledExecutorService adjuster;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        addLane(new AdmissionLimiter(CORRECT, correctMaxConcurrency, correctQueueSize));
+        addLane(new AdmissionLimiter(STREAM, streamMaxConcurrency, streamQueueSize));
+        addLane(new AdmissionLimiter(REACTIVE, reactiveMaxConcurrency, reactiveQueueSize));
+        addLane(new AdmissionLimiter(BATCH, batchMaxConcurrency, batchQueueSize));
+        addLane(new AdmissionLimiter(PARSE, parseMaxConcurrency, parseQueueSize));
+        addLane(new AdmissionLimiter(ADMIN, adminMaxConcurrency, adminQueueSize));
+        checkThreadBudget();
+
+        if (adaptive && !adaptiveInterval.isZero()) {
+            lastLookupCount = databaseService.getLookupCount();
+            lastLookupNanos = databaseService.getLookupNanos();
+            adjuster = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "admission-adjuster");
+                thread.setDaemon(true);
+                return thread;
+            });
+            adjuster.scheduleWithFixedDelay(this::adjustLimits, adaptiveInterval.toMillis(),
+                    adaptiveInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (adjuster != null) {
+            adjuster.shutdownNow();
+        }
+    }
+
+    /**
+     * Limiter of the lane, null if admission control is off or there is no such lane
+     */
+    public AdmissionLimiter getLane(String lane) {
+        return lanes.get(lane);
+    }
+
+    /**
+     * Take a permit of the lane, waiting up to max-queue-wait, and count a rejection
+     */
+    public AdmissionLimiter.Result acquire(AdmissionLimiter limiter) throws InterruptedException {
+        long start = System.nanoTime();
+        AdmissionLimiter.Result result = limiter.acquire(maxQueueWait.toNanos());
+        waitTimers.get(limiter.getLane()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (result != AdmissionLimiter.Result.ADMITTED) {
+            rejections(limiter, result).increment();
+        }
+        return result;
+    }
+
+    /**
+     * Limit, load and rejection counters of each lane, plus the lookup latencies
+     * the adaptive limits follow
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("adaptive", adjuster != null);
+        stats.put("lookupLatencyMicros", lastLatencyNanos / 1000);
+        stats.put("baselineLatencyMicros", baselineNanos / 1000);
+        Map<String, Object> laneStats = new LinkedHashMap<>();
+        for (AdmissionLimiter limiter : lanes.values()) {
+            Map<String, Object> lane = new LinkedHashMap<>();
+            lane.put("limit", limiter.getLimit());
+            lane.put("maxConcurrency", limiter.getMaxConcurrency());
+            lane.put("inFlight", limiter.getInFlight());
+            lane.put("queued", limiter.getWaiting());
+            lane.put("queueSize", limiter.getQueueSize());
+            lane.put("rejectedQueueFull", rejections(limiter, AdmissionLimiter.Result.QUEUE_FULL).count());
+            lane.put("rejectedTimedOut", rejections(limiter, AdmissionLimiter.Result.TIMED_OUT).count());
+            laneStats.put(limiter.getLane(), lane);
+        }
+        stats.put("lanes", laneStats);
+        return stats;
+    }
+
+    private void addLane(AdmissionLimiter limiter) {
+        String lane = limiter.getLane();
+        lanes.put(lane, limiter);
+        Gauge.builder("recycling.admission.limit", limiter, AdmissionLimiter::getLimit)
+                .description("Requests of the lane allowed to run at once")
+                .tag("lane", lane)
+                .register(meterRegistry);
+        Gauge.builder("recycling.admission.in.flight", limiter, AdmissionLimiter::getInFlight)
+                .description("Requests of the lane running")
+                .tag("lane", lane)
+                .register(meterRegistry);
+        Gauge.builder("recycling.admission.queued", limiter, AdmissionLimiter::getWaiting)
+                .description("Requests of the lane waiting for a permit")
+                .tag("lane", lane)
+                .register(meterRegistry);
+        waitTimers.put(lane, Timer.builder("recycling.admission.wait")
+                .description("Time requests waited for a permit, admitted or not")
+                .tag("lane", lane)
+                .register(meterRegistry));
+        rejections(limiter, AdmissionLimiter.Result.QUEUE_FULL);
+        rejections(limiter, AdmissionLimiter.Result.TIMED_OUT);
+    }
+
+    private Counter rejections(AdmissionLimiter limiter, AdmissionLimiter.Result reason) {
+        return Counter.builder("recycling.admission.rejected")
+                .description("Requests turned away because the lane and its queue were full, or the wait ran out")
+                .tag("lane", limiter.getLane())
+                .tag("reason", reason == AdmissionLimiter.Result.QUEUE_FULL ? "queue_full" : "timed_out")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Waiting requests hold a servlet thread, and so do running ones except on the
+     * reactive lane; warn if the lanes can take all of them
+     */
+    private void checkThreadBudget() {
+        int threads = 0;
+        for (AdmissionLimiter limiter : lanes.values()) {
+            threads += limiter.getQueueSize();
+            if (!REACTIVE.equals(limiter.getLane())) {
+                threads += limiter.getMaxConcurrency();
+            }
+        }
+        if (threads >= servletThreads) {
+            log.warn("Admission lanes can hold {} of the {} servlet threads; health checks and other "
+                    + "endpoints may go unanswered under load", threads, servletThreads);
+        }
+    }
+
+    private void adjustLimits() {
+        try {
+            long lookupCount = databaseService.getLookupCount();
+            long lookupNanos = databaseService.getLookupNanos();
+            long samples = lookupCount - lastLookupCount;
+            long nanos = lookupNanos - lastLookupNanos;
+            lastLookupCount = lookupCount;
+            lastLookupNanos = lookupNanos;
+
+            boolean congested = false;
+            if (samples >= minSamples) {
+                long latency = nanos / samples;
+                lastLatencyNanos = latency;
+                long baseline = baselineNanos;
+                if (baseline == 0 || latency < baseline) {
+                    baselineNanos = latency;
+                } else {
+                    congested = latency > baseline * latencyTolerance;
+                    baselineNanos = baseline + (long) ((latency - baseline) * BASELINE_DRIFT);
+                }
+            }
+
+            for (String lane : new String[] {CORRECT, REACTIVE}) {
+                AdmissionLimiter limiter = lanes.get(lane);
+                int limit = limiter.getLimit();
+                boolean saturated = limiter.takePeakInFlight() >= limit;
+                if (congested && limit > minConcurrency) {
+                    limiter.setLimit(Math.max(minConcurrency, (int) (limit * DECREASE_FACTOR)));
+                    log.debug("Lookup latency {} us over baseline {} us, {} limit lowered to {}",
+                            lastLatencyNanos / 1000, baselineNanos / 1000, lane, limiter.getLimit());
+                } else if (!congested && saturated && limit < limiter.getMaxConcurrency()) {
+                    limiter.setLimit(limit + 1);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Admission limit adjustment failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.dailyrecycling.service;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit of one admission lane with a bounded wait queue. A request
+ * runs if fewer than {@link #getLimit()} requests of the lane are running and none
+ * is waiting, waits in the queue if there is room, and is turned away otherwise.
+ * Waiters are admitted in arrival order. The limit can be changed while requests run.
+ */
+public final class AdmissionLimiter {
+
+    public enum Result {
+        ADMITTED,
+        QUEUE_FULL,
+        TIMED_OUT
+    }
+
+    private final String lane;
+    private final int maxConcurrency;
+    private final int queueSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+
+    private int limit;
+    private int inFlight;
+    private int waiting;
+    private int peakInFlight;
+
+    public AdmissionLimiter(String lane, int maxConcurrency, int queueSize) {
+        if (maxConcurrency < 1 || queueSize < 0) {
+            throw new IllegalArgumentException("Invalid admission limits of lane " + lane);
+        }
+        this.lane = lane;
+        this.maxConcurrency = maxConcurrency;
+        this.queueSize = queueSize;
+        this.limit = maxConcurrency;
+    }
+
+    /**
+     * Take a permit, waiting at most maxWaitNanos for one. Every admitted request
+     * must {@link #release()} its permit.
+     */
+    public Result acquire(long maxWaitNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            if (waiting == 0 && inFlight < limit) {
+                admit();
+                return Result.ADMITTED;
+            }
+            if (waiting >= queueSize) {
+                return Result.QUEUE_FULL;
+            }
+            waiting++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= limit) {
+                    if (remaining <= 0) {
+                        return Result.TIMED_OUT;
+                    }
+                    remaining = permitReleased.awaitNanos(remaining);
+                }
+                admit();
+                return Result.ADMITTED;
+            } finally {
+                waiting--;
+                if (inFlight < limit) {
+                    // A waiter that gave up may have been the one signalled
+                    permitReleased.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            permitReleased.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getLane() {
+        return lane;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set the concurrency limit, kept between 1 and the lane's maximum. Requests
+     * already running above a lowered limit finish; new ones wait until they have.
+     */
+    public void setLimit(int newLimit) {
+        lock.lock();
+        try {
+            limit = Math.max(1, Math.min(maxConcurrency, newLimit));
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Most requests running at once since the previous call
+     */
+    public int takePeakInFlight() {
+        lock.lock();
+        try {
+            int peak = peakInFlight;
+            peakInFlight = inFlight;
+            return peak;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void admit() {
+        inFlight++;
+        peakInFlight = Math.max(peakInFlight, inFlight);
+    }
+}
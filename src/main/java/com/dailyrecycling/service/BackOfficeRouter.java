@@ -0,0 +1,166 @@
+package com.dailyrecycling.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Routes app codes to back office mailboxes. Rules are "pattern=mailbox"
+ * pairs matched anywhere in the app code; when several patterns match, the
+ * rule listed first wins. Patterns are compiled once into an Aho-Corasick
+ * automaton, so a lookup is a single allocation-free pass over the app code.
+ */
+@Component
+public class BackOfficeRouter {
+
+    private static final int NO_RULE = Integer.MAX_VALUE;
+
+    @Value("${email.routing.rules}")
+    private List<String> rules;
+
+    @Value("${email.routing.default-mailbox:backoffice.default@example.com}")
+    private String defaultMailbox;
+
+    @Value("${email.routing.cache-size:10000}")
+    private long cacheSize;
+
+    private String[] mailboxes;
+
+    // charClasses[c] is the alphabet index of c, 0 for chars in no pattern
+    private int[] charClasses;
+    private int alphabetSize;
+    // transitions[state * alphabetSize + charClass] = next state
+    private int[] transitions;
+    // Lowest rule index matched on reaching a state, NO_RULE if none
+    private int[] matchedRules;
+
+    private Cache<String, String> routes;
+    private final Function<String, String> matcher = code -> match(code, 0, code.length());
+
+    @PostConstruct
+    void init() {
+        List<String> patterns = new ArrayList<>();
+        List<String> targets = new ArrayList<>();
+        for (String rule : rules) {
+            int separator = rule.indexOf('=');
+            if (separator <= 0 || separator == rule.length() - 1) {
+                throw new IllegalStateException("Invalid email routing rule: " + rule);
+            }
+            patterns.add(rule.substring(0, separator).trim());
+            targets.add(rule.substring(separator + 1).trim());
+        }
+        mailboxes = targets.toArray(new String[0]);
+        compile(patterns);
+        routes = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * Mailbox of the app code, memoized per app code
+     */
+    public String route(String appCode) {
+        if (appCode == null) {
+            return defaultMailbox;
+        }
+        return routes.get(appCode, matcher);
+    }
+
+    /**
+     * Mailbox for chars [from, to) of the text, without memoization or allocation
+     */
+    public String match(CharSequence text, int from, int to) {
+        int state = 0;
+        int rule = NO_RULE;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            int charClass = c < charClasses.length ? charClasses[c] : 0;
+            state = transitions[state * alphabetSize + charClass];
+            if (matchedRules[state] < rule) {
+                rule = matchedRules[state];
+                if (rule == 0) {
+                    break;
+                }
+            }
+        }
+        return rule == NO_RULE ? defaultMailbox : mailboxes[rule];
+    }
+
+    private void compile(List<String> patterns) {
+        TreeSet<Character> alphabet = new TreeSet<>();
+        for (String pattern : patterns) {
+            if (pattern.isEmpty()) {
+                throw new IllegalStateException("Empty email routing pattern");
+            }
+            for (int i = 0; i < pattern.length(); i++) {
+                alphabet.add(pattern.charAt(i));
+            }
+        }
+        charClasses = new int[alphabet.isEmpty() ? 0 : alphabet.last() + 1];
+        alphabetSize = 1;
+        for (char c : alphabet) {
+            charClasses[c] = alphabetSize++;
+        }
+
+        // Trie of the patterns
+        List<Map<Integer, Integer>> children = new ArrayList<>();
+        List<Integer> rulesAt = new ArrayList<>();
+        children.add(new HashMap<>());
+        rulesAt.add(NO_RULE);
+        for (int rule = 0; rule < patterns.size(); rule++) {
+            String pattern = patterns.get(rule);
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int charClass = charClasses[pattern.charAt(i)];
+                Integer next = children.get(state).get(charClass);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(charClass, next);
+                    children.add(new HashMap<>());
+                    rulesAt.add(NO_RULE);
+                }
+                state = next;
+            }
+            rulesAt.set(state, Math.min(rulesAt.get(state), rule));
+        }
+
+        // Breadth-first over the trie: fill in failure transitions and inherit matches
+        int states = children.size();
+        transitions = new int[states * alphabetSize];
+        matchedRules = new int[states];
+        int[] failure = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        matchedRules[0] = rulesAt.get(0);
+        for (int charClass = 0; charClass < alphabetSize; charClass++) {
+            Integer next = children.get(0).get(charClass);
+            if (next != null) {
+                transitions[charClass] = next;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            matchedRules[state] = Math.min(rulesAt.get(state), matchedRules[failure[state]]);
+            for (int charClass = 0; charClass < alphabetSize; charClass++) {
+                Integer next = children.get(state).get(charClass);
+                int fallback = transitions[failure[state] * alphabetSize + charClass];
+                if (next != null) {
+                    transitions[state * alphabetSize + charClass] = next;
+                    failure[next] = fallback;
+                    queue.add(next);
+                } else {
+                    transitions[state * alphabetSize + charClass] = fallback;
+                }
+            }
+        }
+    }
+}
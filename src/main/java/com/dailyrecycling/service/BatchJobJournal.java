@@ -0,0 +1,90 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.BatchJobCheckpoint;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Durable batch job checkpoints, one JSON file per job in the jobs directory
+ * of the batch work dir. Files are replaced atomically, so a crash leaves
+ * either the previous checkpoint or the new one.
+ */
+@Component
+public class BatchJobJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchJobJournal.class);
+
+    private static final String SUFFIX = ".json";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${batch.work-dir:${java.io.tmpdir}/daily-recycling}")
+    private String workDir;
+
+    /**
+     * Persist the checkpoint, replacing the job's previous one
+     */
+    public void save(BatchJobCheckpoint checkpoint) throws IOException {
+        Path file = file(checkpoint.getJobId());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer content = ByteBuffer.wrap(objectMapper.writeValueAsBytes(checkpoint));
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Last checkpoint of the job, null if it has none
+     */
+    public BatchJobCheckpoint load(String jobId) throws IOException {
+        Path file = file(jobId);
+        return Files.isRegularFile(file) ? objectMapper.readValue(file.toFile(), BatchJobCheckpoint.class) : null;
+    }
+
+    /**
+     * Every readable checkpoint; unreadable files are logged and skipped
+     */
+    public List<BatchJobCheckpoint> loadAll() throws IOException {
+        List<BatchJobCheckpoint> checkpoints = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory(), "*" + SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    checkpoints.add(objectMapper.readValue(file.toFile(), BatchJobCheckpoint.class));
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable batch job checkpoint {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        return checkpoints;
+    }
+
+    private Path file(String jobId) throws IOException {
+        return directory().resolve(jobId + SUFFIX);
+    }
+
+    private Path directory() throws IOException {
+        return Files.createDirectories(Paths.get(workDir, "jobs"));
+    }
+}
@@ -0,0 +1,675 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.BackOfficeNotification;
+import com.dailyrecycling.model.BatchJob;
+import com.dailyrecycling.model.BatchJobCheckpoint;
+import com.dailyrecycling.model.BatchJobStatus;
+import com.dailyrecycling.model.PolicyEnrichment;
+import com.dailyrecycling.model.PolicyRecord;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams memory-mapped fixed-width files in chunks through the parser and
+ * the error corrections, writing the corrected file as it goes. Reference
+ * data for a chunk is resolved with one bulk query.
+ * Chunks are corrected in parallel on the worker pool and written back in
+ * input order; the number of chunks in flight per job is bounded.
+ * Records are patched in a reused buffer, so unchanged fields are never decoded.
+ * Progress is checkpointed to the {@link BatchJobJournal} at intervals; a failed
+ * or interrupted job resumes from its last checkpoint. Back office notifications
+ * are held back until the records that raised them are checkpointed, so a
+ * resumed job never sends them twice.
+ * Each run writes a {@link CorrectionReport} of the records it corrected as it goes.
+ */
+@Service
+public class BatchProcessingService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchProcessingService.class);
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private static final int RECORD_BUFFER_SIZE = 8192;
+
+    private static final String INTERRUPTED = "Interrupted before completion";
+
+    @Autowired
+    private FixedWidthParser fixedWidthParser;
+
+    @Autowired
+    private ErrorCorrectionService errorCorrectionService;
+
+    @Autowired
+    private DatabaseService databaseService;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private BatchJobJournal journal;
+
+    @Autowired
+    private CorrectionResultCache correctionResultCache;
+
+    @Autowired
+    private CorrectionReportService correctionReportService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("batchExecutor")
+    private TaskExecutor batchExecutor;
+
+    @Autowired
+    @Qualifier("batchWorkerExecutor")
+    private ThreadPoolTaskExecutor batchWorkerExecutor;
+
+    @Value("${batch.work-dir:${java.io.tmpdir}/daily-recycling}")
+    private String workDir;
+
+    @Value("${batch.input-dir:${batch.work-dir:${java.io.tmpdir}/daily-recycling}/input}")
+    private String inputDir;
+
+    @Value("${batch.charset:ISO-8859-1}")
+    private String charsetName;
+
+    @Value("${batch.io-buffer-size:1048576}")
+    private int ioBufferSize;
+
+    @Value("${batch.map-window-size:268435456}")
+    private int mapWindowSize;
+
+    @Value("${batch.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${batch.max-in-flight-chunks:0}")
+    private int maxInFlightChunks;
+
+    @Value("${batch.checkpoint.interval:PT10S}")
+    private Duration checkpointInterval;
+
+    @Value("${batch.checkpoint.resume-interrupted:true}")
+    private boolean resumeInterrupted;
+
+    private final Map<String, BatchJob> jobs = new ConcurrentHashMap<>();
+
+    private Timer checkpointTimer;
+
+    /**
+     * Reload jobs from the journal; jobs still running or queued when the
+     * application stopped are marked failed, ready to be resumed
+     */
+    @PostConstruct
+    void restoreJobs() throws IOException {
+        checkpointTimer = Timer.builder("recycling.batch.checkpoint")
+                .description("Time to make a batch job's output durable and record its checkpoint")
+                .register(meterRegistry);
+        for (BatchJobCheckpoint checkpoint : journal.loadAll()) {
+            if (checkpoint.getStatus() == BatchJobStatus.RUNNING || checkpoint.getStatus() == BatchJobStatus.QUEUED) {
+                checkpoint.setStatus(BatchJobStatus.FAILED);
+                checkpoint.setErrorMessage(INTERRUPTED);
+                checkpoint.setFinishedAt(Math.max(checkpoint.getStartedAt(), checkpoint.getCheckpointedAt()));
+                journal.save(checkpoint);
+            }
+            jobs.put(checkpoint.getJobId(), BatchJob.fromCheckpoint(checkpoint));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void resumeInterruptedJobs() {
+        if (!resumeInterrupted) {
+            return;
+        }
+        for (BatchJob job : getJobs()) {
+            if (job.getStatus() == BatchJobStatus.FAILED && INTERRUPTED.equals(job.getErrorMessage())) {
+                try {
+                    resume(job.getJobId());
+                } catch (Exception e) {
+                    log.warn("Cannot resume batch job {}: {}", job.getJobId(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Start a batch job over an uploaded file
+     */
+    public BatchJob submitUpload(MultipartFile file, String errorType) throws IOException {
+        String jobId = newJobId();
+        Path input = uploadFile(jobId);
+        file.transferTo(input);
+        return submit(jobId, input, errorType);
+    }
+
+    /**
+     * Start a batch job over a file of the batch input directory; inputPath is
+     * relative to it, or absolute but inside it
+     */
+    public BatchJob submitFile(String inputPath, String errorType) throws IOException {
+        Path input = inputDirectory().resolve(inputPath).normalize();
+        if (!isInputFile(input)) {
+            throw new IllegalArgumentException("Input file not found in the batch input directory: " + inputPath);
+        }
+        return submit(newJobId(), input, errorType);
+    }
+
+    public BatchJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    public Collection<BatchJob> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    /**
+     * Continue a failed job from its last checkpoint
+     */
+    public BatchJob resume(String jobId) throws IOException {
+        BatchJob current = jobs.get(jobId);
+        if (current == null) {
+            throw new IllegalArgumentException("No batch job with id " + jobId);
+        }
+        if (current.getStatus() != BatchJobStatus.FAILED) {
+            throw new IllegalStateException("Job status is " + current.getStatus());
+        }
+        BatchJobCheckpoint checkpoint = journal.load(jobId);
+        if (checkpoint == null) {
+            throw new IllegalStateException("No checkpoint for job " + jobId);
+        }
+        // The journal is only trusted to name the job's upload or a file of the input directory
+        Path input = Paths.get(checkpoint.getInputPath()).toAbsolutePath().normalize();
+        if (!input.equals(uploadFile(jobId)) && !isInputFile(input)) {
+            throw new IllegalStateException("Input file is outside the batch directories: " + input);
+        }
+        Path output = outputFile(jobId);
+        if (!output.equals(Paths.get(checkpoint.getOutputPath()).toAbsolutePath().normalize())) {
+            throw new IllegalStateException("Output file is outside the batch work directory: " + checkpoint.getOutputPath());
+        }
+        if (!Files.isRegularFile(input) || Files.size(input) != checkpoint.getTotalBytes()) {
+            throw new IllegalStateException("Input file is missing or changed: " + input);
+        }
+
+        BatchJob job = BatchJob.fromCheckpoint(checkpoint);
+        job.markResumed();
+        if (!jobs.replace(jobId, current, job)) {
+            throw new IllegalStateException("Job " + jobId + " is already being resumed");
+        }
+        log.info("Batch job {} resuming at byte {} after {} records", jobId, job.getBytesRead(), job.getRecordsProcessed());
+        batchExecutor.execute(() -> run(job, input, output));
+        return job;
+    }
+
+    /**
+     * Corrected file of the job, null if the job's output is not where batch jobs write it
+     */
+    public Path getOutput(BatchJob job) throws IOException {
+        Path output = outputFile(job.getJobId());
+        return output.equals(Paths.get(job.getOutputPath()).toAbsolutePath().normalize()) ? output : null;
+    }
+
+    private BatchJob submit(String jobId, Path input, String errorType) throws IOException {
+        Path output = outputFile(jobId);
+        BatchJob job = new BatchJob(jobId, input.toString(), output.toString(), errorType, Files.size(input));
+        journal.save(job.checkpoint());
+        jobs.put(jobId, job);
+
+        batchExecutor.execute(() -> run(job, input, output));
+        return job;
+    }
+
+    private void run(BatchJob job, Path input, Path output) {
+        job.markRunning();
+        log.info("Batch job {} started: {} -> {}", job.getJobId(), input, output);
+
+        Charset charset = Charset.forName(charsetName);
+        int maxInFlight = maxInFlightChunks > 0 ? maxInFlightChunks : 2 * batchWorkerExecutor.getMaxPoolSize();
+        Deque<Future<ChunkResult>> inFlight = new ArrayDeque<>(maxInFlight);
+        // Notifications of chunks written since the last checkpoint
+        List<BackOfficeNotification> unreleased = new ArrayList<>();
+        BatchJobCheckpoint lastCheckpoint = job.checkpoint();
+        CorrectionReport report = null;
+        try {
+            if (charset.newEncoder().maxBytesPerChar() > 1) {
+                throw new IllegalStateException("Batch charset must be single-byte: " + charsetName);
+            }
+            report = correctionReportService.open(job.getJobId(), System.currentTimeMillis());
+
+            try (MappedRecordReader reader = new MappedRecordReader(input, mapWindowSize);
+                 FileChannel channel = openOutput(output, job.getOutputBytes())) {
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), ioBufferSize);
+                reader.seek(job.getBytesRead());
+                long nextCheckpointAt = System.currentTimeMillis() + checkpointInterval.toMillis();
+                try {
+                    List<PendingRecord> chunk = new ArrayList<>(chunkSize);
+                    while (reader.next()) {
+                        chunk.add(new PendingRecord(reader.buffer(), reader.recordOffset(),
+                                reader.recordLength(), reader.terminatorLength()));
+                        if (chunk.size() == chunkSize) {
+                            if (inFlight.size() == maxInFlight) {
+                                // Backpressure: wait for the oldest chunk before reading further
+                                writeChunk(job, inFlight.poll(), out, unreleased, report);
+                                if (System.currentTimeMillis() >= nextCheckpointAt) {
+                                    lastCheckpoint = checkpoint(job, out, channel, unreleased, report);
+                                    nextCheckpointAt = System.currentTimeMillis() + checkpointInterval.toMillis();
+                                }
+                            }
+                            inFlight.add(submitChunk(job, chunk, charset, report != null));
+                            chunk = new ArrayList<>(chunkSize);
+                        }
+                    }
+                    if (!chunk.isEmpty()) {
+                        inFlight.add(submitChunk(job, chunk, charset, report != null));
+                    }
+                    while (!inFlight.isEmpty()) {
+                        writeChunk(job, inFlight.poll(), out, unreleased, report);
+                    }
+
+                    job.markCompleted();
+                    lastCheckpoint = checkpoint(job, out, channel, unreleased, report);
+                } catch (Exception e) {
+                    for (Future<ChunkResult> pending : inFlight) {
+                        pending.cancel(true);
+                    }
+                    // Chunks written in full are still valid: keep them for the resume
+                    try {
+                        lastCheckpoint = checkpoint(job, out, channel, unreleased, report);
+                    } catch (Exception checkpointFailure) {
+                        log.warn("Batch job {} could not checkpoint after failing: {}",
+                                job.getJobId(), checkpointFailure.getMessage());
+                    }
+                    throw e;
+                }
+            }
+
+            log.info("Batch job {} completed: {} records, {} corrected, {} failed in {} ms",
+                    job.getJobId(), job.getRecordsProcessed(), job.getRecordsCorrected(),
+                    job.getRecordsFailed(), job.getElapsedMillis());
+        } catch (Exception e) {
+            log.error("Batch job {} failed", job.getJobId(), e);
+            job.markFailed(e instanceof ExecutionException ? e.getCause().getMessage() : e.getMessage());
+            lastCheckpoint.setStatus(BatchJobStatus.FAILED);
+            lastCheckpoint.setErrorMessage(job.getErrorMessage());
+            lastCheckpoint.setFinishedAt(job.getFinishedAt());
+            try {
+                journal.save(lastCheckpoint);
+            } catch (IOException journalFailure) {
+                log.error("Batch job {} could not record its failure", job.getJobId(), journalFailure);
+            }
+        } finally {
+            if (report != null) {
+                finishReport(job, report, unreleased);
+            }
+        }
+    }
+
+    /**
+     * Complete the run's report, listing notifications that were never released
+     */
+    private static void finishReport(BatchJob job, CorrectionReport report, List<BackOfficeNotification> unreleased) {
+        try {
+            report.addNotifications(new ArrayList<>(unreleased), CorrectionReport.NOT_RELEASED);
+            if (report.finish()) {
+                job.setReportPath(report.getPath().toString());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Batch job {} interrupted while finishing its report", job.getJobId());
+        }
+    }
+
+    /**
+     * Open the output truncated to the bytes already checkpointed, positioned at its end
+     */
+    private static FileChannel openOutput(Path output, long outputBytes) throws IOException {
+        FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < outputBytes) {
+                throw new IOException("Output " + output + " is shorter than its checkpoint of " + outputBytes + " bytes");
+            }
+            channel.truncate(outputBytes);
+            channel.position(outputBytes);
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Make the output written so far durable, record it in the journal,
+     * then release the notifications of the records it covers
+     */
+    private BatchJobCheckpoint checkpoint(BatchJob job, OutputStream out, FileChannel channel,
+                                          List<BackOfficeNotification> unreleased, CorrectionReport report)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        out.flush();
+        channel.force(false);
+        job.markCheckpointed(System.currentTimeMillis());
+        BatchJobCheckpoint checkpoint = job.checkpoint();
+        journal.save(checkpoint);
+        checkpointTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        emailService.release(unreleased);
+        if (report != null) {
+            report.addNotifications(new ArrayList<>(unreleased), CorrectionReport.QUEUED);
+        }
+        unreleased.clear();
+        return checkpoint;
+    }
+
+    private Future<ChunkResult> submitChunk(BatchJob job, List<PendingRecord> chunk, Charset charset,
+                                            boolean reporting) {
+        return batchWorkerExecutor.submit(() -> processChunk(job, chunk, charset, reporting));
+    }
+
+    /**
+     * Write a finished chunk, waiting for it if needed, and count it once written in full
+     */
+    private static void writeChunk(BatchJob job, Future<ChunkResult> future, OutputStream out,
+                                   List<BackOfficeNotification> unreleased, CorrectionReport report)
+            throws IOException, InterruptedException, ExecutionException {
+        ChunkResult result = future.get();
+        result.output.writeTo(out);
+        if (report != null) {
+            report.addRows(job.getRecordsProcessed(), result.reportRows);
+        }
+        job.addChunk(result.bytesRead, result.output.size(), result.processed, result.corrected, result.failed);
+        unreleased.addAll(result.notifications);
+    }
+
+    /**
+     * Parse a chunk of records, resolve the reference data of those the rule detectors
+     * flag in one bulk lookup, then correct them into a chunk-local buffer in input order.
+     * If reporting, also collects the report rows of the records corrected.
+     */
+    private ChunkResult processChunk(BatchJob job, List<PendingRecord> chunk, Charset charset, boolean reporting)
+            throws IOException {
+        boolean referenceData = errorCorrectionService.requiresReferenceData(job.getErrorType());
+        // Cache keys are ISO-8859-1 bytes, shared with the single-record endpoints
+        boolean cacheResults = correctionResultCache.isEnabled() && charset.equals(StandardCharsets.ISO_8859_1);
+        long stamp = correctionResultCache.stamp();
+        ChunkResult result = new ChunkResult();
+        Set<String> policyNumbers = new HashSet<>();
+        for (PendingRecord pending : chunk) {
+            result.bytesRead += pending.length + pending.terminatorLength;
+            if (pending.length == 0) {
+                continue;
+            }
+            result.processed++;
+            if (cacheResults) {
+                pending.cachedResult = correctionResultCache.lookup(pending.buffer, pending.offset, pending.length,
+                        job.getErrorType());
+                if (pending.cachedResult != null) {
+                    continue;
+                }
+            }
+            try {
+                pending.policyRecord = fixedWidthParser.parseRecord(pending.buffer, pending.offset, pending.length, charset);
+                if (referenceData && pending.policyRecord.getPolicyNumber() != null
+                        && errorCorrectionService.requiresReferenceData(pending.policyRecord, job.getErrorType())) {
+                    policyNumbers.add(pending.policyRecord.getPolicyNumber());
+                }
+            } catch (Exception e) {
+                result.failed++;
+            }
+        }
+
+        Map<String, PolicyEnrichment> enrichments = Collections.emptyMap();
+        if (!policyNumbers.isEmpty()) {
+            enrichments = databaseService.getEnrichmentByPolicyNumbers(policyNumbers);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(result.bytesRead, Integer.MAX_VALUE - 8));
+        result.output = out;
+        byte[] recordBuffer = new byte[RECORD_BUFFER_SIZE];
+        byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+        long record = 0;
+        for (PendingRecord pending : chunk) {
+            if (pending.length == 0) {
+                copy(pending.buffer, pending.offset + pending.length, pending.terminatorLength, out, copyBuffer);
+                continue;
+            }
+            record++;
+            if (pending.cachedResult != null) {
+                byte[] cached = pending.cachedResult.getCorrected();
+                if (cached == CorrectionResultCache.UNCHANGED) {
+                    copy(pending.buffer, pending.offset, pending.length, out, copyBuffer);
+                } else {
+                    result.corrected++;
+                    out.write(cached);
+                    if (reporting) {
+                        // Cached results raise no notifications
+                        addReportRow(result, record, pending, charset, pending.cachedResult.getRules(), cached, null);
+                    }
+                }
+                copy(pending.buffer, pending.offset + pending.length, pending.terminatorLength, out, copyBuffer);
+                continue;
+            }
+
+            String rules = null;
+            List<BackOfficeNotification> raised = Collections.emptyList();
+            if (pending.policyRecord != null) {
+                String policyNumber = pending.policyRecord.getPolicyNumber();
+                PolicyEnrichment enrichment = enrichments.get(policyNumber);
+                CorrectionContext context;
+                if (enrichment != null) {
+                    context = CorrectionContext.prefetched(enrichment);
+                } else if (policyNumber == null || policyNumbers.contains(policyNumber)) {
+                    context = CorrectionContext.prefetched(PolicyEnrichment.notFound(policyNumber));
+                } else {
+                    // Not flagged up front; still resolves lookups an earlier correction turns out to need
+                    context = errorCorrectionService.newContext(pending.policyRecord);
+                }
+                int notificationCount = result.notifications.size();
+                try {
+                    emailService.deferring(result.notifications, () ->
+                            errorCorrectionService.applyCorrections(pending.policyRecord, job.getErrorType(), context));
+                    if (!context.getAppliedRules().isEmpty()) {
+                        rules = String.join(",", context.getAppliedRules());
+                    }
+                    raised = result.notifications.subList(notificationCount, result.notifications.size());
+                } catch (Exception e) {
+                    // The record is copied through unchanged: drop what its rules raised before failing
+                    result.notifications.subList(notificationCount, result.notifications.size()).clear();
+                    log.warn("Batch job {} could not correct the record of policy {}, copied unchanged",
+                            job.getJobId(), policyNumber, e);
+                    result.failed++;
+                    pending.policyRecord = null;
+                }
+            }
+
+            if (recordBuffer.length < pending.length) {
+                recordBuffer = new byte[pending.length];
+            }
+            byte[] corrected = writeRecord(result, pending, charset, recordBuffer, out, copyBuffer,
+                    cacheResults || reporting);
+            if (corrected != null && cacheResults) {
+                correctionResultCache.store(pending.buffer, pending.offset, pending.length, job.getErrorType(),
+                        corrected, rules, stamp);
+            }
+            if (reporting && corrected != null && (corrected != CorrectionResultCache.UNCHANGED || !raised.isEmpty())) {
+                addReportRow(result, record, pending, charset, rules, corrected, raised);
+            }
+            copy(pending.buffer, pending.offset + pending.length, pending.terminatorLength, out, copyBuffer);
+        }
+        return result;
+    }
+
+    /**
+     * Report row of a corrected record: the fields whose columns changed and the notifications it raised
+     */
+    private void addReportRow(ChunkResult result, long record, PendingRecord pending, Charset charset, String rules,
+                              byte[] corrected, List<BackOfficeNotification> raised) {
+        List<CorrectionReport.Change> changes = corrected == CorrectionResultCache.UNCHANGED
+                ? Collections.<CorrectionReport.Change>emptyList()
+                : correctionReportService.changes(pending.buffer, pending.offset, pending.length, corrected, charset);
+        String policyNumber = pending.policyRecord != null ? pending.policyRecord.getPolicyNumber()
+                : correctionReportService.policyNumber(pending.buffer, pending.offset, pending.length, charset);
+        String notifications = null;
+        if (raised != null && !raised.isEmpty()) {
+            StringBuilder types = new StringBuilder();
+            for (BackOfficeNotification notification : raised) {
+                if (types.length() > 0) {
+                    types.append(',');
+                }
+                types.append(notification.getType().name());
+            }
+            notifications = types.toString();
+        }
+        result.reportRows.add(new CorrectionReport.Row(record, policyNumber, rules, changes, notifications));
+    }
+
+    /**
+     * Write a corrected record; records that failed to parse or correct are copied through unchanged.
+     * If keep is set, returns the corrected bytes, or UNCHANGED, for the result cache and the report.
+     */
+    private byte[] writeRecord(ChunkResult result, PendingRecord pending, Charset charset, byte[] recordBuffer,
+                               OutputStream out, byte[] copyBuffer, boolean keep) throws IOException {
+        MappedPolicyRecord policyRecord = pending.policyRecord;
+        if (policyRecord == null) {
+            copy(pending.buffer, pending.offset, pending.length, out, copyBuffer);
+            return null;
+        }
+
+        if (charset.equals(StandardCharsets.ISO_8859_1) && fixedWidthParser.canUpdateInPlace(policyRecord, pending.length)) {
+            boolean changed = fixedWidthParser.updateRecord(policyRecord, recordBuffer);
+            out.write(recordBuffer, 0, pending.length);
+            if (!changed) {
+                return keep ? CorrectionResultCache.UNCHANGED : null;
+            }
+            result.corrected++;
+            return keep ? Arrays.copyOf(recordBuffer, pending.length) : null;
+        }
+
+        String record = policyRecord.getRawRecord();
+        String correctedRecord = fixedWidthParser.updateRecord(record, policyRecord);
+        if (correctedRecord.equals(record)) {
+            copy(pending.buffer, pending.offset, pending.length, out, copyBuffer);
+            return keep ? CorrectionResultCache.UNCHANGED : null;
+        }
+        result.corrected++;
+        byte[] corrected = correctedRecord.getBytes(charset);
+        out.write(corrected);
+        return keep ? corrected : null;
+    }
+
+    private static void copy(ByteBuffer buffer, int offset, int length, OutputStream out, byte[] copyBuffer)
+            throws IOException {
+        ByteBuffer source = buffer.duplicate();
+        source.position(offset);
+        int remaining = length;
+        while (remaining > 0) {
+            int chunk = Math.min(remaining, copyBuffer.length);
+            source.get(copyBuffer, 0, chunk);
+            out.write(copyBuffer, 0, chunk);
+            remaining -= chunk;
+        }
+    }
+
+    private Path workDirectory() throws IOException {
+        return Files.createDirectories(Paths.get(workDir)).toAbsolutePath().normalize();
+    }
+
+    private Path inputDirectory() throws IOException {
+        return Files.createDirectories(Paths.get(inputDir)).toAbsolutePath().normalize();
+    }
+
+    private Path uploadFile(String jobId) throws IOException {
+        return workDirectory().resolve(jobId + "-input.dat");
+    }
+
+    private Path outputFile(String jobId) throws IOException {
+        return workDirectory().resolve(jobId + "-corrected.dat");
+    }
+
+    /**
+     * Whether the normalized path is a regular file inside the input directory,
+     * also once symbolic links are followed
+     */
+    private boolean isInputFile(Path input) throws IOException {
+        Path directory = inputDirectory();
+        return input.startsWith(directory) && Files.isRegularFile(input)
+                && input.toRealPath().startsWith(directory.toRealPath());
+    }
+
+    private static String newJobId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Record of the current chunk, still pointing into the mapped input
+     */
+    private static final class PendingRecord {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int length;
+        private final int terminatorLength;
+        private MappedPolicyRecord policyRecord;
+        private CorrectionResultCache.Result cachedResult;
+
+        private PendingRecord(ByteBuffer buffer, int offset, int length, int terminatorLength) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+            this.terminatorLength = terminatorLength;
+        }
+    }
+
+    /**
+     * Corrected bytes of one chunk, ready to be appended to the output, with its
+     * counters and held back notifications
+     */
+    private static final class ChunkResult {
+        private ByteArrayOutputStream output;
+        private long bytesRead;
+        private long processed;
+        private long corrected;
+        private long failed;
+        private final List<BackOfficeNotification> notifications = new ArrayList<>();
+        private final List<CorrectionReport.Row> reportRows = new ArrayList<>();
+    }
+}
@@ -0,0 +1,132 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.ActorAddress;
+import com.dailyrecycling.model.GrossAmount;
+import com.dailyrecycling.model.PolicyEnrichment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reference data of the record being corrected, shared by all corrections.
+ * Values are fetched at most once, on first use, or come prefetched from a
+ * bulk lookup. Actor ID, address and BCU number are loaded together by one
+ * joined query; the gross amount is loaded separately.
+ * Also records which rules ran on the record.
+ */
+public class CorrectionContext {
+
+    private final DatabaseService databaseService;
+    private final String policyNumber;
+
+    private boolean actorReferenceLoaded;
+    private Long actorId;
+    private ActorAddress address;
+    private String bcuNumber;
+
+    private boolean grossAmountLoaded;
+    private GrossAmount grossAmount;
+
+    private List<String> appliedRules;
+
+    private CorrectionContext(DatabaseService databaseService, String policyNumber) {
+        this.databaseService = databaseService;
+        this.policyNumber = policyNumber;
+    }
+
+    /**
+     * Context that queries the database lazily for the given policy
+     */
+    public static CorrectionContext forPolicy(DatabaseService databaseService, String policyNumber) {
+        return new CorrectionContext(databaseService, policyNumber);
+    }
+
+    /**
+     * Context answered from a prefetched actor reference and, if the reference has one, gross amount;
+     * anything not prefetched is queried lazily as in {@link #forPolicy}
+     */
+    public static CorrectionContext prefetched(DatabaseService databaseService, PolicyEnrichment reference) {
+        CorrectionContext context = new CorrectionContext(databaseService, reference.getPolicyNumber());
+        context.setActorReference(reference);
+        if (reference.getGrossAmount() != null) {
+            context.grossAmount = reference.getGrossAmount();
+            context.grossAmountLoaded = true;
+        }
+        return context;
+    }
+
+    /**
+     * Context answered entirely from a bulk lookup result
+     */
+    public static CorrectionContext prefetched(PolicyEnrichment enrichment) {
+        CorrectionContext context = new CorrectionContext(null, enrichment.getPolicyNumber());
+        context.setActorReference(enrichment);
+        context.grossAmountLoaded = true;
+        context.grossAmount = enrichment.getGrossAmount() != null ? enrichment.getGrossAmount() : GrossAmount.noRows();
+        return context;
+    }
+
+    public String getPolicyNumber() {
+        return policyNumber;
+    }
+
+    public Long getActorId() {
+        loadActorReference();
+        return actorId;
+    }
+
+    /**
+     * Address row of the policy's actor, null if there is no actor or address
+     */
+    public ActorAddress getAddress() {
+        loadActorReference();
+        return address;
+    }
+
+    /**
+     * BCU number of the policy's actor, null if there is no actor or BCU number
+     */
+    public String getBcuNumber() {
+        loadActorReference();
+        return bcuNumber;
+    }
+
+    /**
+     * Sum of the policy's gross amounts, telling zero from no rows and from a failed lookup
+     */
+    public GrossAmount getGrossAmount() {
+        if (!grossAmountLoaded) {
+            grossAmount = databaseService.getGrossAmountByPolicyNumber(policyNumber);
+            grossAmountLoaded = true;
+        }
+        return grossAmount;
+    }
+
+    /**
+     * Names of the rules that ran their correction on the record, in run order
+     */
+    public List<String> getAppliedRules() {
+        return appliedRules != null ? appliedRules : Collections.<String>emptyList();
+    }
+
+    public void ruleApplied(String name) {
+        if (appliedRules == null) {
+            appliedRules = new ArrayList<>(2);
+        }
+        appliedRules.add(name);
+    }
+
+    private void loadActorReference() {
+        if (!actorReferenceLoaded) {
+            setActorReference(databaseService.getActorReferenceByPolicyNumber(policyNumber));
+        }
+    }
+
+    private void setActorReference(PolicyEnrichment reference) {
+        actorId = reference.getActorId();
+        address = reference.getAddress();
+        bcuNumber = reference.getBcuNumber();
+        actorReferenceLoaded = true;
+    }
+}
@@ -0,0 +1,275 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.BackOfficeNotification;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.xssf.streaming.SXSSFRow;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskExecutor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Spreadsheet of the records one run of a batch job corrected, written while the
+ * job runs. The job thread hands over rows chunk by chunk through a bounded queue;
+ * a writer thread appends them to a streaming workbook that keeps only the last
+ * rows of each sheet in memory and flushes older ones to a temporary file. A slow
+ * writer blocks the job thread, so memory stays bounded whatever the run's size.
+ * <p>
+ * The "Corrections" sheet has one row per changed field, or one row for a record
+ * that only raised notifications. The "Notifications" sheet lists the back office
+ * notifications of the run as they are released at checkpoints. A full sheet
+ * continues in "Corrections 2", "Notifications 2" and so on.
+ */
+public class CorrectionReport {
+
+    private static final Logger log = LoggerFactory.getLogger(CorrectionReport.class);
+
+    /** Notification handed to the email outbox at a checkpoint */
+    public static final String QUEUED = "QUEUED";
+
+    /** Notification held back because the run ended before its records were checkpointed */
+    public static final String NOT_RELEASED = "NOT_RELEASED";
+
+    private static final String[] CORRECTION_HEADERS =
+            {"Record", "Policy number", "Error type", "Field", "Before", "After", "Notification"};
+    private static final int[] CORRECTION_WIDTHS = {10, 24, 32, 22, 40, 40, 24};
+
+    private static final String[] NOTIFICATION_HEADERS = {"Policy number", "Notification", "Mailbox", "Status"};
+    private static final int[] NOTIFICATION_WIDTHS = {24, 24, 32, 16};
+
+    private static final int MAX_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
+
+    private static final Runnable END = () -> { };
+
+    private final Path path;
+    private final int maxRows;
+    private final Path tempPath;
+    private final BlockingQueue<Runnable> queue;
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    // Owned by the writer thread
+    private final SXSSFWorkbook workbook;
+    private final CellStyle headerStyle;
+    private SXSSFSheet corrections;
+    private int correctionSheets;
+    private int correctionRow;
+    private SXSSFSheet notifications;
+    private int notificationSheets;
+    private int notificationRow;
+    private long rowsWritten;
+
+    private volatile Exception failure;
+
+    CorrectionReport(Path path, int rowWindow, int queueCapacity, TaskExecutor executor) {
+        this(path, rowWindow, queueCapacity, executor, MAX_ROWS);
+    }
+
+    /**
+     * @param maxRows rows per sheet, header included
+     */
+    CorrectionReport(Path path, int rowWindow, int queueCapacity, TaskExecutor executor, int maxRows) {
+        this.path = path;
+        this.maxRows = maxRows;
+        this.tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workbook = new SXSSFWorkbook(rowWindow);
+        workbook.setCompressTempFiles(true);
+        Font bold = workbook.createFont();
+        bold.setBold(true);
+        headerStyle = workbook.createCellStyle();
+        headerStyle.setFont(bold);
+        corrections = sheet("Corrections", CORRECTION_HEADERS, CORRECTION_WIDTHS);
+        correctionSheets = 1;
+        correctionRow = 1;
+        notifications = sheet("Notifications", NOTIFICATION_HEADERS, NOTIFICATION_WIDTHS);
+        notificationSheets = 1;
+        notificationRow = 1;
+        executor.execute(this::write);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Append the rows of one chunk; record numbers in the rows count from firstRecord
+     */
+    public void addRows(long firstRecord, List<Row> rows) throws InterruptedException {
+        if (!rows.isEmpty()) {
+            queue.put(() -> writeRows(firstRecord, rows));
+        }
+    }
+
+    /**
+     * List notifications of the run with their status
+     */
+    public void addNotifications(List<BackOfficeNotification> released, String status) throws InterruptedException {
+        if (!released.isEmpty()) {
+            queue.put(() -> writeNotifications(released, status));
+        }
+    }
+
+    /**
+     * Write out the workbook once the queued rows are in and wait for it.
+     * Returns false if the report could not be written.
+     */
+    public boolean finish() throws InterruptedException {
+        queue.put(END);
+        finished.await();
+        return failure == null;
+    }
+
+    private void write() {
+        try {
+            Runnable task;
+            while ((task = queue.take()) != END) {
+                if (failure == null) {
+                    try {
+                        task.run();
+                    } catch (Exception e) {
+                        // Keep draining so the job thread never blocks on a full queue
+                        failure = e;
+                    }
+                }
+            }
+            if (failure == null) {
+                try (OutputStream out = Files.newOutputStream(tempPath)) {
+                    workbook.write(out);
+                }
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                log.info("Correction report {} written: {} rows", path, rowsWritten);
+            }
+        } catch (Exception e) {
+            failure = e;
+        } finally {
+            if (failure != null) {
+                log.warn("Correction report {} could not be written: {}", path, failure.getMessage());
+                try {
+                    Files.deleteIfExists(tempPath);
+                } catch (IOException ignored) {
+                    // Only the temporary file is left behind
+                }
+            }
+            workbook.dispose();
+            try {
+                workbook.close();
+            } catch (IOException ignored) {
+                // Nothing left to release once disposed
+            }
+            finished.countDown();
+        }
+    }
+
+    private void writeRows(long firstRecord, List<Row> rows) {
+        for (Row row : rows) {
+            long record = firstRecord + row.record;
+            if (row.changes.isEmpty()) {
+                writeCorrection(record, row, null, null, null);
+            }
+            for (Change change : row.changes) {
+                writeCorrection(record, row, change.field, change.before, change.after);
+            }
+        }
+    }
+
+    private void writeCorrection(long record, Row row, String field, String before, String after) {
+        if (correctionRow == maxRows) {
+            correctionSheets++;
+            corrections = sheet("Corrections " + correctionSheets, CORRECTION_HEADERS, CORRECTION_WIDTHS);
+            correctionRow = 1;
+        }
+        SXSSFRow sheetRow = corrections.createRow(correctionRow++);
+        sheetRow.createCell(0).setCellValue(record);
+        set(sheetRow, 1, row.policyNumber);
+        set(sheetRow, 2, row.errorTypes);
+        set(sheetRow, 3, field);
+        set(sheetRow, 4, before);
+        set(sheetRow, 5, after);
+        set(sheetRow, 6, row.notifications);
+        rowsWritten++;
+    }
+
+    private void writeNotifications(List<BackOfficeNotification> released, String status) {
+        for (BackOfficeNotification notification : released) {
+            if (notificationRow == maxRows) {
+                notificationSheets++;
+                notifications = sheet("Notifications " + notificationSheets, NOTIFICATION_HEADERS, NOTIFICATION_WIDTHS);
+                notificationRow = 1;
+            }
+            SXSSFRow sheetRow = notifications.createRow(notificationRow++);
+            set(sheetRow, 0, notification.getPolicyNumber());
+            set(sheetRow, 1, notification.getType().name());
+            set(sheetRow, 2, notification.getMailbox());
+            set(sheetRow, 3, status);
+            rowsWritten++;
+        }
+    }
+
+    private SXSSFSheet sheet(String name, String[] headers, int[] widths) {
+        SXSSFSheet sheet = workbook.createSheet(name);
+        SXSSFRow header = sheet.createRow(0);
+        for (int i = 0; i < headers.length; i++) {
+            header.createCell(i).setCellValue(headers[i]);
+            header.getCell(i).setCellStyle(headerStyle);
+            sheet.setColumnWidth(i, widths[i] * 256);
+        }
+        sheet.createFreezePane(0, 1);
+        return sheet;
+    }
+
+    private static void set(SXSSFRow row, int column, String value) {
+        if (value != null && !value.isEmpty()) {
+            row.createCell(column).setCellValue(value);
+        }
+    }
+
+    /**
+     * One corrected record: its changed fields and the notifications it raised
+     */
+    public static final class Row {
+        private final long record;
+        private final String policyNumber;
+        private final String errorTypes;
+        private final List<Change> changes;
+        private final String notifications;
+
+        /**
+         * @param record number of the record within its chunk, counting from 1
+         */
+        public Row(long record, String policyNumber, String errorTypes, List<Change> changes, String notifications) {
+            this.record = record;
+            this.policyNumber = policyNumber;
+            this.errorTypes = errorTypes;
+            this.changes = changes;
+            this.notifications = notifications;
+        }
+    }
+
+    /**
+     * A field value before and after correction, trimmed
+     */
+    public static final class Change {
+        private final String field;
+        private final String before;
+        private final String after;
+
+        public Change(String field, String before, String after) {
+            this.field = field;
+            this.before = before;
+            this.after = after;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.PolicyField;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Opens the {@link CorrectionReport} of each batch job run and finds the reports
+ * of a job. Reports are written to batch.work-dir/reports as
+ * {jobId}-{run start}.xlsx, one per run: a resumed job gets a new report
+ * covering the records of the resumed run.
+ */
+@Service
+public class CorrectionReportService {
+
+    private static final String EXTENSION = ".xlsx";
+
+    @Autowired
+    private RecordLayout recordLayout;
+
+    @Autowired
+    @Qualifier("batchReportExecutor")
+    private TaskExecutor batchReportExecutor;
+
+    @Value("${batch.work-dir:${java.io.tmpdir}/daily-recycling}")
+    private String workDir;
+
+    @Value("${batch.report.enabled:true}")
+    private boolean enabled;
+
+    @Value("${batch.report.row-window:100}")
+    private int rowWindow;
+
+    @Value("${batch.report.queue-capacity:16}")
+    private int queueCapacity;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start the report of a run of a job, or return null if reports are disabled
+     */
+    public CorrectionReport open(String jobId, long runStartedAt) throws IOException {
+        if (!enabled) {
+            return null;
+        }
+        String runStart = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date(runStartedAt));
+        Path path = reportDirectory().resolve(jobId + "-" + runStart + EXTENSION);
+        return new CorrectionReport(path, rowWindow, queueCapacity, batchReportExecutor);
+    }
+
+    /**
+     * Report of the most recent finished run of a job, or null if there is none
+     */
+    public Path latestReport(String jobId) throws IOException {
+        Path directory = Paths.get(workDir, "reports");
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        List<Path> reports = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, jobId + "-*" + EXTENSION)) {
+            for (Path file : files) {
+                reports.add(file);
+            }
+        }
+        // Run start timestamps have a fixed width, so names sort by time
+        return reports.isEmpty() ? null : Collections.max(reports);
+    }
+
+    /**
+     * Fields whose column differs between the original record and its corrected bytes
+     */
+    public List<CorrectionReport.Change> changes(ByteBuffer buffer, int offset, int length, byte[] corrected,
+                                                 Charset charset) {
+        List<CorrectionReport.Change> changes = new ArrayList<>(2);
+        int limit = Math.min(length, corrected.length);
+        int columns = recordLayout.presentColumns(limit);
+        for (int i = 0; i < columns; i++) {
+            RecordLayout.Column column = recordLayout.column(i);
+            if (!column.isPresentIn(limit)) {
+                break;
+            }
+            if (!sameBytes(buffer, offset + column.getStart(), corrected, column.getStart(), column.getLength())) {
+                changes.add(new CorrectionReport.Change(column.getField().getPropertyName(),
+                        text(buffer, offset + column.getStart(), column.getLength(), charset),
+                        new String(corrected, column.getStart(), column.getLength(), charset).trim()));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Policy number of a raw record, null if the record is too short to hold one
+     */
+    public String policyNumber(ByteBuffer buffer, int offset, int length, Charset charset) {
+        RecordLayout.Column column = recordLayout.column(PolicyField.POLICY_NUMBER);
+        if (column == null || !column.isPresentIn(length)) {
+            return null;
+        }
+        return text(buffer, offset + column.getStart(), column.getLength(), charset);
+    }
+
+    private Path reportDirectory() throws IOException {
+        return Files.createDirectories(Paths.get(workDir, "reports"));
+    }
+
+    private static boolean sameBytes(ByteBuffer buffer, int offset, byte[] bytes, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != bytes[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String text(ByteBuffer buffer, int offset, int length, Charset charset) {
+        byte[] bytes = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(offset);
+        source.get(bytes);
+        return new String(bytes, charset).trim();
+    }
+}
@@ -0,0 +1,314 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.PolicyField;
+import com.dailyrecycling.model.PolicyRecord;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Corrected records keyed by the content of the raw record and the error type,
+ * so records re-sent by upstream systems are answered without parsing, reference
+ * lookups or back office emails. Records are keyed by two XXH64 hashes of their
+ * ISO-8859-1 bytes; the cache is bounded in bytes and entries expire after a TTL,
+ * never longer than the reference data cache's, so a fix made to the reference
+ * tables reaches cached results as soon as it reaches fresh corrections.
+ * Results cached by the single-record endpoints also keep the field values the
+ * corrections set, so a hit returns the same parsed record as a fresh correction.
+ * <p>
+ * Callers take a {@link #stamp()} before correcting and pass it to {@code store};
+ * the result is dropped if the cache was invalidated or a reference query failed
+ * in between, so results resting on stale or missing reference data are never kept.
+ */
+@Component
+public class CorrectionResultCache {
+
+    /** Cached result of a record that needs no change */
+    public static final byte[] UNCHANGED = new byte[0];
+
+    private static final long SEED1 = 0;
+    private static final long SEED2 = 0x5DEECE66DL;
+
+    // Entry overhead besides the corrected bytes: key, value, array header and map node
+    private static final int ENTRY_OVERHEAD = 128;
+
+    // Per changed field: array slots plus a short value string
+    private static final int CHANGE_OVERHEAD = 64;
+
+    private static final PolicyField[] NO_FIELDS = new PolicyField[0];
+
+    @Autowired
+    private DatabaseService databaseService;
+
+    @Autowired
+    private FixedWidthParser fixedWidthParser;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${correction.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${correction.cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${correction.cache.ttl:PT24H}")
+    private Duration ttl;
+
+    @Value("${reference.cache.ttl:PT30M}")
+    private Duration referenceTtl;
+
+    private Cache<Key, Result> results;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        results = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, Result value) -> value.weight())
+                .expireAfterWrite(effectiveTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, results, "correctionResults");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Version of the cached state; changes when the cache is invalidated or a reference query fails
+     */
+    public long stamp() {
+        // Both counters only grow, so their sum changes whenever either does
+        return generation.get() + databaseService.getFailureCount();
+    }
+
+    /**
+     * Cached correction of a record, or null if not cached
+     */
+    public Result lookup(ByteBuffer buffer, int offset, int length, String errorType) {
+        if (!enabled || errorType == null) {
+            return null;
+        }
+        return results.getIfPresent(key(buffer, offset, length, errorType));
+    }
+
+    /**
+     * Cache the corrected bytes of a record, or {@link #UNCHANGED}, and the names of the
+     * rules that ran on it, unless the stamp is outdated
+     */
+    public void store(ByteBuffer buffer, int offset, int length, String errorType, byte[] corrected,
+                      String rules, long stamp) {
+        if (!enabled || errorType == null || stamp != stamp()) {
+            return;
+        }
+        results.put(key(buffer, offset, length, errorType), new Result(corrected, rules, null, null));
+    }
+
+    /**
+     * Cached correction of a record, or null if not cached with its field values
+     */
+    public Hit lookup(String record, String errorType) {
+        if (!enabled || errorType == null || !isLatin1(record)) {
+            return null;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(record.getBytes(StandardCharsets.ISO_8859_1));
+        Result result = results.getIfPresent(key(bytes, 0, bytes.capacity(), errorType));
+        if (result == null || result.fields == null) {
+            // Batch jobs cache the corrected bytes only
+            return null;
+        }
+        String correctedRecord = result.corrected == UNCHANGED ? record : new String(result.corrected, StandardCharsets.ISO_8859_1);
+        return new Hit(correctedRecord, result.fields, result.values);
+    }
+
+    /**
+     * Cache the corrected form of a record and the field values of its corrected
+     * parsed record, unless the stamp is outdated
+     */
+    public void store(String record, String errorType, PolicyRecord policyRecord, String correctedRecord, long stamp) {
+        if (!enabled || errorType == null || !isLatin1(record) || !isLatin1(correctedRecord)) {
+            return;
+        }
+
+        PolicyRecord original = fixedWidthParser.parseRecord(record);
+        List<PolicyField> fields = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        for (PolicyField field : PolicyField.values()) {
+            String value = field.get(policyRecord);
+            if (!Objects.equals(field.get(original), value)) {
+                fields.add(field);
+                values.add(value);
+            }
+        }
+
+        ByteBuffer bytes = ByteBuffer.wrap(record.getBytes(StandardCharsets.ISO_8859_1));
+        byte[] corrected = correctedRecord.equals(record) ? UNCHANGED : correctedRecord.getBytes(StandardCharsets.ISO_8859_1);
+        if (stamp != stamp()) {
+            return;
+        }
+        results.put(key(bytes, 0, bytes.capacity(), errorType),
+                new Result(corrected, null, fields.toArray(NO_FIELDS), values.toArray(new String[0])));
+    }
+
+    /**
+     * Drop every cached result, for when reference data has changed
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        results.invalidateAll();
+    }
+
+    /**
+     * Hit, miss, eviction and size counters
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = results.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("size", results.estimatedSize());
+        result.put("weightBytes", results.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+        result.put("maxBytes", maxBytes);
+        result.put("ttl", effectiveTtl().toString());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+
+    /**
+     * correction.cache.ttl, capped at reference.cache.ttl: results rest on reference
+     * data that is only trusted for that long
+     */
+    private Duration effectiveTtl() {
+        return ttl.compareTo(referenceTtl) > 0 ? referenceTtl : ttl;
+    }
+
+    private static Key key(ByteBuffer buffer, int offset, int length, String errorType) {
+        return new Key(XxHash64.hash(buffer, offset, length, SEED1), XxHash64.hash(buffer, offset, length, SEED2),
+                errorType.toUpperCase(Locale.ROOT));
+    }
+
+    private static boolean isLatin1(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A cached correction: the corrected record and the fields the corrections set
+     */
+    public static final class Hit {
+        private final String correctedRecord;
+        private final PolicyField[] fields;
+        private final String[] values;
+
+        private Hit(String correctedRecord, PolicyField[] fields, String[] values) {
+            this.correctedRecord = correctedRecord;
+            this.fields = fields;
+            this.values = values;
+        }
+
+        public String getCorrectedRecord() {
+            return correctedRecord;
+        }
+
+        /**
+         * Set the corrected field values on a record parsed from the original
+         */
+        public void applyTo(PolicyRecord policyRecord) {
+            for (int i = 0; i < fields.length; i++) {
+                fields[i].set(policyRecord, values[i]);
+            }
+        }
+    }
+
+    /**
+     * Corrected bytes, plus the rules that ran when cached by a batch job, or the
+     * changed fields when cached by a single-record endpoint
+     */
+    public static final class Result {
+        private final byte[] corrected;
+        private final String rules;
+        private final PolicyField[] fields;
+        private final String[] values;
+
+        private Result(byte[] corrected, String rules, PolicyField[] fields, String[] values) {
+            this.corrected = corrected;
+            this.rules = rules;
+            this.fields = fields;
+            this.values = values;
+        }
+
+        /**
+         * Corrected record bytes, or {@link #UNCHANGED}
+         */
+        public byte[] getCorrected() {
+            return corrected;
+        }
+
+        /**
+         * Comma-separated names of the rules that ran, null if not recorded
+         */
+        public String getRules() {
+            return rules;
+        }
+
+        int weight() {
+            return ENTRY_OVERHEAD + corrected.length + (rules == null ? 0 : CHANGE_OVERHEAD)
+                    + (fields == null ? 0 : fields.length * CHANGE_OVERHEAD);
+        }
+    }
+
+    /**
+     * 128 bits of record hash plus the error type
+     */
+    private static final class Key {
+        private final long hash1;
+        private final long hash2;
+        private final String errorType;
+
+        private Key(long hash1, long hash2, String errorType) {
+            this.hash1 = hash1;
+            this.hash2 = hash2;
+            this.errorType = errorType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash1 == other.hash1 && hash2 == other.hash2 && errorType.equals(other.errorType);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash1 ^ (hash1 >>> 32)) * 31 + errorType.hashCode();
+        }
+    }
+}
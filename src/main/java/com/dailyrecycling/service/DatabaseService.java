@@ -1,25 +1,80 @@
 package com.dailyrecycling.service;
 
+import com.dailyrecycling.model.ActorAddress;
+import com.dailyrecycling.model.GrossAmount;
+import com.dailyrecycling.model.PolicyEnrichment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
-import java.util.List;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
+/**
+ * Reference data lookups, answered from the preload index, the gross amount index
+ * or the reference data cache when possible and from {@link ReferenceDataDao}
+ * otherwise. The find* variants never block and query {@link ReactiveReferenceDataDao} instead.
+ */
 @Service
 public class DatabaseService {
 
+    private static final Logger log = LoggerFactory.getLogger(DatabaseService.class);
+
+    @Autowired
+    private ReferenceDataDao referenceDataDao;
+
+    @Autowired
+    private ReactiveReferenceDataDao reactiveReferenceDataDao;
+
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
+    @Autowired
+    private ReferencePreloadService referencePreloadService;
+
     @Autowired
-    private JdbcTemplate jdbcTemplate;
+    private GrossAmountIndexService grossAmountIndexService;
+
+    /**
+     * Number of reference queries that failed so far; results computed while it
+     * changes may rest on missing reference data
+     */
+    public long getFailureCount() {
+        return referenceDataDao.getFailureCount() + reactiveReferenceDataDao.getFailureCount();
+    }
+
+    /**
+     * Number of single-record reference queries run against the database so far,
+     * over JDBC and R2DBC; chunk lookups of batch jobs are not counted
+     */
+    public long getLookupCount() {
+        return referenceDataDao.getLookupCount() + reactiveReferenceDataDao.getLookupCount();
+    }
+
+    /**
+     * Total time spent in the queries counted by {@link #getLookupCount()}
+     */
+    public long getLookupNanos() {
+        return referenceDataDao.getLookupNanos() + reactiveReferenceDataDao.getLookupNanos();
+    }
 
     /**
      * Get actor ID using policy number
      */
     public Long getActorIdByPolicyNumber(String policyNumber) {
-        String sql = "SELECT id_actor FROM pcb.pcbqtaso WHERE policy_number = ?";
+        if (policyNumber == null) {
+            return null;
+        }
+        ReferenceIndex index = referencePreloadService.getIndex();
+        if (index != null) {
+            return index.getActorId(policyNumber);
+        }
         try {
-            return jdbcTemplate.queryForObject(sql, Long.class, policyNumber);
+            return referenceDataCache.actorIds().get(policyNumber, referenceDataDao::findActorId).orElse(null);
         } catch (Exception e) {
             return null;
         }
@@ -28,11 +83,12 @@ public class DatabaseService {
     /**
      * Get address details using actor ID
      */
-    public Map<String, Object> getAddressByActorId(Long actorId) {
-        String sql = "SELECT * FROM pcb.pcbqtadr WHERE id_actor = ?";
+    public ActorAddress getAddressByActorId(Long actorId) {
+        if (actorId == null) {
+            return null;
+        }
         try {
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, actorId);
-            return results.isEmpty() ? null : results.get(0);
+            return referenceDataCache.addresses().get(actorId, referenceDataDao::findAddress).orElse(null);
         } catch (Exception e) {
             return null;
         }
@@ -42,23 +98,164 @@ public class DatabaseService {
      * Get BCU number using actor ID
      */
     public String getBcuNumberByActorId(Long actorId) {
-        String sql = "SELECT bcu_number FROM pcb.pcbqtaco WHERE id_actor = ?";
+        if (actorId == null) {
+            return null;
+        }
+        ReferenceIndex index = referencePreloadService.getIndex();
+        if (index != null) {
+            return index.getBcuNumber(actorId);
+        }
         try {
-            return jdbcTemplate.queryForObject(sql, String.class, actorId);
+            return referenceDataCache.bcuNumbers().get(actorId, referenceDataDao::findBcuNumber).orElse(null);
         } catch (Exception e) {
             return null;
         }
     }
 
     /**
-     * Get gross amount sum for policy numbers
+     * Get gross amount sum for policy numbers; {@link GrossAmount#failed()} if it could not be looked up
+     */
+    public GrossAmount getGrossAmountByPolicyNumber(String policyNumber) {
+        if (policyNumber == null) {
+            return GrossAmount.noRows();
+        }
+        GrossAmount indexed = grossAmountIndexService.get(policyNumber);
+        if (indexed != null) {
+            return indexed;
+        }
+        try {
+            return referenceDataDao.findGrossAmount(policyNumber).map(GrossAmount::of).orElse(GrossAmount.noRows());
+        } catch (Exception e) {
+            return GrossAmount.failed();
+        }
+    }
+
+    /**
+     * Get actor, address, BCU number and gross amount for a chunk of policy numbers
+     * in a single round trip; gross amounts come from the gross amount index once it
+     * is loaded. Policies without an actor are returned with null values. If the
+     * lookup fails, policies are returned without actor and with a failed gross amount.
+     */
+    public Map<String, PolicyEnrichment> getEnrichmentByPolicyNumbers(Collection<String> policyNumbers) {
+        if (policyNumbers.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        boolean indexed = grossAmountIndexService.isLoaded();
+        Map<String, PolicyEnrichment> enrichments;
+        try {
+            enrichments = indexed
+                    ? referenceDataDao.findActorReferences(policyNumbers)
+                    : referenceDataDao.findEnrichments(policyNumbers);
+        } catch (Exception e) {
+            log.warn("Bulk lookup of {} policies failed", policyNumbers.size(), e);
+            enrichments = new HashMap<>();
+            for (String policyNumber : policyNumbers) {
+                PolicyEnrichment enrichment = PolicyEnrichment.notFound(policyNumber);
+                enrichment.setGrossAmount(GrossAmount.failed());
+                enrichments.put(policyNumber, enrichment);
+            }
+        }
+        if (indexed) {
+            for (PolicyEnrichment enrichment : enrichments.values()) {
+                GrossAmount grossAmount = grossAmountIndexService.get(enrichment.getPolicyNumber());
+                if (grossAmount != null) {
+                    enrichment.setGrossAmount(grossAmount);
+                }
+            }
+        }
+        return enrichments;
+    }
+
+    /**
+     * Get actor ID, address and BCU number of one policy in a single round trip.
+     * The gross amount is not included.
      */
-    public Double getGrossAmountByPolicyNumber(String policyNumber) {
-        String sql = "SELECT SUM(amount_gross) FROM pcb.pcbqtiny WHERE policy_number = ? GROUP BY policy_number";
+    public PolicyEnrichment getActorReferenceByPolicyNumber(String policyNumber) {
+        if (policyNumber == null) {
+            return PolicyEnrichment.notFound(null);
+        }
+        ReferenceIndex index = referencePreloadService.getIndex();
+        if (index != null) {
+            return indexedActorReference(index, policyNumber);
+        }
         try {
-            return jdbcTemplate.queryForObject(sql, Double.class, policyNumber);
+            return referenceDataCache.actorReferences().get(policyNumber, referenceDataDao::findActorReference);
         } catch (Exception e) {
-            return 0.0;
+            return PolicyEnrichment.notFound(policyNumber);
+        }
+    }
+
+    /**
+     * Non-blocking {@link #getActorReferenceByPolicyNumber}; failed lookups complete
+     * with a not-found result like the blocking one
+     */
+    public Mono<PolicyEnrichment> findActorReference(String policyNumber) {
+        if (policyNumber == null) {
+            return Mono.just(PolicyEnrichment.notFound(null));
+        }
+        ReferenceIndex index = referencePreloadService.getIndex();
+        if (index != null) {
+            Long actorId = index.getActorId(policyNumber);
+            if (actorId == null) {
+                return Mono.just(PolicyEnrichment.notFound(policyNumber));
+            }
+            return findAddress(actorId).map(address -> {
+                PolicyEnrichment enrichment = PolicyEnrichment.notFound(policyNumber);
+                enrichment.setActorId(actorId);
+                enrichment.setAddress(address.orElse(null));
+                enrichment.setBcuNumber(index.getBcuNumber(actorId));
+                return enrichment;
+            });
+        }
+
+        PolicyEnrichment cached = referenceDataCache.actorReferences().getIfPresent(policyNumber);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return reactiveReferenceDataDao.findActorReference(policyNumber)
+                .defaultIfEmpty(PolicyEnrichment.notFound(policyNumber))
+                .doOnNext(enrichment -> referenceDataCache.actorReferences().put(policyNumber, enrichment))
+                .onErrorResume(e -> Mono.just(PolicyEnrichment.notFound(policyNumber)));
+    }
+
+    /**
+     * Non-blocking {@link #getGrossAmountByPolicyNumber}
+     */
+    public Mono<GrossAmount> findGrossAmount(String policyNumber) {
+        if (policyNumber == null) {
+            return Mono.just(GrossAmount.noRows());
+        }
+        GrossAmount indexed = grossAmountIndexService.get(policyNumber);
+        if (indexed != null) {
+            return Mono.just(indexed);
+        }
+        return reactiveReferenceDataDao.findGrossAmount(policyNumber)
+                .map(GrossAmount::of)
+                .defaultIfEmpty(GrossAmount.noRows())
+                .onErrorReturn(GrossAmount.failed());
+    }
+
+    private Mono<Optional<ActorAddress>> findAddress(Long actorId) {
+        Optional<ActorAddress> cached = referenceDataCache.addresses().getIfPresent(actorId);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return reactiveReferenceDataDao.findAddress(actorId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .doOnNext(address -> referenceDataCache.addresses().put(actorId, address))
+                .onErrorReturn(Optional.empty());
+    }
+
+    private PolicyEnrichment indexedActorReference(ReferenceIndex index, String policyNumber) {
+        PolicyEnrichment enrichment = PolicyEnrichment.notFound(policyNumber);
+        Long actorId = index.getActorId(policyNumber);
+        if (actorId != null) {
+            enrichment.setActorId(actorId);
+            enrichment.setAddress(getAddressByActorId(actorId));
+            enrichment.setBcuNumber(index.getBcuNumber(actorId));
         }
+        return enrichment;
     }
 }
@@ -0,0 +1,412 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.BackOfficeNotification;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory outbox for back office emails. Notifications are queued without
+ * blocking and a background dispatcher groups them per mailbox into digest
+ * messages, sent when a digest is full or its time window has elapsed.
+ * Failed digests are retried with exponential backoff, then dead-lettered.
+ * <p>
+ * Dead letters are appended to the dead letter file as JSON lines, with the
+ * reason and time they were given up on; the stats only show the most recent.
+ * A dead letter that cannot be written is logged in full and counted.
+ */
+@Service
+public class EmailOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailOutbox.class);
+
+    private static final int MAX_DEAD_LETTERS = 1000;
+
+    // Created on the first send, not at startup
+    @Autowired
+    @Lazy
+    private JavaMailSender mailSender;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${spring.mail.username:noreply@dailyrecycling.com}")
+    private String fromEmail;
+
+    @Value("${email.outbox.capacity:100000}")
+    private int capacity;
+
+    @Value("${email.outbox.max-digest-size:500}")
+    private int maxDigestSize;
+
+    @Value("${email.outbox.flush-interval:PT1M}")
+    private Duration flushInterval;
+
+    @Value("${email.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${email.outbox.retry-backoff:PT30S}")
+    private Duration retryBackoff;
+
+    @Value("${email.outbox.dead-letter-file:${batch.work-dir:${java.io.tmpdir}/daily-recycling}/email-dead-letters.jsonl}")
+    private String deadLetterFile;
+
+    private BlockingQueue<BackOfficeNotification> queue;
+    private Timer sendTimer;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    // Dispatcher thread only
+    private final Map<String, Digest> openDigests = new LinkedHashMap<>();
+    private final Deque<Digest> retries = new ArrayDeque<>();
+
+    private final Deque<BackOfficeNotification> deadLetters = new ArrayDeque<>();
+
+    // Guarded by deadLetters, opened on the first dead letter
+    private Writer deadLetterWriter;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong notificationsSent = new AtomicLong();
+    private final AtomicLong sendFailures = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong deadLettersUnsaved = new AtomicLong();
+
+    @PostConstruct
+    void start() {
+        queue = new LinkedBlockingQueue<>(capacity);
+        registerMetrics();
+        running = true;
+        dispatcher = new Thread(this::dispatch, "email-outbox");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Stop accepting work and send what is still queued, without retrying
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        dispatcher.join(TimeUnit.SECONDS.toMillis(30));
+        synchronized (deadLetters) {
+            if (deadLetterWriter != null) {
+                try {
+                    deadLetterWriter.close();
+                } catch (IOException e) {
+                    log.warn("Could not close the email dead letter file {}: {}", deadLetterFile, e.getMessage());
+                }
+                deadLetterWriter = null;
+            }
+        }
+    }
+
+    /**
+     * Queue a notification; never blocks. Dead-letters it if the outbox is full.
+     */
+    public void enqueue(BackOfficeNotification notification) {
+        enqueued.incrementAndGet();
+        meterRegistry.counter("recycling.email.notifications", "type", notification.getType().name()).increment();
+        if (!running) {
+            log.warn("Email outbox stopped, dead-lettering notification for policy {}", notification.getPolicyNumber());
+            deadLetter(notification, "outbox stopped");
+        } else if (!queue.offer(notification)) {
+            log.warn("Email outbox full, dead-lettering notification for policy {}", notification.getPolicyNumber());
+            deadLetter(notification, "outbox full");
+        }
+    }
+
+    /**
+     * Queue, send and failure counters, plus the most recent dead letters;
+     * all of them are in the dead letter file
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enqueued", enqueued.get());
+        stats.put("queued", queue.size());
+        stats.put("messagesSent", messagesSent.get());
+        stats.put("notificationsSent", notificationsSent.get());
+        stats.put("sendFailures", sendFailures.get());
+        stats.put("deadLettered", deadLettered.get());
+        stats.put("deadLettersUnsaved", deadLettersUnsaved.get());
+        stats.put("deadLetterFile", deadLetterFile);
+        synchronized (deadLetters) {
+            stats.put("deadLetters", new ArrayList<>(deadLetters));
+        }
+        return stats;
+    }
+
+    private void registerMetrics() {
+        sendTimer = Timer.builder("recycling.email.send")
+                .description("SMTP send latency, successful or not")
+                .register(meterRegistry);
+        Gauge.builder("recycling.email.queued", queue, BlockingQueue::size)
+                .description("Notifications waiting in the outbox queue")
+                .register(meterRegistry);
+        FunctionCounter.builder("recycling.email.messages.sent", messagesSent, AtomicLong::get)
+                .description("Digest messages sent")
+                .register(meterRegistry);
+        FunctionCounter.builder("recycling.email.send.failures", sendFailures, AtomicLong::get)
+                .description("Failed send attempts, including ones retried later")
+                .register(meterRegistry);
+        FunctionCounter.builder("recycling.email.dead.letters", deadLettered, AtomicLong::get)
+                .description("Notifications given up on")
+                .register(meterRegistry);
+        FunctionCounter.builder("recycling.email.dead.letters.unsaved", deadLettersUnsaved, AtomicLong::get)
+                .description("Dead letters that could not be written to the dead letter file, logged instead")
+                .register(meterRegistry);
+    }
+
+    private void dispatch() {
+        long pollMillis = Math.max(10, Math.min(1000, flushInterval.toMillis()));
+        List<BackOfficeNotification> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                BackOfficeNotification first = queue.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    for (BackOfficeNotification notification : batch) {
+                        add(notification);
+                    }
+                    batch.clear();
+                }
+                long now = System.currentTimeMillis();
+                flushDigests(now, false);
+                sendRetries(now);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Email outbox dispatcher error", e);
+            }
+        }
+        flushDigests(Long.MAX_VALUE, true);
+        for (Digest digest : retries) {
+            for (BackOfficeNotification notification : digest.notifications) {
+                deadLetter(notification, "pending retry at shutdown after " + digest.attempts + " attempts");
+            }
+        }
+        retries.clear();
+    }
+
+    private void add(BackOfficeNotification notification) {
+        Digest digest = openDigests.computeIfAbsent(notification.getMailbox(),
+                mailbox -> new Digest(mailbox, System.currentTimeMillis()));
+        digest.notifications.add(notification);
+        if (digest.notifications.size() >= maxDigestSize) {
+            openDigests.remove(digest.mailbox);
+            send(digest, System.currentTimeMillis());
+        }
+    }
+
+    private void flushDigests(long now, boolean all) {
+        Iterator<Digest> iterator = openDigests.values().iterator();
+        while (iterator.hasNext()) {
+            Digest digest = iterator.next();
+            if (all || now - digest.openedAt >= flushInterval.toMillis()) {
+                iterator.remove();
+                send(digest, now);
+            }
+        }
+    }
+
+    private void sendRetries(long now) {
+        for (int i = retries.size(); i > 0; i--) {
+            Digest digest = retries.poll();
+            if (digest.nextAttemptAt <= now) {
+                send(digest, now);
+            } else {
+                retries.add(digest);
+            }
+        }
+    }
+
+    private void send(Digest digest, long now) {
+        digest.attempts++;
+        try {
+            SimpleMailMessage message = compose(digest);
+            sendTimer.record(() -> mailSender.send(message));
+            messagesSent.incrementAndGet();
+            notificationsSent.addAndGet(digest.notifications.size());
+        } catch (Exception e) {
+            sendFailures.incrementAndGet();
+            if (digest.attempts >= maxAttempts || !running) {
+                log.error("Giving up on email to {} with {} notifications after {} attempts",
+                        digest.mailbox, digest.notifications.size(), digest.attempts, e);
+                String reason = "send failed after " + digest.attempts + " attempts: " + e.getMessage();
+                for (BackOfficeNotification notification : digest.notifications) {
+                    deadLetter(notification, reason);
+                }
+            } else {
+                long backoff = retryBackoff.toMillis() << Math.min(digest.attempts - 1, 16);
+                digest.nextAttemptAt = now + backoff;
+                retries.add(digest);
+                log.warn("Email to {} failed (attempt {}), retrying in {} ms: {}",
+                        digest.mailbox, digest.attempts, backoff, e.getMessage());
+            }
+        }
+    }
+
+    private void deadLetter(BackOfficeNotification notification, String reason) {
+        deadLettered.incrementAndGet();
+        synchronized (deadLetters) {
+            if (deadLetters.size() == MAX_DEAD_LETTERS) {
+                deadLetters.poll();
+            }
+            deadLetters.add(notification);
+            save(notification, reason);
+        }
+    }
+
+    /**
+     * Append the dead letter to the file, flushed so it survives a crash of the JVM
+     */
+    private void save(BackOfficeNotification notification, String reason) {
+        Map<String, Object> deadLetter = new LinkedHashMap<>();
+        deadLetter.put("deadLetteredAt", System.currentTimeMillis());
+        deadLetter.put("reason", reason);
+        deadLetter.put("notification", notification);
+        try {
+            if (deadLetterWriter == null) {
+                Path file = Paths.get(deadLetterFile);
+                if (file.getParent() != null) {
+                    Files.createDirectories(file.getParent());
+                }
+                deadLetterWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            deadLetterWriter.write(objectMapper.writeValueAsString(deadLetter));
+            deadLetterWriter.write('\n');
+            deadLetterWriter.flush();
+        } catch (IOException e) {
+            deadLettersUnsaved.incrementAndGet();
+            log.error("Could not write email dead letter to {}: {} ({})", deadLetterFile, notification, reason, e);
+        }
+    }
+
+    private SimpleMailMessage compose(Digest digest) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom(fromEmail);
+        message.setTo(digest.mailbox);
+        if (digest.notifications.size() == 1) {
+            BackOfficeNotification notification = digest.notifications.get(0);
+            message.setSubject(subject(notification.getType()));
+            message.setText(text(notification));
+            return message;
+        }
+
+        message.setSubject(String.format("Daily Recycling - %d Policies Require Action", digest.notifications.size()));
+        StringBuilder text = new StringBuilder("Dear Back Office Team,\n\n")
+                .append("The following policy records require manual intervention:\n");
+        for (BackOfficeNotification.Type type : BackOfficeNotification.Type.values()) {
+            boolean header = false;
+            for (BackOfficeNotification notification : digest.notifications) {
+                if (notification.getType() != type) {
+                    continue;
+                }
+                if (!header) {
+                    text.append("\n").append(subject(type)).append("\n");
+                    header = true;
+                }
+                text.append("- Policy Number: ").append(notification.getPolicyNumber())
+                        .append(", App Code: ").append(notification.getAppCode());
+                if (notification.getDuration() != null) {
+                    text.append(", Duration: ").append(notification.getDuration()).append(" days");
+                }
+                text.append("\n");
+            }
+        }
+        text.append("\nThank you,\nDaily Recycling System");
+        message.setText(text.toString());
+        return message;
+    }
+
+    private static String subject(BackOfficeNotification.Type type) {
+        switch (type) {
+            case DURATION_EXCEEDS:
+                return "Duration Exceeds 9999 Days - Action Required";
+            default:
+                return "BCU Number Missing - Action Required";
+        }
+    }
+
+    private static String text(BackOfficeNotification notification) {
+        if (notification.getType() == BackOfficeNotification.Type.DURATION_EXCEEDS) {
+            return String.format(
+                "Dear Back Office Team,\n\n" +
+                "The following policy record has been rejected:\n\n" +
+                "Policy Number: %s\n" +
+                "App Code: %s\n" +
+                "Duration: %d days\n" +
+                "Issue: Policy duration exceeds 9999 days\n\n" +
+                "Please review and correct the policy dates.\n\n" +
+                "Thank you,\n" +
+                "Daily Recycling System",
+                notification.getPolicyNumber(), notification.getAppCode(), notification.getDuration()
+            );
+        }
+        return String.format(
+            "Dear Back Office Team,\n\n" +
+            "The following policy record requires manual intervention:\n\n" +
+            "Policy Number: %s\n" +
+            "App Code: %s\n" +
+            "Issue: BCU Number is missing in the database\n\n" +
+            "Please update the BCU number in the system.\n\n" +
+            "Thank you,\n" +
+            "Daily Recycling System",
+            notification.getPolicyNumber(), notification.getAppCode()
+        );
+    }
+
+    /**
+     * Notifications for one mailbox sent as a single message
+     */
+    private static final class Digest {
+        private final String mailbox;
+        private final long openedAt;
+        private final List<BackOfficeNotification> notifications = new ArrayList<>();
+        private int attempts;
+        private long nextAttemptAt;
+
+        private Digest(String mailbox, long openedAt) {
+            this.mailbox = mailbox;
+            this.openedAt = openedAt;
+        }
+    }
+}
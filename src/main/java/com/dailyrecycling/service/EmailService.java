@@ -1,102 +1,79 @@
 package com.dailyrecycling.service;
 
+import com.dailyrecycling.model.BackOfficeNotification;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.function.Supplier;
 
+/**
+ * Back office notifications. Messages are queued in the {@link EmailOutbox}
+ * and sent in the background, so callers never wait on SMTP.
+ */
 @Service
 public class EmailService {
 
     @Autowired
-    private JavaMailSender mailSender;
+    private EmailOutbox emailOutbox;
 
-    @Value("${spring.mail.username:noreply@dailyrecycling.com}")
-    private String fromEmail;
+    @Autowired
+    private BackOfficeRouter backOfficeRouter;
 
-    // Back Office Email Mappings - Update these based on your requirements
-    private static final Map<String, String> BACK_OFFICE_EMAILS = new HashMap<>();
+    // Set while notifications of the current thread are held back instead of queued
+    private final ThreadLocal<List<BackOfficeNotification>> deferred = new ThreadLocal<>();
 
-    static {
-        BACK_OFFICE_EMAILS.put("MIO", "backoffice.mio@example.com");
-        BACK_OFFICE_EMAILS.put("miles", "backoffice.miles@example.com");
-        BACK_OFFICE_EMAILS.put("Ww", "backoffice.ww@example.com");
-        BACK_OFFICE_EMAILS.put("Santander", "backoffice.santander@example.com");
-        BACK_OFFICE_EMAILS.put("FS", "backoffice.fs@example.com");
-        BACK_OFFICE_EMAILS.put("F6", "backoffice.f6@example.com");
+    /**
+     * Run the action on this thread, collecting its notifications into the list
+     * instead of queueing them; queue them later with {@link #release}
+     */
+    public <T> T deferring(List<BackOfficeNotification> notifications, Supplier<T> action) {
+        deferred.set(notifications);
+        try {
+            return action.get();
+        } finally {
+            deferred.remove();
+        }
     }
 
     /**
-     * Send email when BCU number is missing
+     * Queue notifications collected by {@link #deferring}
      */
-    public void sendBcuNumberMissingEmail(String policyNumber, String appCode) {
-        String toEmail = getBackOfficeEmail(appCode);
-        if (toEmail == null) {
-            toEmail = "backoffice.default@example.com"; // Default email
+    public void release(List<BackOfficeNotification> notifications) {
+        for (BackOfficeNotification notification : notifications) {
+            emailOutbox.enqueue(notification);
         }
+    }
 
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom(fromEmail);
-        message.setTo(toEmail);
-        message.setSubject("BCU Number Missing - Action Required");
-        message.setText(String.format(
-            "Dear Back Office Team,\n\n" +
-            "The following policy record requires manual intervention:\n\n" +
-            "Policy Number: %s\n" +
-            "App Code: %s\n" +
-            "Issue: BCU Number is missing in the database\n\n" +
-            "Please update the BCU number in the system.\n\n" +
-            "Thank you,\n" +
-            "Daily Recycling System",
-            policyNumber, appCode
-        ));
-
-        mailSender.send(message);
+    /**
+     * Queue an email when BCU number is missing
+     */
+    public void sendBcuNumberMissingEmail(String policyNumber, String appCode) {
+        send(new BackOfficeNotification(BackOfficeNotification.Type.BCU_NUMBER_MISSING,
+                getBackOfficeEmail(appCode), policyNumber, appCode, null, System.currentTimeMillis()));
     }
 
     /**
-     * Send email when duration exceeds 9999 days
+     * Queue an email when duration exceeds 9999 days
      */
     public void sendDurationExceedsEmail(String policyNumber, String appCode, int duration) {
-        String toEmail = getBackOfficeEmail(appCode);
-        if (toEmail == null) {
-            toEmail = "backoffice.default@example.com";
-        }
-
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom(fromEmail);
-        message.setTo(toEmail);
-        message.setSubject("Duration Exceeds 9999 Days - Action Required");
-        message.setText(String.format(
-            "Dear Back Office Team,\n\n" +
-            "The following policy record has been rejected:\n\n" +
-            "Policy Number: %s\n" +
-            "App Code: %s\n" +
-            "Duration: %d days\n" +
-            "Issue: Policy duration exceeds 9999 days\n\n" +
-            "Please review and correct the policy dates.\n\n" +
-            "Thank you,\n" +
-            "Daily Recycling System",
-            policyNumber, appCode, duration
-        ));
+        send(new BackOfficeNotification(BackOfficeNotification.Type.DURATION_EXCEEDS,
+                getBackOfficeEmail(appCode), policyNumber, appCode, duration, System.currentTimeMillis()));
+    }
 
-        mailSender.send(message);
+    private void send(BackOfficeNotification notification) {
+        List<BackOfficeNotification> notifications = deferred.get();
+        if (notifications != null) {
+            notifications.add(notification);
+        } else {
+            emailOutbox.enqueue(notification);
+        }
     }
 
     /**
      * Get back office email based on application code
      */
     private String getBackOfficeEmail(String appCode) {
-        // Match app code to back office email
-        for (Map.Entry<String, String> entry : BACK_OFFICE_EMAILS.entrySet()) {
-            if (appCode.contains(entry.getKey())) {
-                return entry.getValue();
-            }
-        }
-        return null;
+        return backOfficeRouter.route(appCode);
     }
 }
@@ -1,11 +1,16 @@
 package com.dailyrecycling.service;
 
 import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.rule.AddressFieldsRule;
+import com.dailyrecycling.service.rule.BcuNumberRule;
+import com.dailyrecycling.service.rule.CorrectionRuleRegistry;
+import com.dailyrecycling.service.rule.FinancingTypeRule;
+import com.dailyrecycling.service.rule.GrossAmountZeroRule;
+import com.dailyrecycling.service.rule.PolicyNumbers;
+import com.dailyrecycling.service.rule.StartDateEndDateRule;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-
 @Service
 public class ErrorCorrectionService {
 
@@ -13,144 +18,162 @@ public class ErrorCorrectionService {
     private DatabaseService databaseService;
 
     @Autowired
-    private EmailService emailService;
+    private CorrectionRuleRegistry ruleRegistry;
 
     /**
-     * Correct Start Date - End Date Issue (Event Type 1RA)
+     * Create the lazily loading reference data context for a record
      */
-    public PolicyRecord correctStartDateEndDateIssue(PolicyRecord record) {
-        // Update Policy Start Date = Policy End Date
-        record.setPolicyStartDate(record.getPolicyEndDate());
-        
-        // Update Duration of Insurance = 0
-        record.setDurationOfInsurance("000");
-        
-        // Update Total Premium Amount = 00000000000
-        record.setTotalPremiumAmount("00000000000");
-        
-        return record;
+    public CorrectionContext newContext(PolicyRecord record) {
+        return CorrectionContext.forPolicy(databaseService, record.getPolicyNumber());
     }
 
     /**
-     * Correct Event Type other than 1RA & Gross Amount = 0
+     * Apply the corrections selected by error type.
+     * Unknown error types apply all corrections, a null error type applies none.
      */
-    public PolicyRecord correctGrossAmountZero(PolicyRecord record) {
-        Double grossAmount = databaseService.getGrossAmountByPolicyNumber(record.getPolicyNumber());
-        
-        if (grossAmount != null && grossAmount > 0 && !"1RA".equals(record.getEventType())) {
-            // If gross amount > 0 and event is not 1RA, no modification needed
-            return record;
-        }
-        
-        // Update Policy End Date = Policy Start Date
-        record.setPolicyEndDate(record.getPolicyStartDate());
-        
-        // Update Total Premium Amount = 00000000000
-        record.setTotalPremiumAmount("00000000000");
-        
-        return record;
+    public PolicyRecord applyCorrections(PolicyRecord record, String errorType) {
+        return applyCorrections(record, errorType, newContext(record));
     }
 
     /**
-     * Correct Financing Type
+     * Apply the corrections selected by error type, sharing the reference data of the context.
+     * A rule named by the error type always runs; otherwise every rule runs, cheapest first,
+     * on records its detector flags.
      */
-    public PolicyRecord correctFinancingType(PolicyRecord record) {
-        // Set Financing Type to "2" if empty
-        if (record.getFinancingType() == null || record.getFinancingType().trim().isEmpty()) {
-            record.setFinancingType("2");
+    public PolicyRecord applyCorrections(PolicyRecord record, String errorType, CorrectionContext context) {
+        if (errorType == null) {
+            return record;
         }
-        
-        // Replace dash with "10" in Financing Rate
-        if (record.getFinancingRate() != null && record.getFinancingRate().contains("-")) {
-            record.setFinancingRate("10");
+
+        CorrectionRuleRegistry.Registration selected = ruleRegistry.find(errorType);
+        if (selected != null) {
+            selected.correct(record, context);
+            return record;
+        }
+        for (CorrectionRuleRegistry.Registration rule : ruleRegistry.getRules()) {
+            rule.detectAndCorrect(record, context);
         }
-        
         return record;
     }
 
     /**
-     * Correct Address Fields
+     * True if the corrections for this error type may read reference data from the database
      */
-    public PolicyRecord correctAddressFields(PolicyRecord record) {
-        Long actorId = databaseService.getActorIdByPolicyNumber(record.getPolicyNumber());
-        
-        if (actorId == null) {
-            return record;
+    public boolean requiresReferenceData(String errorType) {
+        if (errorType == null) {
+            return false;
         }
-        
-        Map<String, Object> address = databaseService.getAddressByActorId(actorId);
-        
-        if (address == null) {
-            return record;
+        CorrectionRuleRegistry.Registration selected = ruleRegistry.find(errorType);
+        if (selected != null) {
+            return selected.getRule().requiresReferenceData();
         }
-        
-        // Update address fields from database
-        if ((record.getFirstLineAddress() == null || record.getFirstLineAddress().trim().isEmpty()) 
-            && address.get("first_line_address") != null) {
-            record.setFirstLineAddress(String.valueOf(address.get("first_line_address")));
+        for (CorrectionRuleRegistry.Registration rule : ruleRegistry.getRules()) {
+            if (rule.getRule().requiresReferenceData()) {
+                return true;
+            }
         }
-        
-        if ((record.getSecondLineAddress() == null || record.getSecondLineAddress().trim().isEmpty()) 
-            && address.get("second_line_address") != null) {
-            record.setSecondLineAddress(String.valueOf(address.get("second_line_address")));
+        return false;
+    }
+
+    /**
+     * True if correcting this record for this error type will read reference data,
+     * judged by the detectors without counting towards their hit rates
+     */
+    public boolean requiresReferenceData(PolicyRecord record, String errorType) {
+        if (errorType == null) {
+            return false;
         }
-        
-        if ((record.getCity() == null || record.getCity().trim().isEmpty()) 
-            && address.get("city") != null) {
-            record.setCity(String.valueOf(address.get("city")));
+        CorrectionRuleRegistry.Registration selected = ruleRegistry.find(errorType);
+        if (selected != null) {
+            return selected.getRule().requiresReferenceData();
         }
-        
-        if ((record.getPostalCode() == null || record.getPostalCode().trim().isEmpty()) 
-            && address.get("postal_code") != null) {
-            record.setPostalCode(String.valueOf(address.get("postal_code")));
+        for (CorrectionRuleRegistry.Registration rule : ruleRegistry.getRules()) {
+            if (rule.getRule().requiresReferenceData() && rule.getRule().detect(record)) {
+                return true;
+            }
         }
-        
-        return record;
+        return false;
     }
 
     /**
-     * Correct BCU Number
+     * True if correcting this record for this error type will run the named rule,
+     * judged by the detectors without counting towards their hit rates
      */
-    public PolicyRecord correctBcuNumber(PolicyRecord record) {
-        Long actorId = databaseService.getActorIdByPolicyNumber(record.getPolicyNumber());
-        
-        if (actorId == null) {
-            return record;
+    public boolean willRun(PolicyRecord record, String errorType, String ruleName) {
+        if (errorType == null) {
+            return false;
         }
-        
-        String bcuNumber = databaseService.getBcuNumberByActorId(actorId);
-        
-        if (bcuNumber != null && !bcuNumber.trim().isEmpty()) {
-            record.setBcuNumber(bcuNumber);
-        } else {
-            // Send email to back office
-            String appCode = extractAppCode(record.getPolicyNumber());
-            emailService.sendBcuNumberMissingEmail(record.getPolicyNumber(), appCode);
+        CorrectionRuleRegistry.Registration selected = ruleRegistry.find(errorType);
+        if (selected != null) {
+            return selected.getRule().getName().equals(ruleName);
         }
-        
+        return ruleRegistry.get(ruleName).getRule().detect(record);
+    }
+
+    /**
+     * Correct Start Date - End Date Issue (Event Type 1RA)
+     */
+    public PolicyRecord correctStartDateEndDateIssue(PolicyRecord record) {
+        return correctStartDateEndDateIssue(record, newContext(record));
+    }
+
+    public PolicyRecord correctStartDateEndDateIssue(PolicyRecord record, CorrectionContext context) {
+        ruleRegistry.get(StartDateEndDateRule.NAME).correct(record, context);
         return record;
     }
 
     /**
-     * Extract application code from policy number
+     * Correct Event Type other than 1RA & Gross Amount = 0
      */
-    private String extractAppCode(String policyNumber) {
-        // Extract app code before master policy code
-        // Format: {APP_CODE}{MASTER_POLICY_CODE}
-        // Example: FR103747091001FR5H01 -> App Code: FR103747091001
-        if (policyNumber != null && policyNumber.length() > 5) {
-            int lastIndex = policyNumber.lastIndexOf("FR");
-            if (lastIndex > 0) {
-                return policyNumber.substring(0, lastIndex);
-            }
-        }
-        return "";
+    public PolicyRecord correctGrossAmountZero(PolicyRecord record) {
+        return correctGrossAmountZero(record, newContext(record));
+    }
+
+    public PolicyRecord correctGrossAmountZero(PolicyRecord record, CorrectionContext context) {
+        ruleRegistry.get(GrossAmountZeroRule.NAME).correct(record, context);
+        return record;
+    }
+
+    /**
+     * Correct Financing Type
+     */
+    public PolicyRecord correctFinancingType(PolicyRecord record) {
+        return correctFinancingType(record, newContext(record));
+    }
+
+    public PolicyRecord correctFinancingType(PolicyRecord record, CorrectionContext context) {
+        ruleRegistry.get(FinancingTypeRule.NAME).correct(record, context);
+        return record;
+    }
+
+    /**
+     * Correct Address Fields
+     */
+    public PolicyRecord correctAddressFields(PolicyRecord record) {
+        return correctAddressFields(record, newContext(record));
+    }
+
+    public PolicyRecord correctAddressFields(PolicyRecord record, CorrectionContext context) {
+        ruleRegistry.get(AddressFieldsRule.NAME).correct(record, context);
+        return record;
+    }
+
+    /**
+     * Correct BCU Number
+     */
+    public PolicyRecord correctBcuNumber(PolicyRecord record) {
+        return correctBcuNumber(record, newContext(record));
+    }
+
+    public PolicyRecord correctBcuNumber(PolicyRecord record, CorrectionContext context) {
+        ruleRegistry.get(BcuNumberRule.NAME).correct(record, context);
+        return record;
     }
 
     /**
      * Get application code for email routing
      */
     public String getApplicationCode(String policyNumber) {
-        return extractAppCode(policyNumber);
+        return PolicyNumbers.appCode(policyNumber);
     }
 }
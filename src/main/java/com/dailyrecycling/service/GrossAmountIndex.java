@@ -0,0 +1,199 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.GrossAmount;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Open-addressing map from policy number to the sum of its gross amounts.
+ * Keys are stored as ISO-8859-1 bytes in one shared array and sums as primitive
+ * doubles, laid out like {@link PolicyActorIndex}. A policy is only present if it
+ * has instalment rows, so a lookup tells "sum is zero" from "no rows".
+ * Not thread-safe while building; read-only use after loading is safe.
+ */
+public final class GrossAmountIndex {
+
+    private static final float MAX_LOAD = 0.7f;
+
+    private int[] slots;
+    private int mask;
+
+    private int[] hashes;
+    private double[] values;
+    private int[] keyOffsets;
+    private byte[] keys;
+    private int size;
+    private int keyBytes;
+
+    // Keys that cannot be stored as ISO-8859-1 bytes, expected to stay empty
+    private final Map<String, Double> overflow;
+
+    public GrossAmountIndex(int expectedSize) {
+        int capacity = tableSizeFor((int) Math.ceil(Math.max(16, expectedSize) / MAX_LOAD));
+        slots = new int[capacity];
+        mask = capacity - 1;
+        hashes = new int[Math.max(16, expectedSize)];
+        values = new double[hashes.length];
+        keyOffsets = new int[hashes.length + 1];
+        keys = new byte[hashes.length * 20];
+        overflow = new HashMap<>();
+    }
+
+    private GrossAmountIndex(GrossAmountIndex source) {
+        slots = source.slots.clone();
+        mask = source.mask;
+        hashes = source.hashes.clone();
+        values = source.values.clone();
+        keyOffsets = source.keyOffsets.clone();
+        keys = source.keys.clone();
+        size = source.size;
+        keyBytes = source.keyBytes;
+        overflow = new HashMap<>(source.overflow);
+    }
+
+    /**
+     * Independent copy to apply an incremental refresh to while this one is being read
+     */
+    public GrossAmountIndex copy() {
+        return new GrossAmountIndex(this);
+    }
+
+    /**
+     * Add an amount to the sum of the policy, adding the policy if it is not present
+     */
+    public void add(String policyNumber, double amount) {
+        if (!isLatin1(policyNumber)) {
+            overflow.merge(policyNumber, amount, Double::sum);
+            return;
+        }
+
+        int hash = hash(policyNumber);
+        int slot = find(policyNumber, hash);
+        if (slots[slot] != 0) {
+            values[slots[slot] - 1] += amount;
+            return;
+        }
+
+        ensureEntryCapacity(policyNumber.length());
+        int entry = size++;
+        hashes[entry] = hash;
+        values[entry] = amount;
+        for (int i = 0; i < policyNumber.length(); i++) {
+            keys[keyBytes++] = (byte) policyNumber.charAt(i);
+        }
+        keyOffsets[entry + 1] = keyBytes;
+        slots[slot] = entry + 1;
+
+        if (size > slots.length * MAX_LOAD) {
+            rehash(slots.length * 2);
+        }
+    }
+
+    /**
+     * Sum of the policy's gross amounts, {@link GrossAmount#noRows()} if it is not present
+     */
+    public GrossAmount get(String policyNumber) {
+        if (!isLatin1(policyNumber)) {
+            Double value = overflow.get(policyNumber);
+            return value != null ? GrossAmount.of(value) : GrossAmount.noRows();
+        }
+        int slot = find(policyNumber, hash(policyNumber));
+        return slots[slot] == 0 ? GrossAmount.noRows() : GrossAmount.of(values[slots[slot] - 1]);
+    }
+
+    public int size() {
+        return size + overflow.size();
+    }
+
+    /**
+     * Bytes held by the index arrays
+     */
+    public long footprintBytes() {
+        return 4L * slots.length + 4L * hashes.length + 8L * values.length
+                + 4L * keyOffsets.length + keys.length;
+    }
+
+    /**
+     * Release unused capacity once loading is done
+     */
+    public void trim() {
+        hashes = Arrays.copyOf(hashes, Math.max(1, size));
+        values = Arrays.copyOf(values, Math.max(1, size));
+        keyOffsets = Arrays.copyOf(keyOffsets, Math.max(1, size) + 1);
+        keys = Arrays.copyOf(keys, keyBytes);
+    }
+
+    private int find(String key, int hash) {
+        int slot = hash & mask;
+        while (true) {
+            int entry = slots[slot] - 1;
+            if (entry < 0 || (hashes[entry] == hash && keyEquals(entry, key))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(int entry, String key) {
+        int offset = keyOffsets[entry];
+        int length = keyOffsets[entry + 1] - offset;
+        if (length != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if ((keys[offset + i] & 0xFF) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureEntryCapacity(int keyLength) {
+        if (size == hashes.length) {
+            int capacity = hashes.length + (hashes.length >> 1);
+            hashes = Arrays.copyOf(hashes, capacity);
+            values = Arrays.copyOf(values, capacity);
+            keyOffsets = Arrays.copyOf(keyOffsets, capacity + 1);
+        }
+        if (keyBytes + keyLength > keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(keyBytes + keyLength, keys.length + (keys.length >> 1)));
+        }
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        mask = capacity - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = hashes[entry] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+    }
+
+    private static int hash(String key) {
+        int h = 0;
+        for (int i = 0; i < key.length(); i++) {
+            h = 31 * h + key.charAt(i);
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean isLatin1(String key) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int tableSizeFor(int n) {
+        int capacity = Integer.highestOneBit(Math.max(2, n - 1)) << 1;
+        return capacity < 0 ? 1 << 30 : capacity;
+    }
+}
@@ -0,0 +1,298 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.GrossAmount;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Optional in-memory aggregate of pcb.pcbqtiny: the sum of each policy's gross
+ * amounts, built by one grouped scan streamed through a server-side cursor into a
+ * {@link GrossAmountIndex}, so {@link DatabaseService} answers gross amount lookups
+ * without a SUM query per record.
+ * <p>
+ * The index is refreshed at an interval. With a watermark column configured, a
+ * refresh only aggregates the rows whose watermark is above the highest one seen
+ * and adds them to a copy of the index; the column must grow with every row added
+ * and rows must not be updated or deleted. Without one, or at the full reload
+ * interval, the index is rebuilt. Readers keep using the previous index until
+ * the new one is swapped in.
+ */
+@Service
+public class GrossAmountIndexService implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(GrossAmountIndexService.class);
+
+    private static final Pattern COLUMN_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Lazy: the result cache depends on the DatabaseService that depends on this service
+    @Autowired
+    @Lazy
+    private CorrectionResultCache correctionResultCache;
+
+    @Value("${reference.gross-amount-index.enabled:false}")
+    private boolean enabled;
+
+    @Value("${reference.gross-amount-index.refresh-interval:PT15M}")
+    private Duration refreshInterval;
+
+    @Value("${reference.gross-amount-index.full-reload-interval:PT24H}")
+    private Duration fullReloadInterval;
+
+    @Value("${reference.gross-amount-index.watermark-column:}")
+    private String watermarkColumn;
+
+    @Value("${reference.preload.fetch-size:10000}")
+    private int fetchSize;
+
+    @Value("${reference.preload.expected-policies:1000000}")
+    private int expectedPolicies;
+
+    private volatile Snapshot snapshot;
+    private volatile String lastRefreshError;
+    private volatile long refreshFailures;
+
+    private ScheduledExecutorService scheduler;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        if (!watermarkColumn.isEmpty() && !COLUMN_NAME.matcher(watermarkColumn).matches()) {
+            throw new IllegalStateException("Invalid gross amount watermark column: " + watermarkColumn);
+        }
+        try {
+            reload();
+        } catch (Exception e) {
+            log.error("Gross amount index load failed, falling back to per-record lookups", e);
+        }
+        if (!refreshInterval.isZero()) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "gross-amount-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::scheduledRefresh, refreshInterval.toMillis(),
+                    refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Gross amount of the policy from the index, null if the index is not loaded
+     */
+    public GrossAmount get(String policyNumber) {
+        Snapshot current = snapshot;
+        return current == null ? null : current.index.get(policyNumber);
+    }
+
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    /**
+     * Aggregate the whole table into a fresh index and swap it in
+     */
+    public synchronized void reload() {
+        long start = System.nanoTime();
+        GrossAmountIndex index = new GrossAmountIndex(expectedPolicies);
+        Object watermark = stream(null, rs -> {
+            String policyNumber = rs.getString(1);
+            double amount = rs.getDouble(2);
+            // A policy whose amounts are all null stays absent, like with no rows
+            if (policyNumber != null && !rs.wasNull()) {
+                index.add(policyNumber, amount);
+            }
+        });
+        index.trim();
+
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+        long now = System.currentTimeMillis();
+        boolean replaced = snapshot != null;
+        snapshot = new Snapshot(index, watermark, now, now, loadMillis);
+        lastRefreshError = null;
+        if (replaced) {
+            // Any sum may have changed
+            correctionResultCache.invalidateAll();
+        }
+        log.info("Aggregated gross amounts of {} policies in {} ms, index {} MB",
+                index.size(), loadMillis, index.footprintBytes() >> 20);
+    }
+
+    /**
+     * Add the rows above the watermark to the index, or reload it if there is no
+     * watermark column or the full reload interval has passed
+     */
+    public synchronized void refresh() {
+        Snapshot current = snapshot;
+        if (current == null || watermarkColumn.isEmpty()
+                || System.currentTimeMillis() - current.loadedAt >= fullReloadInterval.toMillis()) {
+            reload();
+            return;
+        }
+
+        List<String> policyNumbers = new ArrayList<>();
+        List<Double> amounts = new ArrayList<>();
+        Object watermark = max(current.watermark, stream(current.watermark, rs -> {
+            String policyNumber = rs.getString(1);
+            double amount = rs.getDouble(2);
+            if (policyNumber != null && !rs.wasNull()) {
+                policyNumbers.add(policyNumber);
+                amounts.add(amount);
+            }
+        }));
+
+        GrossAmountIndex index = current.index;
+        boolean correctionsChanged = false;
+        if (!policyNumbers.isEmpty()) {
+            index = current.index.copy();
+            for (int i = 0; i < policyNumbers.size(); i++) {
+                String policyNumber = policyNumbers.get(i);
+                boolean positive = index.get(policyNumber).getAmount() > 0;
+                index.add(policyNumber, amounts.get(i));
+                // The gross amount correction only depends on whether the sum is positive
+                correctionsChanged |= positive != index.get(policyNumber).getAmount() > 0;
+            }
+            index.trim();
+        }
+        snapshot = new Snapshot(index, watermark, current.loadedAt, System.currentTimeMillis(),
+                current.loadMillis);
+        lastRefreshError = null;
+        if (correctionsChanged) {
+            correctionResultCache.invalidateAll();
+        }
+        log.debug("Gross amount index refreshed: {} policies changed, watermark {}",
+                policyNumbers.size(), watermark);
+    }
+
+    /**
+     * Load time, size and refresh state of the current index
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        Snapshot current = snapshot;
+        stats.put("loaded", current != null);
+        if (current != null) {
+            stats.put("policies", current.index.size());
+            stats.put("footprintBytes", current.index.footprintBytes());
+            stats.put("loadedAt", current.loadedAt);
+            stats.put("loadMillis", current.loadMillis);
+            stats.put("refreshedAt", current.refreshedAt);
+            stats.put("watermark", current.watermark != null ? current.watermark.toString() : null);
+        }
+        stats.put("refreshFailures", refreshFailures);
+        stats.put("lastRefreshError", lastRefreshError);
+        return stats;
+    }
+
+    private void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            // Keep answering from the previous index
+            refreshFailures++;
+            lastRefreshError = e.getMessage();
+            log.warn("Gross amount index refresh failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stream the per-policy sums of the rows above the watermark, or of all rows if
+     * it is null, through a cursor like the reference preload: PgJDBC only uses one
+     * with auto-commit off and a fetch size set. Returns the highest watermark read.
+     */
+    private Object stream(Object aboveWatermark, RowCallbackHandler handler) {
+        String sql = watermarkColumn.isEmpty()
+                ? "SELECT policy_number, SUM(amount_gross) FROM pcb.pcbqtiny GROUP BY policy_number"
+                : "SELECT policy_number, SUM(amount_gross), MAX(" + watermarkColumn + ") FROM pcb.pcbqtiny "
+                + (aboveWatermark != null ? "WHERE " + watermarkColumn + " > ? " : "")
+                + "GROUP BY policy_number";
+        return jdbcTemplate.execute((ConnectionCallback<Object>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(fetchSize);
+                if (aboveWatermark != null) {
+                    ps.setObject(1, aboveWatermark);
+                }
+                Object watermark = null;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        handler.processRow(rs);
+                        if (!watermarkColumn.isEmpty()) {
+                            watermark = max(watermark, rs.getObject(3));
+                        }
+                    }
+                }
+                return watermark;
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object max(Object current, Object candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        if (current == null || ((Comparable<Object>) candidate).compareTo(current) > 0) {
+            return candidate;
+        }
+        return current;
+    }
+
+    /**
+     * Index with the watermark it covers, replaced as a whole on refresh
+     */
+    private static final class Snapshot {
+        private final GrossAmountIndex index;
+        private final Object watermark;
+        private final long loadedAt;
+        private final long refreshedAt;
+        private final long loadMillis;
+
+        private Snapshot(GrossAmountIndex index, Object watermark, long loadedAt, long refreshedAt,
+                         long loadMillis) {
+            this.index = index;
+            this.watermark = watermark;
+            this.loadedAt = loadedAt;
+            this.refreshedAt = refreshedAt;
+            this.loadMillis = loadMillis;
+        }
+    }
+}
@@ -0,0 +1,495 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.PolicyField;
+import com.dailyrecycling.model.PolicyRecord;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * PolicyRecord view over a record held in a byte buffer.
+ * Fields are decoded on first read only, and setters record which
+ * fields a correction changed. The correction detectors read original
+ * values as primitives straight from the buffer, without decoding them.
+ */
+public class MappedPolicyRecord extends PolicyRecord {
+
+    /** Returned by {@link #dateInBuffer} for a missing, blank or malformed date */
+    public static final int NO_DATE = -1;
+
+    /** Returned by {@link #amountInBuffer} for a missing, blank or non-numeric amount */
+    public static final long NO_AMOUNT = -1;
+
+    private static final int MAX_AMOUNT_DIGITS = 18;
+
+    private final RecordLayout layout;
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+    private final Charset charset;
+
+    private int loadedFields;
+    private int modifiedFields;
+    private boolean rawRecordLoaded;
+
+    MappedPolicyRecord(RecordLayout layout, ByteBuffer buffer, int offset, int length, Charset charset) {
+        this.layout = layout;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.charset = charset;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public boolean isModified() {
+        return modifiedFields != 0;
+    }
+
+    public boolean isModified(PolicyField field) {
+        return (modifiedFields & (1 << field.ordinal())) != 0;
+    }
+
+    @Override
+    public String getRawRecord() {
+        if (!rawRecordLoaded) {
+            rawRecordLoaded = true;
+            super.setRawRecord(decode(buffer, offset, offset + length, false, charset));
+        }
+        return super.getRawRecord();
+    }
+
+    @Override
+    public void setRawRecord(String rawRecord) {
+        rawRecordLoaded = true;
+        super.setRawRecord(rawRecord);
+    }
+
+    @Override
+    public String getRecordId() {
+        if (load(PolicyField.RECORD_ID)) {
+            super.setRecordId(field(PolicyField.RECORD_ID));
+        }
+        return super.getRecordId();
+    }
+
+    @Override
+    public void setRecordId(String recordId) {
+        modify(PolicyField.RECORD_ID);
+        super.setRecordId(recordId);
+    }
+
+    @Override
+    public String getPolicyNumber() {
+        if (load(PolicyField.POLICY_NUMBER)) {
+            super.setPolicyNumber(field(PolicyField.POLICY_NUMBER));
+        }
+        return super.getPolicyNumber();
+    }
+
+    @Override
+    public void setPolicyNumber(String policyNumber) {
+        modify(PolicyField.POLICY_NUMBER);
+        super.setPolicyNumber(policyNumber);
+    }
+
+    @Override
+    public String getEventType() {
+        if (load(PolicyField.EVENT_TYPE)) {
+            super.setEventType(field(PolicyField.EVENT_TYPE));
+        }
+        return super.getEventType();
+    }
+
+    @Override
+    public void setEventType(String eventType) {
+        modify(PolicyField.EVENT_TYPE);
+        super.setEventType(eventType);
+    }
+
+    @Override
+    public String getPolicyStartDate() {
+        if (load(PolicyField.POLICY_START_DATE)) {
+            super.setPolicyStartDate(field(PolicyField.POLICY_START_DATE));
+        }
+        return super.getPolicyStartDate();
+    }
+
+    @Override
+    public void setPolicyStartDate(String policyStartDate) {
+        modify(PolicyField.POLICY_START_DATE);
+        super.setPolicyStartDate(policyStartDate);
+    }
+
+    @Override
+    public String getPolicyEndDate() {
+        if (load(PolicyField.POLICY_END_DATE)) {
+            super.setPolicyEndDate(field(PolicyField.POLICY_END_DATE));
+        }
+        return super.getPolicyEndDate();
+    }
+
+    @Override
+    public void setPolicyEndDate(String policyEndDate) {
+        modify(PolicyField.POLICY_END_DATE);
+        super.setPolicyEndDate(policyEndDate);
+    }
+
+    @Override
+    public String getDurationOfInsurance() {
+        if (load(PolicyField.DURATION_OF_INSURANCE)) {
+            super.setDurationOfInsurance(field(PolicyField.DURATION_OF_INSURANCE));
+        }
+        return super.getDurationOfInsurance();
+    }
+
+    @Override
+    public void setDurationOfInsurance(String durationOfInsurance) {
+        modify(PolicyField.DURATION_OF_INSURANCE);
+        super.setDurationOfInsurance(durationOfInsurance);
+    }
+
+    @Override
+    public String getTotalPremiumAmount() {
+        if (load(PolicyField.TOTAL_PREMIUM_AMOUNT)) {
+            super.setTotalPremiumAmount(field(PolicyField.TOTAL_PREMIUM_AMOUNT));
+        }
+        return super.getTotalPremiumAmount();
+    }
+
+    @Override
+    public void setTotalPremiumAmount(String totalPremiumAmount) {
+        modify(PolicyField.TOTAL_PREMIUM_AMOUNT);
+        super.setTotalPremiumAmount(totalPremiumAmount);
+    }
+
+    @Override
+    public String getFinancingType() {
+        if (load(PolicyField.FINANCING_TYPE)) {
+            super.setFinancingType(field(PolicyField.FINANCING_TYPE));
+        }
+        return super.getFinancingType();
+    }
+
+    @Override
+    public void setFinancingType(String financingType) {
+        modify(PolicyField.FINANCING_TYPE);
+        super.setFinancingType(financingType);
+    }
+
+    @Override
+    public String getFinancingRate() {
+        if (load(PolicyField.FINANCING_RATE)) {
+            super.setFinancingRate(field(PolicyField.FINANCING_RATE));
+        }
+        return super.getFinancingRate();
+    }
+
+    @Override
+    public void setFinancingRate(String financingRate) {
+        modify(PolicyField.FINANCING_RATE);
+        super.setFinancingRate(financingRate);
+    }
+
+    @Override
+    public String getFirstLineAddress() {
+        if (load(PolicyField.FIRST_LINE_ADDRESS)) {
+            super.setFirstLineAddress(field(PolicyField.FIRST_LINE_ADDRESS));
+        }
+        return super.getFirstLineAddress();
+    }
+
+    @Override
+    public void setFirstLineAddress(String firstLineAddress) {
+        modify(PolicyField.FIRST_LINE_ADDRESS);
+        super.setFirstLineAddress(firstLineAddress);
+    }
+
+    @Override
+    public String getSecondLineAddress() {
+        if (load(PolicyField.SECOND_LINE_ADDRESS)) {
+            super.setSecondLineAddress(field(PolicyField.SECOND_LINE_ADDRESS));
+        }
+        return super.getSecondLineAddress();
+    }
+
+    @Override
+    public void setSecondLineAddress(String secondLineAddress) {
+        modify(PolicyField.SECOND_LINE_ADDRESS);
+        super.setSecondLineAddress(secondLineAddress);
+    }
+
+    @Override
+    public String getCity() {
+        if (load(PolicyField.CITY)) {
+            super.setCity(field(PolicyField.CITY));
+        }
+        return super.getCity();
+    }
+
+    @Override
+    public void setCity(String city) {
+        modify(PolicyField.CITY);
+        super.setCity(city);
+    }
+
+    @Override
+    public String getPostalCode() {
+        if (load(PolicyField.POSTAL_CODE)) {
+            super.setPostalCode(field(PolicyField.POSTAL_CODE));
+        }
+        return super.getPostalCode();
+    }
+
+    @Override
+    public void setPostalCode(String postalCode) {
+        modify(PolicyField.POSTAL_CODE);
+        super.setPostalCode(postalCode);
+    }
+
+    @Override
+    public String getBcuNumber() {
+        if (load(PolicyField.BCU_NUMBER)) {
+            super.setBcuNumber(field(PolicyField.BCU_NUMBER));
+        }
+        return super.getBcuNumber();
+    }
+
+    @Override
+    public void setBcuNumber(String bcuNumber) {
+        modify(PolicyField.BCU_NUMBER);
+        super.setBcuNumber(bcuNumber);
+    }
+
+    @Override
+    public String getCountryCode() {
+        if (load(PolicyField.COUNTRY_CODE)) {
+            super.setCountryCode(field(PolicyField.COUNTRY_CODE));
+        }
+        return super.getCountryCode();
+    }
+
+    @Override
+    public void setCountryCode(String countryCode) {
+        modify(PolicyField.COUNTRY_CODE);
+        super.setCountryCode(countryCode);
+    }
+
+    @Override
+    public String getGrossAmount() {
+        if (load(PolicyField.GROSS_AMOUNT)) {
+            super.setGrossAmount(field(PolicyField.GROSS_AMOUNT));
+        }
+        return super.getGrossAmount();
+    }
+
+    @Override
+    public void setGrossAmount(String grossAmount) {
+        modify(PolicyField.GROSS_AMOUNT);
+        super.setGrossAmount(grossAmount);
+    }
+
+    /*
+     * Original field values read from the buffer as primitives. They ignore values
+     * set since parsing: callers check isModified first. Trimmed columns are read
+     * trimmed, like the decoded value.
+     */
+
+    /**
+     * True if the field is missing or holds only whitespace
+     */
+    public boolean isBlankInBuffer(PolicyField field) {
+        RecordLayout.Column column = presentColumn(field);
+        if (column == null) {
+            return true;
+        }
+        for (int i = offset + column.getStart(); i < offset + column.getEnd(); i++) {
+            if ((buffer.get(i) & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The yyyyMMdd date of the field packed into an int (e.g. 20240131), or {@link #NO_DATE}
+     * if it is not exactly eight digits. The date itself is not validated.
+     */
+    public int dateInBuffer(PolicyField field) {
+        RecordLayout.Column column = presentColumn(field);
+        if (column == null) {
+            return NO_DATE;
+        }
+        int from = valueStart(column);
+        int to = valueEnd(column, from);
+        if (to - from != 8) {
+            return NO_DATE;
+        }
+        int date = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NO_DATE;
+            }
+            date = date * 10 + digit;
+        }
+        return date;
+    }
+
+    /**
+     * The unsigned amount of the field in minor units, or {@link #NO_AMOUNT} if it is
+     * empty, holds anything but digits or has more than 18 significant digits
+     */
+    public long amountInBuffer(PolicyField field) {
+        RecordLayout.Column column = presentColumn(field);
+        if (column == null) {
+            return NO_AMOUNT;
+        }
+        int from = valueStart(column);
+        int to = valueEnd(column, from);
+        if (from == to) {
+            return NO_AMOUNT;
+        }
+        long amount = 0;
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NO_AMOUNT;
+            }
+            if (amount != 0 || digit != 0) {
+                if (++digits > MAX_AMOUNT_DIGITS) {
+                    return NO_AMOUNT;
+                }
+                amount = amount * 10 + digit;
+            }
+        }
+        return amount;
+    }
+
+    /**
+     * True if the field contains the given ISO-8859-1 character
+     */
+    public boolean containsInBuffer(PolicyField field, char c) {
+        RecordLayout.Column column = presentColumn(field);
+        if (column == null) {
+            return false;
+        }
+        for (int i = offset + column.getStart(); i < offset + column.getEnd(); i++) {
+            if ((buffer.get(i) & 0xFF) == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True if both fields hold the same value, or are both missing
+     */
+    public boolean equalInBuffer(PolicyField first, PolicyField second) {
+        RecordLayout.Column a = presentColumn(first);
+        RecordLayout.Column b = presentColumn(second);
+        if (a == null || b == null) {
+            return a == b;
+        }
+        int fromA = valueStart(a);
+        int toA = valueEnd(a, fromA);
+        int fromB = valueStart(b);
+        if (valueEnd(b, fromB) - fromB != toA - fromA) {
+            return false;
+        }
+        for (int i = 0; i < toA - fromA; i++) {
+            if (buffer.get(fromA + i) != buffer.get(fromB + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private RecordLayout.Column presentColumn(PolicyField field) {
+        RecordLayout.Column column = layout.column(field);
+        return column != null && column.isPresentIn(length) ? column : null;
+    }
+
+    /**
+     * Buffer index of the first byte of the value, after leading whitespace if trimmed
+     */
+    private int valueStart(RecordLayout.Column column) {
+        int from = offset + column.getStart();
+        int to = offset + column.getEnd();
+        if (column.isTrimmed()) {
+            while (from < to && (buffer.get(from) & 0xFF) <= ' ') {
+                from++;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Buffer index past the last byte of the value, before trailing whitespace if trimmed
+     */
+    private int valueEnd(RecordLayout.Column column, int from) {
+        int to = offset + column.getEnd();
+        if (column.isTrimmed()) {
+            while (to > from && (buffer.get(to - 1) & 0xFF) <= ' ') {
+                to--;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Mark a field as loaded, returns true if it still has to be decoded
+     */
+    private boolean load(PolicyField field) {
+        int bit = 1 << field.ordinal();
+        if ((loadedFields & bit) != 0) {
+            return false;
+        }
+        loadedFields |= bit;
+        return true;
+    }
+
+    private void modify(PolicyField field) {
+        int bit = 1 << field.ordinal();
+        loadedFields |= bit;
+        modifiedFields |= bit;
+    }
+
+    private String field(PolicyField field) {
+        RecordLayout.Column column = presentColumn(field);
+        if (column == null) {
+            return null;
+        }
+        return decode(buffer, offset + column.getStart(), offset + column.getEnd(), column.isTrimmed(), charset);
+    }
+
+    /**
+     * Decode bytes [from, to) of the buffer, trimming like String.trim() if requested
+     */
+    static String decode(ByteBuffer buffer, int from, int to, boolean trim, Charset charset) {
+        if (trim) {
+            while (from < to && (buffer.get(from) & 0xFF) <= ' ') {
+                from++;
+            }
+            while (to > from && (buffer.get(to - 1) & 0xFF) <= ' ') {
+                to--;
+            }
+        }
+        byte[] bytes = new byte[to - from];
+        ByteBuffer source = buffer.duplicate();
+        source.position(from);
+        source.get(bytes);
+        return new String(bytes, charset);
+    }
+}
@@ -0,0 +1,175 @@
+package com.dailyrecycling.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Cursor over the newline-delimited records of a memory-mapped file.
+ * The file is mapped in windows; a record never spans two windows, so the
+ * current record can always be read from {@link #buffer()} at
+ * {@link #recordOffset()} without copying.
+ */
+public class MappedRecordReader implements Closeable {
+
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+    private static final long LOW_7_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowLength;
+
+    private long nextPosition;
+    private long recordPosition;
+    private int recordOffset;
+    private int recordLength;
+    private int terminatorLength;
+
+    public MappedRecordReader(Path file, int windowSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Continue reading at a file offset, which must be the start of a record
+     */
+    public void seek(long position) {
+        if (position < 0 || position > size) {
+            throw new IllegalArgumentException("Offset " + position + " is outside the file of " + size + " bytes");
+        }
+        nextPosition = position;
+    }
+
+    /**
+     * Advance to the next record, returns false at end of file
+     */
+    public boolean next() throws IOException {
+        long position = nextPosition;
+        if (position >= size) {
+            return false;
+        }
+
+        if (window == null || position < windowStart || position >= windowStart + windowLength) {
+            map(position);
+        }
+
+        int start = (int) (position - windowStart);
+        int newline = indexOfNewline(window, start, windowLength);
+        if (newline < 0 && windowStart + windowLength < size) {
+            // Record crosses the window end, remap starting at the record
+            if (start == 0) {
+                throw new IOException("Record at offset " + position
+                        + " exceeds the mapping window of " + windowSize + " bytes");
+            }
+            map(position);
+            start = 0;
+            newline = indexOfNewline(window, start, windowLength);
+            if (newline < 0 && windowStart + windowLength < size) {
+                throw new IOException("Record at offset " + position
+                        + " exceeds the mapping window of " + windowSize + " bytes");
+            }
+        }
+
+        int end = newline < 0 ? windowLength : newline;
+        terminatorLength = 0;
+        if (newline >= 0) {
+            terminatorLength = 1;
+            if (end > start && window.get(end - 1) == '\r') {
+                end--;
+                terminatorLength = 2;
+            }
+        }
+
+        recordPosition = position;
+        recordOffset = start;
+        recordLength = end - start;
+        nextPosition = position + recordLength + terminatorLength;
+        return true;
+    }
+
+    /**
+     * Mapped window holding the current record
+     */
+    public ByteBuffer buffer() {
+        return window;
+    }
+
+    public int recordOffset() {
+        return recordOffset;
+    }
+
+    /**
+     * Length of the current record without its line terminator
+     */
+    public int recordLength() {
+        return recordLength;
+    }
+
+    public int terminatorLength() {
+        return terminatorLength;
+    }
+
+    /**
+     * File offset of the current record
+     */
+    public long recordPosition() {
+        return recordPosition;
+    }
+
+    /**
+     * File offset just past the current record and its terminator
+     */
+    public long position() {
+        return nextPosition;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    private void map(long position) throws IOException {
+        windowStart = position;
+        windowLength = (int) Math.min(windowSize, size - position);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowLength);
+    }
+
+    /**
+     * Find the next '\n' eight bytes at a time
+     */
+    static int indexOfNewline(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            long word = buffer.getLong(i) ^ NEWLINES;
+            // High bit set exactly in the bytes that were '\n'
+            long zeroBytes = ~(((word & LOW_7_BITS) + LOW_7_BITS) | word | LOW_7_BITS);
+            if (zeroBytes != 0) {
+                int byteIndex = buffer.order() == ByteOrder.BIG_ENDIAN
+                        ? Long.numberOfLeadingZeros(zeroBytes) >>> 3
+                        : Long.numberOfTrailingZeros(zeroBytes) >>> 3;
+                return i + byteIndex;
+            }
+        }
+        for (; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,206 @@
+package com.dailyrecycling.service;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Open-addressing map from policy number to actor ID.
+ * Keys are stored as ISO-8859-1 bytes in one shared array and values as
+ * primitive longs, so an entry costs roughly its key length plus 20 bytes
+ * instead of the String, Long and node objects of a HashMap.
+ * A policy mapped to several actors resolves to the lowest actor ID, as the
+ * {@link ReferenceDataDao} lookups do, and is counted as ambiguous.
+ * Not thread-safe while building; read-only use after loading is safe.
+ */
+public final class PolicyActorIndex {
+
+    /** Returned for unknown policies */
+    public static final long MISSING = Long.MIN_VALUE;
+
+    private static final float MAX_LOAD = 0.7f;
+
+    private int[] slots;
+    private int mask;
+
+    private int[] hashes;
+    private long[] values;
+    private int[] keyOffsets;
+    private byte[] keys;
+    private int size;
+    private int keyBytes;
+
+    // Keys that cannot be stored as ISO-8859-1 bytes, expected to stay empty
+    private final Map<String, Long> overflow = new HashMap<>();
+
+    // Entries, and overflow keys, seen with more than one actor
+    private final BitSet ambiguous = new BitSet();
+    private final Set<String> ambiguousOverflow = new HashSet<>();
+
+    public PolicyActorIndex(int expectedSize) {
+        int capacity = tableSizeFor((int) Math.ceil(Math.max(16, expectedSize) / MAX_LOAD));
+        slots = new int[capacity];
+        mask = capacity - 1;
+        hashes = new int[Math.max(16, expectedSize)];
+        values = new long[hashes.length];
+        keyOffsets = new int[hashes.length + 1];
+        keys = new byte[hashes.length * 20];
+    }
+
+    /**
+     * Map a policy to an actor; a policy mapped to different actors keeps the lowest one
+     */
+    public void put(String policyNumber, long actorId) {
+        if (!isLatin1(policyNumber)) {
+            Long previous = overflow.get(policyNumber);
+            if (previous == null || actorId < previous) {
+                overflow.put(policyNumber, actorId);
+            }
+            if (previous != null && previous != actorId) {
+                ambiguousOverflow.add(policyNumber);
+            }
+            return;
+        }
+
+        int hash = hash(policyNumber);
+        int slot = find(policyNumber, hash);
+        if (slots[slot] != 0) {
+            int entry = slots[slot] - 1;
+            if (values[entry] != actorId) {
+                values[entry] = Math.min(values[entry], actorId);
+                ambiguous.set(entry);
+            }
+            return;
+        }
+
+        ensureEntryCapacity(policyNumber.length());
+        int entry = size++;
+        hashes[entry] = hash;
+        values[entry] = actorId;
+        for (int i = 0; i < policyNumber.length(); i++) {
+            keys[keyBytes++] = (byte) policyNumber.charAt(i);
+        }
+        keyOffsets[entry + 1] = keyBytes;
+        slots[slot] = entry + 1;
+
+        if (size > slots.length * MAX_LOAD) {
+            rehash(slots.length * 2);
+        }
+    }
+
+    /**
+     * Actor ID of the policy, or {@link #MISSING}
+     */
+    public long get(String policyNumber) {
+        if (!isLatin1(policyNumber)) {
+            Long value = overflow.get(policyNumber);
+            return value != null ? value : MISSING;
+        }
+        int slot = find(policyNumber, hash(policyNumber));
+        return slots[slot] == 0 ? MISSING : values[slots[slot] - 1];
+    }
+
+    public int size() {
+        return size + overflow.size();
+    }
+
+    /**
+     * Number of policies mapped to more than one actor
+     */
+    public int ambiguousCount() {
+        return ambiguous.cardinality() + ambiguousOverflow.size();
+    }
+
+    /**
+     * Bytes held by the index arrays
+     */
+    public long footprintBytes() {
+        return 4L * slots.length + 4L * hashes.length + 8L * values.length
+                + 4L * keyOffsets.length + keys.length;
+    }
+
+    /**
+     * Release unused capacity once loading is done
+     */
+    public void trim() {
+        hashes = Arrays.copyOf(hashes, Math.max(1, size));
+        values = Arrays.copyOf(values, Math.max(1, size));
+        keyOffsets = Arrays.copyOf(keyOffsets, Math.max(1, size) + 1);
+        keys = Arrays.copyOf(keys, keyBytes);
+    }
+
+    private int find(String key, int hash) {
+        int slot = hash & mask;
+        while (true) {
+            int entry = slots[slot] - 1;
+            if (entry < 0 || (hashes[entry] == hash && keyEquals(entry, key))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(int entry, String key) {
+        int offset = keyOffsets[entry];
+        int length = keyOffsets[entry + 1] - offset;
+        if (length != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if ((keys[offset + i] & 0xFF) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureEntryCapacity(int keyLength) {
+        if (size == hashes.length) {
+            int capacity = hashes.length + (hashes.length >> 1);
+            hashes = Arrays.copyOf(hashes, capacity);
+            values = Arrays.copyOf(values, capacity);
+            keyOffsets = Arrays.copyOf(keyOffsets, capacity + 1);
+        }
+        if (keyBytes + keyLength > keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(keyBytes + keyLength, keys.length + (keys.length >> 1)));
+        }
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        mask = capacity - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = hashes[entry] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+    }
+
+    private static int hash(String key) {
+        int h = 0;
+        for (int i = 0; i < key.length(); i++) {
+            h = 31 * h + key.charAt(i);
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean isLatin1(String key) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int tableSizeFor(int n) {
+        int capacity = Integer.highestOneBit(Math.max(2, n - 1)) << 1;
+        return capacity < 0 ? 1 << 30 : capacity;
+    }
+}
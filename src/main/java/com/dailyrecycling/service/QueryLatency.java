@@ -0,0 +1,26 @@
+package com.dailyrecycling.service;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number and total time of the single-record reference queries of a DAO,
+ * read by admission control as a measure of database latency
+ */
+final class QueryLatency {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    void record(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getTotalNanos() {
+        return totalNanos.sum();
+    }
+}
@@ -0,0 +1,110 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.PolicyEnrichment;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.rule.GrossAmountZeroRule;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Corrects single records for the reactive correction endpoint. The reference data
+ * the detectors say the corrections need is fetched up front through the non-blocking
+ * {@link DatabaseService} lookups, so no thread waits on those queries. The corrections
+ * then run on the bounded elastic scheduler rather than on the R2DBC thread that
+ * completed the lookups: a rule that ends up reading data that was not prefetched,
+ * because an earlier rule changed what its detector sees, queries it through the
+ * blocking lookups there without stalling the connections' event loop.
+ */
+@Service
+public class ReactiveCorrectionService {
+
+    @Autowired
+    private FixedWidthParser fixedWidthParser;
+
+    @Autowired
+    private ErrorCorrectionService errorCorrectionService;
+
+    @Autowired
+    private DatabaseService databaseService;
+
+    @Autowired
+    private CorrectionResultCache correctionResultCache;
+
+    /**
+     * Correct a record like /correct: answered from the result cache when possible,
+     * otherwise corrected and stored
+     */
+    public Mono<Result> correct(String record, String errorType) {
+        return Mono.defer(() -> {
+            CorrectionResultCache.Hit cached = correctionResultCache.lookup(record, errorType);
+            long stamp = correctionResultCache.stamp();
+            PolicyRecord policyRecord = fixedWidthParser.parseRecord(record);
+            if (cached != null) {
+                cached.applyTo(policyRecord);
+                return Mono.just(new Result(cached.getCorrectedRecord(), policyRecord, true));
+            }
+
+            return context(policyRecord, errorType).publishOn(Schedulers.boundedElastic()).map(context -> {
+                errorCorrectionService.applyCorrections(policyRecord, errorType, context);
+                String correctedRecord = fixedWidthParser.updateRecord(record, policyRecord);
+                correctionResultCache.store(record, errorType, policyRecord, correctedRecord, stamp);
+                return new Result(correctedRecord, policyRecord, false);
+            });
+        });
+    }
+
+    /**
+     * Context for the corrections of one record. Reference data is fetched only if
+     * the detectors say a correction will read it; the gross amount only if the
+     * gross amount correction will run, concurrently with the actor reference.
+     */
+    private Mono<CorrectionContext> context(PolicyRecord record, String errorType) {
+        if (!errorCorrectionService.requiresReferenceData(record, errorType)) {
+            return Mono.just(errorCorrectionService.newContext(record));
+        }
+
+        String policyNumber = record.getPolicyNumber();
+        // Copy: the actor reference may be the cached instance
+        Mono<PolicyEnrichment> actorReference = databaseService.findActorReference(policyNumber)
+                .map(reference -> new PolicyEnrichment(policyNumber, reference.getActorId(),
+                        reference.getAddress(), reference.getBcuNumber(), null));
+        if (!errorCorrectionService.willRun(record, errorType, GrossAmountZeroRule.NAME)) {
+            return actorReference.map(reference -> CorrectionContext.prefetched(databaseService, reference));
+        }
+        return Mono.zip(actorReference, databaseService.findGrossAmount(policyNumber))
+                .map(lookups -> {
+                    PolicyEnrichment reference = lookups.getT1();
+                    reference.setGrossAmount(lookups.getT2());
+                    return CorrectionContext.prefetched(databaseService, reference);
+                });
+    }
+
+    /**
+     * Corrected record, its parsed fields after correction, and whether it came from the cache
+     */
+    public static final class Result {
+        private final String correctedRecord;
+        private final PolicyRecord policyRecord;
+        private final boolean cached;
+
+        private Result(String correctedRecord, PolicyRecord policyRecord, boolean cached) {
+            this.correctedRecord = correctedRecord;
+            this.policyRecord = policyRecord;
+            this.cached = cached;
+        }
+
+        public String getCorrectedRecord() {
+            return correctedRecord;
+        }
+
+        public PolicyRecord getPolicyRecord() {
+            return policyRecord;
+        }
+
+        public boolean isCached() {
+            return cached;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.ActorAddress;
+import com.dailyrecycling.model.PolicyEnrichment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Non-blocking versions of the {@link ReferenceDataDao} single-policy lookups, over R2DBC.
+ * A lookup holds a pooled connection only while its query runs and no thread while it
+ * waits, so the number of lookups in progress is bounded by the R2DBC pool
+ * (spring.r2dbc.pool.max-size) rather than by request threads.
+ * <p>
+ * Not-found results complete empty; any other failure, including the query timeout,
+ * completes with an error.
+ */
+@Repository
+public class ReactiveReferenceDataDao {
+
+    private static final String ADDRESS_SQL =
+            "SELECT first_line_address, second_line_address, city, postal_code " +
+            "FROM pcb.pcbqtadr WHERE id_actor = :actorId";
+
+    private static final String GROSS_AMOUNT_SQL =
+            "SELECT SUM(amount_gross) AS amount_gross FROM pcb.pcbqtiny " +
+            "WHERE policy_number = :policyNumber GROUP BY policy_number";
+
+    private static final String ACTOR_REFERENCE_SQL =
+            "SELECT aso.id_actor, adr.id_actor AS address_actor, " +
+            "adr.first_line_address, adr.second_line_address, adr.city, adr.postal_code, aco.bcu_number " +
+            "FROM pcb.pcbqtaso aso " +
+            "LEFT JOIN pcb.pcbqtadr adr ON adr.id_actor = aso.id_actor " +
+            "LEFT JOIN pcb.pcbqtaco aco ON aco.id_actor = aso.id_actor " +
+            "WHERE aso.policy_number = :policyNumber " +
+            "ORDER BY aso.id_actor";
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${database.query-timeout:PT5S}")
+    private Duration queryTimeout;
+
+    private DatabaseClient databaseClient;
+
+    private QueryMetrics addressQuery;
+    private QueryMetrics grossAmountQuery;
+    private QueryMetrics actorReferenceQuery;
+
+    private final LongAdder failures = new LongAdder();
+    private final QueryLatency latency = new QueryLatency();
+
+    @PostConstruct
+    void init() {
+        databaseClient = DatabaseClient.create(connectionFactory);
+
+        addressQuery = new QueryMetrics(meterRegistry, "address", failures, latency);
+        grossAmountQuery = new QueryMetrics(meterRegistry, "grossAmount", failures, latency);
+        actorReferenceQuery = new QueryMetrics(meterRegistry, "actorReference", failures, latency);
+    }
+
+    /**
+     * Number of queries that failed so far, not counting ones that found nothing
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * Number of queries run so far, failed or not
+     */
+    public long getLookupCount() {
+        return latency.getCount();
+    }
+
+    /**
+     * Total time spent in the queries counted by {@link #getLookupCount()}
+     */
+    public long getLookupNanos() {
+        return latency.getTotalNanos();
+    }
+
+    public Mono<ActorAddress> findAddress(Long actorId) {
+        return addressQuery.time(databaseClient.sql(ADDRESS_SQL)
+                .bind("actorId", actorId)
+                .map((row, metadata) -> mapAddress(row))
+                .first());
+    }
+
+    /**
+     * Sum of the gross amounts of a policy, empty if it has none
+     */
+    public Mono<Double> findGrossAmount(String policyNumber) {
+        return grossAmountQuery.time(databaseClient.sql(GROSS_AMOUNT_SQL)
+                .bind("policyNumber", policyNumber)
+                .map((row, metadata) -> {
+                    Object amount = row.get("amount_gross");
+                    return amount != null ? ((Number) amount).doubleValue() : 0.0;
+                })
+                .first());
+    }
+
+    /**
+     * Actor ID, address and BCU number of one policy; all null if it has no actor.
+     * Of a policy with several actors, the lowest actor ID is used as in {@link ReferenceDataDao}.
+     */
+    public Mono<PolicyEnrichment> findActorReference(String policyNumber) {
+        return actorReferenceQuery.time(databaseClient.sql(ACTOR_REFERENCE_SQL)
+                .bind("policyNumber", policyNumber)
+                .map((row, metadata) -> {
+                    PolicyEnrichment enrichment = PolicyEnrichment.notFound(policyNumber);
+                    Number actorId = row.get("id_actor", Number.class);
+                    enrichment.setActorId(actorId != null ? actorId.longValue() : null);
+                    if (row.get("address_actor") != null) {
+                        enrichment.setAddress(mapAddress(row));
+                    }
+                    enrichment.setBcuNumber(row.get("bcu_number", String.class));
+                    return enrichment;
+                })
+                .first());
+    }
+
+    private static ActorAddress mapAddress(Row row) {
+        return new ActorAddress(row.get("first_line_address", String.class), row.get("second_line_address", String.class),
+                row.get("city", String.class), row.get("postal_code", String.class));
+    }
+
+    /**
+     * Latency timer plus error and empty-result counters of one query, published
+     * under recycling.db.reactive.query so they do not mix with the JDBC lookups.
+     */
+    private final class QueryMetrics {
+        private final Timer timer;
+        private final Counter errors;
+        private final Counter empty;
+        private final LongAdder failures;
+        private final QueryLatency latency;
+
+        private QueryMetrics(MeterRegistry registry, String query, LongAdder failures, QueryLatency latency) {
+            this.failures = failures;
+            this.latency = latency;
+            timer = Timer.builder("recycling.db.reactive.query")
+                    .description("Reference data query latency, R2DBC")
+                    .tag("query", query)
+                    .register(registry);
+            errors = Counter.builder("recycling.db.reactive.query.errors")
+                    .description("Reference data queries that failed, R2DBC")
+                    .tag("query", query)
+                    .register(registry);
+            empty = Counter.builder("recycling.db.reactive.query.empty")
+                    .description("Reference data queries that found nothing, R2DBC")
+                    .tag("query", query)
+                    .register(registry);
+        }
+
+        <T> Mono<T> time(Mono<T> query) {
+            Mono<T> limited = queryTimeout.isZero() ? query : query.timeout(queryTimeout);
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                return limited
+                        .doOnSuccess(value -> {
+                            if (value == null) {
+                                empty.increment();
+                            }
+                        })
+                        .doOnError(e -> {
+                            errors.increment();
+                            failures.increment();
+                        })
+                        .doFinally(signal -> {
+                            long nanos = System.nanoTime() - start;
+                            timer.record(nanos, TimeUnit.NANOSECONDS);
+                            latency.record(nanos);
+                        });
+            });
+        }
+    }
+}
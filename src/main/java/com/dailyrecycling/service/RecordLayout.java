@@ -0,0 +1,201 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.PolicyField;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Column layout of the fixed-width record, compiled once from the layout file.
+ * Columns are kept sorted by end offset, so the columns present in a record of
+ * a given length are always a prefix and need no per-column bounds check.
+ */
+public final class RecordLayout {
+
+    /**
+     * How a value is fitted into its column when the record is written
+     */
+    public enum Padding {
+        /** Right-aligned, blanks written as '0' */
+        ZEROS_LEFT,
+        /** Left-aligned, padded with spaces and truncated to the column width */
+        SPACES_RIGHT,
+        /** Written as-is */
+        NONE
+    }
+
+    /**
+     * One mapped column
+     */
+    public static final class Column {
+        private final PolicyField field;
+        private final int start;
+        private final int end;
+        private final Padding padding;
+        private final boolean trimmed;
+
+        public Column(PolicyField field, int start, int length, Padding padding, boolean trimmed) {
+            this.field = field;
+            this.start = start;
+            this.end = start + length;
+            this.padding = padding;
+            this.trimmed = trimmed;
+        }
+
+        public PolicyField getField() {
+            return field;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public int getLength() {
+            return end - start;
+        }
+
+        public Padding getPadding() {
+            return padding;
+        }
+
+        public boolean isTrimmed() {
+            return trimmed;
+        }
+
+        public boolean isPresentIn(int recordLength) {
+            return recordLength > end;
+        }
+    }
+
+    private final int minRecordLength;
+    private final Column[] declaredColumns;
+    private final Column[] columnsByEnd;
+    private final Column[] columnsByField;
+    private final int alwaysPresent;
+
+    public RecordLayout(List<Column> columns, int minRecordLength) {
+        validate(columns);
+        this.minRecordLength = minRecordLength;
+        this.declaredColumns = columns.toArray(new Column[0]);
+
+        this.columnsByEnd = declaredColumns.clone();
+        Arrays.sort(columnsByEnd, Comparator.comparingInt(Column::getEnd));
+
+        this.columnsByField = new Column[PolicyField.values().length];
+        for (Column column : declaredColumns) {
+            columnsByField[column.field.ordinal()] = column;
+        }
+
+        int present = 0;
+        while (present < columnsByEnd.length && columnsByEnd[present].end < minRecordLength) {
+            present++;
+        }
+        this.alwaysPresent = present;
+    }
+
+    /**
+     * Load a layout file: one "property,start,length,padding,trim" line per column
+     */
+    public static RecordLayout load(InputStream in, int minRecordLength) throws IOException {
+        List<Column> columns = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] parts = line.split(",");
+                if (parts.length != 5) {
+                    throw new IllegalStateException("Invalid record layout line " + lineNumber + ": " + line);
+                }
+                try {
+                    columns.add(new Column(
+                            PolicyField.forProperty(parts[0].trim()),
+                            Integer.parseInt(parts[1].trim()),
+                            Integer.parseInt(parts[2].trim()),
+                            Padding.valueOf(parts[3].trim()),
+                            Boolean.parseBoolean(parts[4].trim())));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalStateException("Invalid record layout line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return new RecordLayout(columns, minRecordLength);
+    }
+
+    public int getMinRecordLength() {
+        return minRecordLength;
+    }
+
+    /**
+     * Number of columns present in a record of the given length;
+     * they are {@code column(0)} to {@code column(n - 1)}
+     */
+    public int presentColumns(int recordLength) {
+        int present = alwaysPresent;
+        while (present < columnsByEnd.length && columnsByEnd[present].end < recordLength) {
+            present++;
+        }
+        return present;
+    }
+
+    /**
+     * Column by end-offset order
+     */
+    public Column column(int index) {
+        return columnsByEnd[index];
+    }
+
+    /**
+     * Column mapped to a property, or null when the property is not in the layout
+     */
+    public Column column(PolicyField field) {
+        return columnsByField[field.ordinal()];
+    }
+
+    /**
+     * Columns in layout file order
+     */
+    public List<Column> getColumns() {
+        return Arrays.asList(declaredColumns.clone());
+    }
+
+    private static void validate(List<Column> columns) {
+        boolean[] mapped = new boolean[PolicyField.values().length];
+        for (Column column : columns) {
+            if (column.start < 0 || column.end <= column.start) {
+                throw new IllegalStateException("Invalid bounds for column " + column.field.getPropertyName());
+            }
+            if (column.padding == Padding.NONE && column.trimmed) {
+                throw new IllegalStateException("Column " + column.field.getPropertyName()
+                        + " cannot combine NONE padding with trim");
+            }
+            if (mapped[column.field.ordinal()]) {
+                throw new IllegalStateException("Column " + column.field.getPropertyName() + " is mapped twice");
+            }
+            mapped[column.field.ordinal()] = true;
+
+            for (Column other : columns) {
+                if (other != column && column.start < other.end && other.start < column.end) {
+                    throw new IllegalStateException("Columns " + column.field.getPropertyName()
+                            + " and " + other.field.getPropertyName() + " overlap");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.PolicyRecord;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes field values straight into a record buffer at the offsets of the
+ * compiled layout. Values are padded per {@link RecordLayout.Padding} and
+ * truncated to the column width.
+ */
+final class RecordPatcher {
+
+    private static final ThreadLocal<char[]> CHAR_BUFFER = ThreadLocal.withInitial(() -> new char[8192]);
+
+    private final RecordLayout layout;
+    private final List<RecordLayout.Column> declaredColumns;
+    private final RecordLayout.Column[] unpaddedColumns;
+
+    RecordPatcher(RecordLayout layout) {
+        this.layout = layout;
+        this.declaredColumns = layout.getColumns();
+
+        List<RecordLayout.Column> unpadded = new ArrayList<>();
+        for (RecordLayout.Column column : declaredColumns) {
+            if (column.getPadding() == RecordLayout.Padding.NONE) {
+                unpadded.add(column);
+            }
+        }
+        this.unpaddedColumns = unpadded.toArray(new RecordLayout.Column[0]);
+    }
+
+    /**
+     * True if the record keeps its length after the update. An unpadded value
+     * that does not fill its column exactly shifts the rest of the record and
+     * has to go through {@link #patchShifting}.
+     */
+    boolean canPatchInPlace(PolicyRecord updates, int recordLength) {
+        for (RecordLayout.Column column : unpaddedColumns) {
+            if (column.isPresentIn(recordLength)) {
+                String value = column.getField().get(updates);
+                if (value != null && value.length() != column.getLength()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Patch a copy of the original record with every non-null mapped field of updates
+     */
+    String patch(String original, PolicyRecord updates) {
+        int length = original.length();
+        char[] buffer = CHAR_BUFFER.get();
+        if (buffer.length < length) {
+            buffer = new char[length];
+            CHAR_BUFFER.set(buffer);
+        }
+        original.getChars(0, length, buffer, 0);
+
+        int present = layout.presentColumns(length);
+        for (int i = 0; i < present; i++) {
+            RecordLayout.Column column = layout.column(i);
+            String value = column.getField().get(updates);
+            if (value != null) {
+                write(buffer, column, value);
+            }
+        }
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Patch a mapped ISO-8859-1 record into target, which must hold at least
+     * the record length. Columns a correction did not touch are normalized in
+     * place exactly as re-writing their parsed value would, without decoding
+     * them. Returns true if the output differs from the original bytes.
+     */
+    boolean patch(MappedPolicyRecord record, byte[] target) {
+        ByteBuffer source = record.getBuffer().duplicate();
+        source.position(record.getOffset());
+        int length = record.getLength();
+        source.get(target, 0, length);
+
+        boolean changed = false;
+        int present = layout.presentColumns(length);
+        for (int i = 0; i < present; i++) {
+            RecordLayout.Column column = layout.column(i);
+            if (record.isModified(column.getField())) {
+                String value = column.getField().get(record);
+                if (value != null) {
+                    changed |= write(target, column, value);
+                }
+            } else {
+                changed |= normalize(target, column);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Update through a StringBuilder, column by column in layout file order,
+     * for values that change the record length
+     */
+    String patchShifting(String original, PolicyRecord updates) {
+        StringBuilder record = new StringBuilder(original);
+        for (RecordLayout.Column column : declaredColumns) {
+            String value = column.getField().get(updates);
+            if (value != null && column.isPresentIn(record.length())) {
+                record.replace(column.getStart(), column.getEnd(), format(column, value));
+            }
+        }
+        return record.toString();
+    }
+
+    private static String format(RecordLayout.Column column, String value) {
+        if (column.getPadding() == RecordLayout.Padding.NONE) {
+            return value;
+        }
+        char[] formatted = new char[column.getEnd()];
+        write(formatted, column, value);
+        return new String(formatted, column.getStart(), column.getLength());
+    }
+
+    private static void write(char[] buffer, RecordLayout.Column column, String value) {
+        int start = column.getStart();
+        int width = column.getLength();
+        int length = value.length();
+
+        switch (column.getPadding()) {
+            case ZEROS_LEFT: {
+                int pad = Math.max(0, width - length);
+                for (int i = 0; i < pad; i++) {
+                    buffer[start + i] = '0';
+                }
+                for (int i = pad; i < width; i++) {
+                    char c = value.charAt(i - pad);
+                    buffer[start + i] = c == ' ' ? '0' : c;
+                }
+                break;
+            }
+            case SPACES_RIGHT: {
+                int copy = Math.min(width, length);
+                value.getChars(0, copy, buffer, start);
+                for (int i = copy; i < width; i++) {
+                    buffer[start + i] = ' ';
+                }
+                break;
+            }
+            default:
+                value.getChars(0, Math.min(width, length), buffer, start);
+        }
+    }
+
+    private static boolean write(byte[] buffer, RecordLayout.Column column, String value) {
+        int start = column.getStart();
+        int width = column.getLength();
+        int length = value.length();
+        boolean changed = false;
+
+        switch (column.getPadding()) {
+            case ZEROS_LEFT: {
+                int pad = Math.max(0, width - length);
+                for (int i = 0; i < width; i++) {
+                    char c = i < pad ? '0' : value.charAt(i - pad);
+                    changed |= put(buffer, start + i, c == ' ' ? '0' : c);
+                }
+                break;
+            }
+            case SPACES_RIGHT: {
+                for (int i = 0; i < width; i++) {
+                    changed |= put(buffer, start + i, i < length ? value.charAt(i) : ' ');
+                }
+                break;
+            }
+            default:
+                for (int i = 0; i < Math.min(width, length); i++) {
+                    changed |= put(buffer, start + i, value.charAt(i));
+                }
+        }
+        return changed;
+    }
+
+    /**
+     * Rewrite an untouched column the way writing back its parsed value would:
+     * trimmed content is re-aligned per the padding, and zero-padded columns
+     * have their blanks replaced by '0'.
+     */
+    private static boolean normalize(byte[] buffer, RecordLayout.Column column) {
+        int start = column.getStart();
+        int end = column.getEnd();
+        boolean changed = false;
+
+        int first = start;
+        int last = end;
+        if (column.isTrimmed()) {
+            while (first < end && (buffer[first] & 0xFF) <= ' ') {
+                first++;
+            }
+            while (last > first && (buffer[last - 1] & 0xFF) <= ' ') {
+                last--;
+            }
+        }
+
+        switch (column.getPadding()) {
+            case ZEROS_LEFT: {
+                // Right-align the content, copying backwards as it moves right
+                int target = end;
+                for (int i = last - 1; i >= first; i--) {
+                    byte b = buffer[i] == ' ' ? (byte) '0' : buffer[i];
+                    changed |= buffer[--target] != b;
+                    buffer[target] = b;
+                }
+                while (target > start) {
+                    changed |= buffer[--target] != '0';
+                    buffer[target] = '0';
+                }
+                break;
+            }
+            case SPACES_RIGHT: {
+                if (first == start && last == end) {
+                    break;
+                }
+                int target = start;
+                for (int i = first; i < last; i++) {
+                    changed |= buffer[target] != buffer[i];
+                    buffer[target++] = buffer[i];
+                }
+                while (target < end) {
+                    changed |= buffer[target] != ' ';
+                    buffer[target++] = ' ';
+                }
+                break;
+            }
+            default:
+                break;
+        }
+        return changed;
+    }
+
+    /**
+     * Store a char as ISO-8859-1, unmappable chars become '?' like String.getBytes
+     */
+    private static boolean put(byte[] buffer, int index, char c) {
+        byte b = c <= 0xFF ? (byte) c : (byte) '?';
+        boolean changed = buffer[index] != b;
+        buffer[index] = b;
+        return changed;
+    }
+}
@@ -0,0 +1,137 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.ActorAddress;
+import com.dailyrecycling.model.PolicyEnrichment;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Bounded read-through caches for the pcb reference lookups.
+ * Entries are evicted by size (W-TinyLFU) and expire after a TTL; lookups
+ * that found nothing are cached too, with their own shorter TTL.
+ */
+@Component
+public class ReferenceDataCache {
+
+    @Value("${reference.cache.max-size:100000}")
+    private long maxSize;
+
+    @Value("${reference.cache.ttl:PT30M}")
+    private Duration ttl;
+
+    @Value("${reference.cache.negative-ttl:PT5M}")
+    private Duration negativeTtl;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, PolicyEnrichment> actorReferences;
+    private Cache<String, Optional<Long>> actorIds;
+    private Cache<Long, Optional<ActorAddress>> addresses;
+    private Cache<Long, Optional<String>> bcuNumbers;
+
+    @PostConstruct
+    void init() {
+        actorReferences = build(reference -> reference.getActorId() == null);
+        actorIds = build(value -> !value.isPresent());
+        addresses = build(value -> !value.isPresent());
+        bcuNumbers = build(value -> !value.isPresent());
+
+        CaffeineCacheMetrics.monitor(meterRegistry, actorReferences, "actorReferences");
+        CaffeineCacheMetrics.monitor(meterRegistry, actorIds, "actorIds");
+        CaffeineCacheMetrics.monitor(meterRegistry, addresses, "addresses");
+        CaffeineCacheMetrics.monitor(meterRegistry, bcuNumbers, "bcuNumbers");
+    }
+
+    /**
+     * Actor ID, address and BCU number by policy number
+     */
+    public Cache<String, PolicyEnrichment> actorReferences() {
+        return actorReferences;
+    }
+
+    public Cache<String, Optional<Long>> actorIds() {
+        return actorIds;
+    }
+
+    public Cache<Long, Optional<ActorAddress>> addresses() {
+        return addresses;
+    }
+
+    public Cache<Long, Optional<String>> bcuNumbers() {
+        return bcuNumbers;
+    }
+
+    /**
+     * Drop every cached entry
+     */
+    public void invalidateAll() {
+        actorReferences.invalidateAll();
+        actorIds.invalidateAll();
+        addresses.invalidateAll();
+        bcuNumbers.invalidateAll();
+    }
+
+    /**
+     * Hit, miss, eviction and size counters per cache
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("actorReferences", stats(actorReferences));
+        stats.put("actorIds", stats(actorIds));
+        stats.put("addresses", stats(addresses));
+        stats.put("bcuNumbers", stats(bcuNumbers));
+        return stats;
+    }
+
+    private <K, V> Cache<K, V> build(Predicate<V> isNegative) {
+        long ttlNanos = ttl.toNanos();
+        long negativeTtlNanos = negativeTtl.toNanos();
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<K, V>() {
+                    @Override
+                    public long expireAfterCreate(K key, V value, long currentTime) {
+                        return isNegative.test(value) ? negativeTtlNanos : ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    private static Map<String, Object> stats(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("loadFailures", stats.loadFailureCount());
+        return result;
+    }
+}
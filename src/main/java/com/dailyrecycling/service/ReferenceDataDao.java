@@ -0,0 +1,368 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.ActorAddress;
+import com.dailyrecycling.model.GrossAmount;
+import com.dailyrecycling.model.PolicyEnrichment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Queries of the pcb reference tables. Each query selects only the columns it
+ * uses and maps rows straight into typed values, mapping only the first row
+ * of single lookups. Lookups run with a query timeout so a slow database fails
+ * the lookup instead of holding a batch worker and its pooled connection.
+ * <p>
+ * A policy mapped to several actors in pcbqtaso resolves to the lowest actor ID in
+ * every lookup, single or bulk, as in the preloaded {@link PolicyActorIndex}; such
+ * policies are counted by recycling.db.query.ambiguous.
+ * <p>
+ * Not-found results are returned as empty values; any other failure is thrown.
+ */
+@Repository
+public class ReferenceDataDao {
+
+    private static final String ACTOR_ID_SQL =
+            "SELECT MIN(id_actor) AS id_actor, COUNT(DISTINCT id_actor) AS actors " +
+            "FROM pcb.pcbqtaso WHERE policy_number = ? GROUP BY policy_number";
+
+    private static final String ADDRESS_SQL =
+            "SELECT first_line_address, second_line_address, city, postal_code " +
+            "FROM pcb.pcbqtadr WHERE id_actor = ?";
+
+    private static final String BCU_NUMBER_SQL =
+            "SELECT bcu_number FROM pcb.pcbqtaco WHERE id_actor = ?";
+
+    private static final String GROSS_AMOUNT_SQL =
+            "SELECT SUM(amount_gross) FROM pcb.pcbqtiny WHERE policy_number = ? GROUP BY policy_number";
+
+    private static final String ACTOR_REFERENCE_SQL =
+            "SELECT aso.id_actor, adr.id_actor AS address_actor, " +
+            "adr.first_line_address, adr.second_line_address, adr.city, adr.postal_code, aco.bcu_number " +
+            "FROM pcb.pcbqtaso aso " +
+            "LEFT JOIN pcb.pcbqtadr adr ON adr.id_actor = aso.id_actor " +
+            "LEFT JOIN pcb.pcbqtaco aco ON aco.id_actor = aso.id_actor " +
+            "WHERE aso.policy_number = ? " +
+            "ORDER BY aso.id_actor";
+
+    private static final String ENRICHMENT_SQL =
+            "SELECT q.policy_number, aso.id_actor, adr.id_actor AS address_actor, " +
+            "adr.first_line_address, adr.second_line_address, adr.city, adr.postal_code, " +
+            "aco.bcu_number, iny.amount_gross " +
+            "FROM unnest(CAST(? AS varchar[])) AS q(policy_number) " +
+            "LEFT JOIN pcb.pcbqtaso aso ON aso.policy_number = q.policy_number " +
+            "LEFT JOIN pcb.pcbqtadr adr ON adr.id_actor = aso.id_actor " +
+            "LEFT JOIN pcb.pcbqtaco aco ON aco.id_actor = aso.id_actor " +
+            "LEFT JOIN (SELECT policy_number, SUM(amount_gross) AS amount_gross FROM pcb.pcbqtiny " +
+            "WHERE policy_number = ANY(CAST(? AS varchar[])) GROUP BY policy_number) iny " +
+            "ON iny.policy_number = q.policy_number " +
+            "ORDER BY q.policy_number, aso.id_actor";
+
+    private static final String ACTOR_REFERENCES_SQL =
+            "SELECT q.policy_number, aso.id_actor, adr.id_actor AS address_actor, " +
+            "adr.first_line_address, adr.second_line_address, adr.city, adr.postal_code, aco.bcu_number " +
+            "FROM unnest(CAST(? AS varchar[])) AS q(policy_number) " +
+            "LEFT JOIN pcb.pcbqtaso aso ON aso.policy_number = q.policy_number " +
+            "LEFT JOIN pcb.pcbqtadr adr ON adr.id_actor = aso.id_actor " +
+            "LEFT JOIN pcb.pcbqtaco aco ON aco.id_actor = aso.id_actor " +
+            "ORDER BY q.policy_number, aso.id_actor";
+
+    private static final RowMapper<ActorAddress> ADDRESS_MAPPER = (rs, rowNum) -> new ActorAddress(
+            rs.getString("first_line_address"), rs.getString("second_line_address"),
+            rs.getString("city"), rs.getString("postal_code"));
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${database.query-timeout:PT5S}")
+    private Duration queryTimeout;
+
+    @Value("${database.bulk-query-timeout:PT60S}")
+    private Duration bulkQueryTimeout;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private QueryMetrics actorIdQuery;
+    private QueryMetrics addressQuery;
+    private QueryMetrics bcuNumberQuery;
+    private QueryMetrics grossAmountQuery;
+    private QueryMetrics actorReferenceQuery;
+    private QueryMetrics enrichmentQuery;
+
+    private final LongAdder failures = new LongAdder();
+    private final QueryLatency latency = new QueryLatency();
+
+    @PostConstruct
+    void init() {
+        // Own template: the shared one also runs the long preload scans, which must not time out
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        if (!queryTimeout.isZero()) {
+            jdbcTemplate.setQueryTimeout(seconds(queryTimeout));
+        }
+
+        actorIdQuery = new QueryMetrics(meterRegistry, "actorId", failures, latency);
+        addressQuery = new QueryMetrics(meterRegistry, "address", failures, latency);
+        bcuNumberQuery = new QueryMetrics(meterRegistry, "bcuNumber", failures, latency);
+        grossAmountQuery = new QueryMetrics(meterRegistry, "grossAmount", failures, latency);
+        actorReferenceQuery = new QueryMetrics(meterRegistry, "actorReference", failures, latency);
+        // Chunk lookups take longer by nature, so they do not count as lookup latency
+        enrichmentQuery = new QueryMetrics(meterRegistry, "enrichment", failures, null);
+    }
+
+    /**
+     * Number of queries that failed so far, not counting ones that found nothing
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * Number of single-record queries run so far, failed or not
+     */
+    public long getLookupCount() {
+        return latency.getCount();
+    }
+
+    /**
+     * Total time spent in the single-record queries counted by {@link #getLookupCount()}
+     */
+    public long getLookupNanos() {
+        return latency.getTotalNanos();
+    }
+
+    /**
+     * Actor ID of the policy, the lowest one if it has several
+     */
+    public Optional<Long> findActorId(String policyNumber) {
+        return actorIdQuery.emptyIfNull(actorIdQuery.time(() -> jdbcTemplate.query(ACTOR_ID_SQL,
+                first((rs, rowNum) -> {
+                    if (rs.getInt("actors") > 1) {
+                        actorIdQuery.recordAmbiguous(1);
+                    }
+                    return nullableLong(rs, "id_actor");
+                }), policyNumber)));
+    }
+
+    public Optional<ActorAddress> findAddress(Long actorId) {
+        return addressQuery.emptyIfNull(addressQuery.time(() -> jdbcTemplate.query(ADDRESS_SQL,
+                first(ADDRESS_MAPPER), actorId)));
+    }
+
+    public Optional<String> findBcuNumber(Long actorId) {
+        return bcuNumberQuery.emptyIfNull(bcuNumberQuery.time(() -> jdbcTemplate.query(BCU_NUMBER_SQL,
+                first((rs, rowNum) -> rs.getString("bcu_number")), actorId)));
+    }
+
+    /**
+     * Sum of the gross amounts of a policy, empty if it has none
+     */
+    public Optional<Double> findGrossAmount(String policyNumber) {
+        return grossAmountQuery.emptyIfNull(grossAmountQuery.time(() -> jdbcTemplate.query(GROSS_AMOUNT_SQL,
+                first((rs, rowNum) -> {
+                    double amount = rs.getDouble(1);
+                    return rs.wasNull() ? null : amount;
+                }), policyNumber)));
+    }
+
+    /**
+     * Actor ID, address and BCU number of one policy; all null if it has no actor.
+     * Rows come ordered by actor ID, so the first one is of the lowest actor.
+     */
+    public PolicyEnrichment findActorReference(String policyNumber) {
+        PolicyEnrichment enrichment = actorReferenceQuery.time(() -> jdbcTemplate.query(ACTOR_REFERENCE_SQL, rs -> {
+            if (!rs.next()) {
+                return null;
+            }
+            PolicyEnrichment first = mapActorReference(rs, policyNumber);
+            while (rs.next()) {
+                if (!first.getActorId().equals(nullableLong(rs, "id_actor"))) {
+                    actorReferenceQuery.recordAmbiguous(1);
+                    break;
+                }
+            }
+            return first;
+        }, policyNumber));
+        if (enrichment == null) {
+            actorReferenceQuery.recordEmpty();
+            return PolicyEnrichment.notFound(policyNumber);
+        }
+        return enrichment;
+    }
+
+    /**
+     * Actor, address, BCU number and gross amount of many policies in one round trip.
+     * Runs with the bulk query timeout.
+     */
+    public Map<String, PolicyEnrichment> findEnrichments(Collection<String> policyNumbers) {
+        return findEnrichments(policyNumbers, true);
+    }
+
+    /**
+     * {@link #findEnrichments} without the gross amounts, left null
+     */
+    public Map<String, PolicyEnrichment> findActorReferences(Collection<String> policyNumbers) {
+        return findEnrichments(policyNumbers, false);
+    }
+
+    private Map<String, PolicyEnrichment> findEnrichments(Collection<String> policyNumbers, boolean grossAmounts) {
+        Map<String, PolicyEnrichment> result = new HashMap<>();
+        Set<String> ambiguous = new HashSet<>();
+        Object[] numbers = policyNumbers.toArray();
+        enrichmentQuery.time(() -> {
+            jdbcTemplate.query(grossAmounts ? ENRICHMENT_SQL : ACTOR_REFERENCES_SQL, ps -> {
+                if (!bulkQueryTimeout.isZero()) {
+                    ps.setQueryTimeout(seconds(bulkQueryTimeout));
+                }
+                Array array = ps.getConnection().createArrayOf("varchar", numbers);
+                ps.setArray(1, array);
+                if (grossAmounts) {
+                    ps.setArray(2, array);
+                }
+            }, rs -> {
+                String policyNumber = rs.getString("policy_number");
+                PolicyEnrichment previous = result.get(policyNumber);
+                if (previous != null) {
+                    // Rows come ordered by actor ID: keep the first, of the lowest actor,
+                    // and its first address/BCU row like the single lookups
+                    if (previous.getActorId() != null
+                            && !previous.getActorId().equals(nullableLong(rs, "id_actor"))) {
+                        ambiguous.add(policyNumber);
+                    }
+                    return;
+                }
+
+                PolicyEnrichment enrichment = mapActorReference(rs, policyNumber);
+                if (grossAmounts) {
+                    double grossAmount = rs.getDouble("amount_gross");
+                    enrichment.setGrossAmount(rs.wasNull() ? GrossAmount.noRows() : GrossAmount.of(grossAmount));
+                }
+                result.put(policyNumber, enrichment);
+            });
+            return null;
+        });
+        for (PolicyEnrichment enrichment : result.values()) {
+            if (enrichment.getActorId() == null) {
+                enrichmentQuery.recordEmpty();
+            }
+        }
+        enrichmentQuery.recordAmbiguous(ambiguous.size());
+        return result;
+    }
+
+    private static PolicyEnrichment mapActorReference(ResultSet rs, String policyNumber) throws SQLException {
+        PolicyEnrichment enrichment = PolicyEnrichment.notFound(policyNumber);
+        enrichment.setActorId(nullableLong(rs, "id_actor"));
+        if (rs.getObject("address_actor") != null) {
+            enrichment.setAddress(ADDRESS_MAPPER.mapRow(rs, rs.getRow()));
+        }
+        enrichment.setBcuNumber(rs.getString("bcu_number"));
+        return enrichment;
+    }
+
+    /**
+     * Map the first row only, or return null if there is none
+     */
+    private static <T> ResultSetExtractor<T> first(RowMapper<T> mapper) {
+        return rs -> rs.next() ? mapper.mapRow(rs, 0) : null;
+    }
+
+    private static Long nullableLong(ResultSet rs, String column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static int seconds(Duration timeout) {
+        return (int) Math.max(1, timeout.getSeconds());
+    }
+
+    /**
+     * Latency timer plus error, empty-result and ambiguous-policy counters of one query.
+     * A query that finds no row counts as empty, not as an error.
+     */
+    private static final class QueryMetrics {
+        private final Timer timer;
+        private final Counter errors;
+        private final Counter empty;
+        private final Counter ambiguous;
+        private final LongAdder failures;
+        private final QueryLatency latency;
+
+        private QueryMetrics(MeterRegistry registry, String query, LongAdder failures, QueryLatency latency) {
+            this.failures = failures;
+            this.latency = latency;
+            timer = Timer.builder("recycling.db.query")
+                    .description("Reference data query latency")
+                    .tag("query", query)
+                    .register(registry);
+            errors = Counter.builder("recycling.db.query.errors")
+                    .description("Reference data queries that failed")
+                    .tag("query", query)
+                    .register(registry);
+            empty = Counter.builder("recycling.db.query.empty")
+                    .description("Reference data queries that found nothing")
+                    .tag("query", query)
+                    .register(registry);
+            ambiguous = Counter.builder("recycling.db.query.ambiguous")
+                    .description("Policies found mapped to several actors, resolved to the lowest actor ID")
+                    .tag("query", query)
+                    .register(registry);
+        }
+
+        <T> T time(Supplier<T> query) {
+            long start = System.nanoTime();
+            try {
+                return query.get();
+            } catch (RuntimeException e) {
+                errors.increment();
+                failures.increment();
+                throw e;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                timer.record(nanos, TimeUnit.NANOSECONDS);
+                if (latency != null) {
+                    latency.record(nanos);
+                }
+            }
+        }
+
+        <T> Optional<T> emptyIfNull(T value) {
+            if (value == null) {
+                empty.increment();
+            }
+            return Optional.ofNullable(value);
+        }
+
+        void recordEmpty() {
+            empty.increment();
+        }
+
+        void recordAmbiguous(int policies) {
+            ambiguous.increment(policies);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.dailyrecycling.service;
+
+/**
+ * Preloaded policy → actor → BCU snapshot, read-only once built
+ */
+public class ReferenceIndex {
+
+    private final PolicyActorIndex policyActors;
+    private final ActorBcuIndex actorBcuNumbers;
+    private final long loadedAt;
+    private final long loadMillis;
+
+    public ReferenceIndex(PolicyActorIndex policyActors, ActorBcuIndex actorBcuNumbers, long loadMillis) {
+        this.policyActors = policyActors;
+        this.actorBcuNumbers = actorBcuNumbers;
+        this.loadedAt = System.currentTimeMillis();
+        this.loadMillis = loadMillis;
+    }
+
+    /**
+     * Actor ID of the policy, the lowest one if it has several, null if unknown
+     */
+    public Long getActorId(String policyNumber) {
+        long actorId = policyActors.get(policyNumber);
+        return actorId == PolicyActorIndex.MISSING ? null : actorId;
+    }
+
+    public String getBcuNumber(long actorId) {
+        return actorBcuNumbers.get(actorId);
+    }
+
+    public int getPolicyCount() {
+        return policyActors.size();
+    }
+
+    /**
+     * Policies mapped to several actors, resolved to the lowest actor ID
+     */
+    public int getAmbiguousPolicyCount() {
+        return policyActors.ambiguousCount();
+    }
+
+    public int getActorCount() {
+        return actorBcuNumbers.size();
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    public long getLoadMillis() {
+        return loadMillis;
+    }
+
+    /**
+     * Bytes held by the index arrays
+     */
+    public long getFootprintBytes() {
+        return policyActors.footprintBytes() + actorBcuNumbers.footprintBytes();
+    }
+}
@@ -0,0 +1,146 @@
+package com.dailyrecycling.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Optional startup preload of the policy → actor → BCU mapping.
+ * Both tables are streamed through a server-side cursor into compact
+ * primitive indexes that {@link DatabaseService} answers from once loaded.
+ */
+@Service
+public class ReferencePreloadService implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ReferencePreloadService.class);
+
+    private static final String POLICY_ACTOR_SQL = "SELECT policy_number, id_actor FROM pcb.pcbqtaso";
+    private static final String ACTOR_BCU_SQL = "SELECT id_actor, bcu_number FROM pcb.pcbqtaco";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${reference.preload.enabled:false}")
+    private boolean enabled;
+
+    @Value("${reference.preload.fetch-size:10000}")
+    private int fetchSize;
+
+    @Value("${reference.preload.expected-policies:1000000}")
+    private int expectedPolicies;
+
+    private volatile ReferenceIndex index;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            reload();
+        } catch (Exception e) {
+            log.error("Reference preload failed, falling back to per-record lookups", e);
+        }
+    }
+
+    /**
+     * Loaded index, null when preloading is disabled or has not finished
+     */
+    public ReferenceIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Stream both tables into a fresh index and swap it in
+     */
+    public synchronized ReferenceIndex reload() {
+        long start = System.nanoTime();
+
+        PolicyActorIndex policyActors = new PolicyActorIndex(expectedPolicies);
+        stream(POLICY_ACTOR_SQL, rs -> {
+            String policyNumber = rs.getString(1);
+            long actorId = rs.getLong(2);
+            if (policyNumber != null && !rs.wasNull()) {
+                policyActors.put(policyNumber, actorId);
+            }
+        });
+        policyActors.trim();
+
+        ActorBcuIndex actorBcuNumbers = new ActorBcuIndex(expectedPolicies);
+        stream(ACTOR_BCU_SQL, rs -> {
+            long actorId = rs.getLong(1);
+            if (!rs.wasNull()) {
+                actorBcuNumbers.put(actorId, rs.getString(2));
+            }
+        });
+        actorBcuNumbers.trim();
+
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+        ReferenceIndex loaded = new ReferenceIndex(policyActors, actorBcuNumbers, loadMillis);
+        index = loaded;
+
+        log.info("Preloaded {} policies and {} actors in {} ms, index {} MB",
+                loaded.getPolicyCount(), loaded.getActorCount(), loadMillis,
+                loaded.getFootprintBytes() >> 20);
+        if (loaded.getAmbiguousPolicyCount() > 0) {
+            log.warn("{} policies are mapped to several actors in pcbqtaso; the lowest actor ID is used",
+                    loaded.getAmbiguousPolicyCount());
+        }
+        return loaded;
+    }
+
+    /**
+     * Load time, row counts and memory use of the current index
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        ReferenceIndex current = index;
+        stats.put("loaded", current != null);
+        if (current != null) {
+            stats.put("policies", current.getPolicyCount());
+            stats.put("ambiguousPolicies", current.getAmbiguousPolicyCount());
+            stats.put("actors", current.getActorCount());
+            stats.put("loadedAt", current.getLoadedAt());
+            stats.put("loadMillis", current.getLoadMillis());
+            stats.put("footprintBytes", current.getFootprintBytes());
+        }
+        return stats;
+    }
+
+    /**
+     * PgJDBC only uses a cursor with auto-commit off and a fetch size set;
+     * otherwise the whole result set is materialized on the client
+     */
+    private void stream(String sql, RowCallbackHandler handler) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(fetchSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        handler.processRow(rs);
+                    }
+                }
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+}
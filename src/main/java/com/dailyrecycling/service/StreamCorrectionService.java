@@ -0,0 +1,163 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.PolicyField;
+import com.dailyrecycling.model.PolicyRecord;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Corrects a stream of records, one per line, writing one NDJSON result line
+ * per input line as soon as it is corrected. Input lines are either raw
+ * fixed-width records or NDJSON objects with "record" and optional "errorType".
+ */
+@Service
+public class StreamCorrectionService {
+
+    private static final byte NEWLINE = '\n';
+
+    /**
+     * What each result line carries besides its line number and status
+     */
+    public enum Output {
+        /** The corrected fixed-width line only */
+        LINE,
+        /** Only the fields the corrections changed, with their new values */
+        DIFF,
+        /** The corrected line and the whole parsed record, like /correct */
+        FULL
+    }
+
+    @Autowired
+    private FixedWidthParser fixedWidthParser;
+
+    @Autowired
+    private ErrorCorrectionService errorCorrectionService;
+
+    @Autowired
+    private RecordLayout recordLayout;
+
+    @Autowired
+    private CorrectionResultCache correctionResultCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${batch.charset:ISO-8859-1}")
+    private String rawCharsetName;
+
+    /**
+     * Charset of raw fixed-width input when the request does not name one
+     */
+    public Charset getDefaultRawCharset() {
+        return Charset.forName(rawCharsetName);
+    }
+
+    /**
+     * Correct every line of the input; a line that fails produces an error result, not an abort
+     */
+    public void correct(InputStream in, Charset charset, boolean ndjson, String errorType,
+                        Output output, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset));
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            out.write(objectMapper.writeValueAsBytes(correctLine(lineNumber, line, ndjson, errorType, output)));
+            out.write(NEWLINE);
+            if (!reader.ready()) {
+                // Nothing more buffered: push what is done instead of waiting for the next line
+                out.flush();
+            }
+        }
+        out.flush();
+    }
+
+    private Map<String, Object> correctLine(long lineNumber, String line, boolean ndjson,
+                                            String defaultErrorType, Output output) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("line", lineNumber);
+        try {
+            String record = line;
+            String errorType = defaultErrorType;
+            if (ndjson) {
+                JsonNode node = objectMapper.readTree(line);
+                record = node.path("record").asText(null);
+                errorType = node.path("errorType").asText(defaultErrorType);
+            }
+            if (record == null || record.trim().isEmpty()) {
+                throw new IllegalArgumentException("Record is required");
+            }
+
+            CorrectionResultCache.Hit cached = correctionResultCache.lookup(record, errorType);
+            long stamp = correctionResultCache.stamp();
+            PolicyRecord policyRecord = fixedWidthParser.parseRecord(record);
+            List<RecordLayout.Column> columns = recordLayout.getColumns();
+            String[] before = output == Output.DIFF ? snapshot(policyRecord, columns) : null;
+
+            String correctedRecord;
+            if (cached != null) {
+                cached.applyTo(policyRecord);
+                correctedRecord = cached.getCorrectedRecord();
+            } else {
+                policyRecord = errorCorrectionService.applyCorrections(policyRecord, errorType);
+                correctedRecord = fixedWidthParser.updateRecord(record, policyRecord);
+                correctionResultCache.store(record, errorType, policyRecord, correctedRecord, stamp);
+            }
+
+            result.put("success", true);
+            switch (output) {
+                case DIFF:
+                    result.put("changes", changes(policyRecord, columns, before));
+                    break;
+                case FULL:
+                    result.put("correctedRecord", correctedRecord);
+                    result.put("policyRecord", policyRecord);
+                    break;
+                default:
+                    result.put("correctedRecord", correctedRecord);
+            }
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("error", e.getMessage());
+        }
+        return result;
+    }
+
+    private static String[] snapshot(PolicyRecord record, List<RecordLayout.Column> columns) {
+        String[] values = new String[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = columns.get(i).getField().get(record);
+        }
+        return values;
+    }
+
+    private static Map<String, String> changes(PolicyRecord record, List<RecordLayout.Column> columns, String[] before) {
+        Map<String, String> changes = new LinkedHashMap<>();
+        for (int i = 0; i < before.length; i++) {
+            PolicyField field = columns.get(i).getField();
+            String value = field.get(record);
+            if (!Objects.equals(before[i], value)) {
+                changes.put(field.getPropertyName(), value);
+            }
+        }
+        return changes;
+    }
+}
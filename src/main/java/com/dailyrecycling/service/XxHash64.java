@@ -0,0 +1,89 @@
+package com.dailyrecycling.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * XXH64 over a byte range of a buffer, read with absolute gets so the
+ * buffer's position and shared mapped buffers are left untouched
+ */
+final class XxHash64 {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private XxHash64() {
+    }
+
+    static long hash(ByteBuffer buffer, int offset, int length, long seed) {
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        int end = offset + length;
+        int i = offset;
+        long hash;
+
+        if (length >= 32) {
+            long v1 = seed + PRIME1 + PRIME2;
+            long v2 = seed + PRIME2;
+            long v3 = seed;
+            long v4 = seed - PRIME1;
+            int limit = end - 32;
+            do {
+                v1 = round(v1, getLong(buffer, i, bigEndian));
+                v2 = round(v2, getLong(buffer, i + 8, bigEndian));
+                v3 = round(v3, getLong(buffer, i + 16, bigEndian));
+                v4 = round(v4, getLong(buffer, i + 24, bigEndian));
+                i += 32;
+            } while (i <= limit);
+
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = seed + PRIME5;
+        }
+
+        hash += length;
+        for (; i + 8 <= end; i += 8) {
+            hash ^= round(0, getLong(buffer, i, bigEndian));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if (i + 4 <= end) {
+            int word = buffer.getInt(i);
+            hash ^= ((bigEndian ? Integer.reverseBytes(word) : word) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            i += 4;
+        }
+        for (; i < end; i++) {
+            hash ^= (buffer.get(i) & 0xFF) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long getLong(ByteBuffer buffer, int index, boolean bigEndian) {
+        long word = buffer.getLong(index);
+        return bigEndian ? Long.reverseBytes(word) : word;
+    }
+
+    private static long round(long accumulator, long input) {
+        accumulator += input * PRIME2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME1;
+    }
+
+    private static long merge(long hash, long value) {
+        hash ^= round(0, value);
+        return hash * PRIME1 + PRIME4;
+    }
+}
@@ -0,0 +1,82 @@
+package com.dailyrecycling.service.rule;
+
+import com.dailyrecycling.model.ActorAddress;
+import com.dailyrecycling.model.ErrorType;
+import com.dailyrecycling.model.PolicyField;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.CorrectionContext;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Blank address fields, filled from the address of the policy's actor
+ */
+@Component
+@Order(4)
+public class AddressFieldsRule implements CorrectionRule {
+
+    public static final String NAME = "ADDRESS_FIELDS";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Address Fields (1st Line, 2nd Line, City, Postal Code)";
+    }
+
+    @Override
+    public Set<ErrorType> getErrorTypes() {
+        return EnumSet.of(ErrorType.FIRST_LINE_ADDRESS_NULL, ErrorType.SECOND_LINE_ADDRESS_NULL,
+                ErrorType.CITY_NULL, ErrorType.POSTAL_CODE_NULL);
+    }
+
+    @Override
+    public int getCost() {
+        return COST_ACTOR_REFERENCE;
+    }
+
+    @Override
+    public boolean requiresReferenceData() {
+        return true;
+    }
+
+    @Override
+    public boolean detect(PolicyRecord record) {
+        return RecordValues.isBlank(record, PolicyField.FIRST_LINE_ADDRESS)
+                || RecordValues.isBlank(record, PolicyField.SECOND_LINE_ADDRESS)
+                || RecordValues.isBlank(record, PolicyField.CITY)
+                || RecordValues.isBlank(record, PolicyField.POSTAL_CODE);
+    }
+
+    @Override
+    public void correct(PolicyRecord record, CorrectionContext context) {
+        ActorAddress address = context.getAddress();
+
+        if (address == null) {
+            return;
+        }
+
+        // Update address fields from database
+        if (RecordValues.isBlank(record, PolicyField.FIRST_LINE_ADDRESS) && address.getFirstLineAddress() != null) {
+            record.setFirstLineAddress(address.getFirstLineAddress());
+        }
+
+        if (RecordValues.isBlank(record, PolicyField.SECOND_LINE_ADDRESS) && address.getSecondLineAddress() != null) {
+            record.setSecondLineAddress(address.getSecondLineAddress());
+        }
+
+        if (RecordValues.isBlank(record, PolicyField.CITY) && address.getCity() != null) {
+            record.setCity(address.getCity());
+        }
+
+        if (RecordValues.isBlank(record, PolicyField.POSTAL_CODE) && address.getPostalCode() != null) {
+            record.setPostalCode(address.getPostalCode());
+        }
+    }
+}
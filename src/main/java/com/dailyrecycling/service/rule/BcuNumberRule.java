@@ -0,0 +1,94 @@
+package com.dailyrecycling.service.rule;
+
+import com.dailyrecycling.model.ErrorType;
+import com.dailyrecycling.model.PolicyField;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.CorrectionContext;
+import com.dailyrecycling.service.EmailService;
+import com.dailyrecycling.service.RecordLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * BCU number missing: taken from the policy's actor, or the back office is
+ * notified when the actor has none either. Inactive while the bcuNumber column
+ * is not in the record layout: a missing column is not a missing number.
+ */
+@Component
+@Order(5)
+public class BcuNumberRule implements CorrectionRule {
+
+    private static final Logger log = LoggerFactory.getLogger(BcuNumberRule.class);
+
+    public static final String NAME = "BCU_NUMBER";
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private RecordLayout recordLayout;
+
+    private boolean active;
+
+    @PostConstruct
+    void init() {
+        active = recordLayout.column(PolicyField.BCU_NUMBER) != null;
+        if (!active) {
+            log.info("{} rule inactive: bcuNumber is not in the record layout", NAME);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getDescription() {
+        return "BCU Number Null";
+    }
+
+    @Override
+    public Set<ErrorType> getErrorTypes() {
+        return EnumSet.of(ErrorType.BCU_NUMBER_NULL);
+    }
+
+    @Override
+    public int getCost() {
+        return COST_ACTOR_REFERENCE;
+    }
+
+    @Override
+    public boolean requiresReferenceData() {
+        return true;
+    }
+
+    @Override
+    public boolean detect(PolicyRecord record) {
+        return active && RecordValues.isBlank(record, PolicyField.BCU_NUMBER);
+    }
+
+    @Override
+    public void correct(PolicyRecord record, CorrectionContext context) {
+        if (!active || context.getActorId() == null) {
+            return;
+        }
+
+        String bcuNumber = context.getBcuNumber();
+
+        if (bcuNumber != null && !bcuNumber.trim().isEmpty()) {
+            record.setBcuNumber(bcuNumber);
+        } else {
+            // Send email to back office
+            emailService.sendBcuNumberMissingEmail(record.getPolicyNumber(),
+                    PolicyNumbers.appCode(record.getPolicyNumber()));
+        }
+    }
+}
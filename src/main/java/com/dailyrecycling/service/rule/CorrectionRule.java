@@ -0,0 +1,59 @@
+package com.dailyrecycling.service.rule;
+
+import com.dailyrecycling.model.ErrorType;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.CorrectionContext;
+
+import java.util.Set;
+
+/**
+ * One correction, selected by name or by the error types it fixes.
+ * {@link #detect} only looks at the parsed fields; {@link #correct}, which
+ * may read reference data or notify the back office, runs only when the
+ * detector fires or the caller selected the rule explicitly.
+ * Implementations are Spring beans picked up by the {@link CorrectionRuleRegistry};
+ * rules of equal cost run in {@code @Order} order.
+ */
+public interface CorrectionRule {
+
+    /** Checks of the parsed fields only */
+    int COST_FIELDS = 10;
+    /** Queues a back office notification */
+    int COST_NOTIFICATION = 20;
+    /** Reads the cached actor reference: actor, address and BCU number */
+    int COST_ACTOR_REFERENCE = 30;
+    /** Reads the gross amount, which is not cached */
+    int COST_GROSS_AMOUNT = 40;
+
+    /**
+     * Name the rule is selected by in the errorType parameter
+     */
+    String getName();
+
+    String getDescription();
+
+    /**
+     * Error types this rule corrects; also accepted as errorType to select it
+     */
+    Set<ErrorType> getErrorTypes();
+
+    /**
+     * Relative cost of the correction; when all rules run, cheaper rules run first
+     */
+    int getCost();
+
+    /**
+     * True if the correction reads reference data from the database
+     */
+    boolean requiresReferenceData();
+
+    /**
+     * True if the record has the error, judged from its parsed fields alone
+     */
+    boolean detect(PolicyRecord record);
+
+    /**
+     * Correct the record in place
+     */
+    void correct(PolicyRecord record, CorrectionContext context);
+}
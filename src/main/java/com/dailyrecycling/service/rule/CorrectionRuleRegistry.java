@@ -0,0 +1,196 @@
+package com.dailyrecycling.service.rule;
+
+import com.dailyrecycling.model.ErrorType;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.CorrectionContext;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * All {@link CorrectionRule} beans, ordered by cost, with per-rule detector
+ * hit rates and correction timings. A rule is looked up by its name or by
+ * any of its error types.
+ */
+@Component
+public class CorrectionRuleRegistry {
+
+    @Autowired
+    private List<CorrectionRule> correctionRules;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private List<Registration> rules;
+    private Map<String, Registration> rulesByKey;
+
+    @PostConstruct
+    void init() {
+        List<CorrectionRule> ordered = new ArrayList<>(correctionRules);
+        // Stable: rules of equal cost keep their @Order
+        ordered.sort(Comparator.comparingInt(CorrectionRule::getCost));
+
+        List<Registration> registrations = new ArrayList<>();
+        Map<String, Registration> byKey = new HashMap<>();
+        for (CorrectionRule rule : ordered) {
+            Registration registration = new Registration(rule, meterRegistry);
+            registrations.add(registration);
+            register(byKey, rule.getName(), registration);
+            for (ErrorType errorType : rule.getErrorTypes()) {
+                register(byKey, errorType.name(), registration);
+            }
+        }
+        rules = Collections.unmodifiableList(registrations);
+        rulesByKey = byKey;
+    }
+
+    private static void register(Map<String, Registration> byKey, String key, Registration registration) {
+        Registration previous = byKey.put(key.toUpperCase(Locale.ROOT), registration);
+        if (previous != null && previous != registration) {
+            throw new IllegalStateException("Correction rules " + previous.getRule().getName()
+                    + " and " + registration.getRule().getName() + " are both registered for " + key);
+        }
+    }
+
+    /**
+     * Rules cheapest first
+     */
+    public List<Registration> getRules() {
+        return rules;
+    }
+
+    /**
+     * Rule selected by a rule name or error type, case-insensitive; null if none matches
+     */
+    public Registration find(String errorType) {
+        return errorType == null ? null : rulesByKey.get(errorType.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Rule registered under the given name
+     */
+    public Registration get(String name) {
+        Registration registration = find(name);
+        if (registration == null) {
+            throw new IllegalArgumentException("No correction rule " + name);
+        }
+        return registration;
+    }
+
+    /**
+     * Rule names and descriptions, cheapest first
+     */
+    public Map<String, String> getDescriptions() {
+        Map<String, String> descriptions = new LinkedHashMap<>();
+        for (Registration registration : rules) {
+            descriptions.put(registration.getRule().getName(), registration.getRule().getDescription());
+        }
+        return descriptions;
+    }
+
+    /**
+     * Detector hit rates and correction counts per rule, cheapest first
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (Registration registration : rules) {
+            stats.add(registration.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * A rule with its counters
+     */
+    public static final class Registration {
+        private final CorrectionRule rule;
+        private final Timer timer;
+        private final LongAdder detected = new LongAdder();
+        private final LongAdder missed = new LongAdder();
+        private final LongAdder forced = new LongAdder();
+
+        private Registration(CorrectionRule rule, MeterRegistry meterRegistry) {
+            this.rule = rule;
+            this.timer = Timer.builder("recycling.correction")
+                    .description("Time spent in one correction, including its reference data lookups")
+                    .tag("type", rule.getName())
+                    .register(meterRegistry);
+            // Disjoint outcomes, so summing over result gives the records checked
+            FunctionCounter.builder("recycling.rule.detections", detected, LongAdder::sum)
+                    .description("Records checked by the rule's detector")
+                    .tag("rule", rule.getName())
+                    .tag("result", "hit")
+                    .register(meterRegistry);
+            FunctionCounter.builder("recycling.rule.detections", missed, LongAdder::sum)
+                    .description("Records checked by the rule's detector")
+                    .tag("rule", rule.getName())
+                    .tag("result", "miss")
+                    .register(meterRegistry);
+        }
+
+        public CorrectionRule getRule() {
+            return rule;
+        }
+
+        /**
+         * Run the detector, counting the outcome
+         */
+        public boolean detect(PolicyRecord record) {
+            if (rule.detect(record)) {
+                detected.increment();
+                return true;
+            }
+            missed.increment();
+            return false;
+        }
+
+        /**
+         * Run the correction if the detector fires
+         */
+        public void detectAndCorrect(PolicyRecord record, CorrectionContext context) {
+            if (detect(record)) {
+                context.ruleApplied(rule.getName());
+                timer.record(() -> rule.correct(record, context));
+            }
+        }
+
+        /**
+         * Run the correction without asking the detector, for an explicitly selected rule
+         */
+        public void correct(PolicyRecord record, CorrectionContext context) {
+            forced.increment();
+            context.ruleApplied(rule.getName());
+            timer.record(() -> rule.correct(record, context));
+        }
+
+        Map<String, Object> getStats() {
+            long detectedCount = detected.sum();
+            long evaluatedCount = detectedCount + missed.sum();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("rule", rule.getName());
+            stats.put("errorTypes", rule.getErrorTypes());
+            stats.put("cost", rule.getCost());
+            stats.put("evaluated", evaluatedCount);
+            stats.put("detected", detectedCount);
+            stats.put("hitRate", evaluatedCount == 0 ? 0.0 : (double) detectedCount / evaluatedCount);
+            stats.put("forced", forced.sum());
+            stats.put("corrections", timer.count());
+            stats.put("meanCorrectionMillis", timer.mean(TimeUnit.MILLISECONDS));
+            return stats;
+        }
+    }
+}
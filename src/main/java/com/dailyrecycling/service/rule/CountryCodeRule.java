@@ -0,0 +1,86 @@
+package com.dailyrecycling.service.rule;
+
+import com.dailyrecycling.model.ErrorType;
+import com.dailyrecycling.model.PolicyField;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.CorrectionContext;
+import com.dailyrecycling.service.RecordLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Code Pays Assure: the insured's country code is missing. Only active once the
+ * countryCode column is in the record layout and a default country is configured;
+ * otherwise nothing is detected and nothing is set.
+ */
+@Component
+@Order(6)
+public class CountryCodeRule implements CorrectionRule {
+
+    private static final Logger log = LoggerFactory.getLogger(CountryCodeRule.class);
+
+    public static final String NAME = "CODE_PAYS_ASSURE";
+
+    @Autowired
+    private RecordLayout recordLayout;
+
+    @Value("${correction.default-country-code:}")
+    private String defaultCountryCode;
+
+    private boolean active;
+
+    @PostConstruct
+    void init() {
+        boolean mapped = recordLayout.column(PolicyField.COUNTRY_CODE) != null;
+        active = mapped && !defaultCountryCode.trim().isEmpty();
+        if (!active) {
+            log.info("{} rule inactive: {}", NAME, mapped ? "no correction.default-country-code configured"
+                    : "countryCode is not in the record layout");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Code Pays Assure";
+    }
+
+    @Override
+    public Set<ErrorType> getErrorTypes() {
+        return EnumSet.of(ErrorType.CODE_PAYS_ASSURE_NULL);
+    }
+
+    @Override
+    public int getCost() {
+        return COST_FIELDS;
+    }
+
+    @Override
+    public boolean requiresReferenceData() {
+        return false;
+    }
+
+    @Override
+    public boolean detect(PolicyRecord record) {
+        return active && RecordValues.isBlank(record, PolicyField.COUNTRY_CODE);
+    }
+
+    @Override
+    public void correct(PolicyRecord record, CorrectionContext context) {
+        if (detect(record)) {
+            record.setCountryCode(defaultCountryCode.trim());
+        }
+    }
+}
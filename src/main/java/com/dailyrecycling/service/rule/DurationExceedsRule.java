@@ -0,0 +1,67 @@
+package com.dailyrecycling.service.rule;
+
+import com.dailyrecycling.model.ErrorType;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.CorrectionContext;
+import com.dailyrecycling.service.EmailService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Duration Exceeds 9999 Days: the record is left as is and the back office
+ * is asked to correct the policy dates
+ */
+@Component
+@Order(7)
+public class DurationExceedsRule implements CorrectionRule {
+
+    public static final String NAME = "DURATION_EXCEEDS_9999";
+
+    private static final long MAX_DURATION_DAYS = 9999;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Duration Exceeds 9999 Days";
+    }
+
+    @Override
+    public Set<ErrorType> getErrorTypes() {
+        return EnumSet.of(ErrorType.DURATION_EXCEEDS_9999);
+    }
+
+    @Override
+    public int getCost() {
+        return COST_NOTIFICATION;
+    }
+
+    @Override
+    public boolean requiresReferenceData() {
+        return false;
+    }
+
+    @Override
+    public boolean detect(PolicyRecord record) {
+        return PolicyDates.duration(record) > MAX_DURATION_DAYS;
+    }
+
+    @Override
+    public void correct(PolicyRecord record, CorrectionContext context) {
+        long duration = PolicyDates.duration(record);
+        if (duration > MAX_DURATION_DAYS) {
+            emailService.sendDurationExceedsEmail(record.getPolicyNumber(),
+                    PolicyNumbers.appCode(record.getPolicyNumber()), (int) Math.min(duration, Integer.MAX_VALUE));
+        }
+    }
+}
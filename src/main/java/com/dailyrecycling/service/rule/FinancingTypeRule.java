@@ -0,0 +1,65 @@
+package com.dailyrecycling.service.rule;
+
+import com.dailyrecycling.model.ErrorType;
+import com.dailyrecycling.model.PolicyField;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.CorrectionContext;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Financing type missing, or a dash in the financing rate
+ */
+@Component
+@Order(3)
+public class FinancingTypeRule implements CorrectionRule {
+
+    public static final String NAME = "FINANCING_TYPE";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Financing Type Missing";
+    }
+
+    @Override
+    public Set<ErrorType> getErrorTypes() {
+        return EnumSet.of(ErrorType.FINANCING_TYPE_NULL);
+    }
+
+    @Override
+    public int getCost() {
+        return COST_FIELDS;
+    }
+
+    @Override
+    public boolean requiresReferenceData() {
+        return false;
+    }
+
+    @Override
+    public boolean detect(PolicyRecord record) {
+        return RecordValues.isBlank(record, PolicyField.FINANCING_TYPE)
+                || RecordValues.contains(record, PolicyField.FINANCING_RATE, '-');
+    }
+
+    @Override
+    public void correct(PolicyRecord record, CorrectionContext context) {
+        // Set Financing Type to "2" if empty
+        if (RecordValues.isBlank(record, PolicyField.FINANCING_TYPE)) {
+            record.setFinancingType("2");
+        }
+
+        // Replace dash with "10" in Financing Rate
+        if (RecordValues.contains(record, PolicyField.FINANCING_RATE, '-')) {
+            record.setFinancingRate("10");
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.dailyrecycling.service.rule;
+
+import com.dailyrecycling.model.ErrorType;
+import com.dailyrecycling.model.GrossAmount;
+import com.dailyrecycling.model.PolicyField;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.CorrectionContext;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Event Type other than 1RA with Gross Amount = 0: the policy ends when it starts
+ * and carries no premium
+ */
+@Component
+@Order(2)
+public class GrossAmountZeroRule implements CorrectionRule {
+
+    public static final String NAME = "GROSS_AMOUNT_ZERO";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Event Type ≠ 1RA & Gross Amount = 0";
+    }
+
+    @Override
+    public Set<ErrorType> getErrorTypes() {
+        return EnumSet.of(ErrorType.EVENT_TYPE_GROSS_AMOUNT_ZERO);
+    }
+
+    @Override
+    public int getCost() {
+        return COST_GROSS_AMOUNT;
+    }
+
+    @Override
+    public boolean requiresReferenceData() {
+        return true;
+    }
+
+    /**
+     * The gross amount is only known from the database, so this only rules out
+     * records that already end when they start with a zero premium
+     */
+    @Override
+    public boolean detect(PolicyRecord record) {
+        return !RecordValues.equal(record, PolicyField.POLICY_START_DATE, PolicyField.POLICY_END_DATE)
+                || RecordValues.amount(record, PolicyField.TOTAL_PREMIUM_AMOUNT) != 0;
+    }
+
+    @Override
+    public void correct(PolicyRecord record, CorrectionContext context) {
+        GrossAmount grossAmount = context.getGrossAmount();
+
+        if (grossAmount.isFailed()) {
+            // Unknown amount: zeroing the premium could be wrong, leave the record as is
+            return;
+        }
+
+        if (grossAmount.getAmount() > 0 && !"1RA".equals(record.getEventType())) {
+            // If gross amount > 0 and event is not 1RA, no modification needed
+            return;
+        }
+
+        // Update Policy End Date = Policy Start Date
+        record.setPolicyEndDate(record.getPolicyStartDate());
+
+        // Update Total Premium Amount = 00000000000
+        record.setTotalPremiumAmount("00000000000");
+    }
+}
@@ -0,0 +1,67 @@
+package com.dailyrecycling.service.rule;
+
+import com.dailyrecycling.model.PolicyField;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.MappedPolicyRecord;
+
+/**
+ * Policy dates as they appear in the record: yyyyMMdd, packed into an int by {@link RecordValues#date}.
+ * Dates are converted with integer arithmetic rather than through LocalDate, so
+ * validating a record's dates allocates nothing.
+ */
+final class PolicyDates {
+
+    /** Returned for blank or malformed dates */
+    static final long INVALID = Long.MIN_VALUE;
+
+    /** Days from 0000-03-01 to 1970-01-01 */
+    private static final long DAYS_0000_TO_1970 = 719468;
+
+    private static final int DAYS_PER_400_YEARS = 146097;
+
+    private PolicyDates() {
+    }
+
+    /**
+     * Days since the epoch of a packed yyyyMMdd date, or {@link #INVALID}
+     */
+    static long epochDay(int date) {
+        if (date == MappedPolicyRecord.NO_DATE) {
+            return INVALID;
+        }
+        int year = date / 10000;
+        int month = date / 100 % 100;
+        int day = date % 100;
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return INVALID;
+        }
+        // Count years from March so the leap day is the last day of the year
+        int marchYear = month <= 2 ? year - 1 : year;
+        int era = (marchYear >= 0 ? marchYear : marchYear - 399) / 400;
+        int yearOfEra = marchYear - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return (long) era * DAYS_PER_400_YEARS + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * Days from policy start to policy end, negative if the policy starts after it ends,
+     * or {@link #INVALID} if either date is missing or malformed
+     */
+    static long duration(PolicyRecord record) {
+        long start = epochDay(RecordValues.date(record, PolicyField.POLICY_START_DATE));
+        if (start == INVALID) {
+            return INVALID;
+        }
+        long end = epochDay(RecordValues.date(record, PolicyField.POLICY_END_DATE));
+        return end == INVALID ? INVALID : end - start;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        if (month == 2) {
+            return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+        }
+        // 31 days in odd months up to July, in even months from August
+        return 30 + ((month + (month >> 3)) & 1);
+    }
+}
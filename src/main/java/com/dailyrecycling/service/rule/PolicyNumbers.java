@@ -0,0 +1,24 @@
+package com.dailyrecycling.service.rule;
+
+/**
+ * Parts of a policy number
+ */
+public final class PolicyNumbers {
+
+    private PolicyNumbers() {
+    }
+
+    /**
+     * Application code: the policy number before its master policy code.
+     * Format: {APP_CODE}{MASTER_POLICY_CODE}, e.g. FR103747091001FR5H01 -> FR103747091001
+     */
+    public static String appCode(String policyNumber) {
+        if (policyNumber != null && policyNumber.length() > 5) {
+            int lastIndex = policyNumber.lastIndexOf("FR");
+            if (lastIndex > 0) {
+                return policyNumber.substring(0, lastIndex);
+            }
+        }
+        return "";
+    }
+}
@@ -0,0 +1,103 @@
+package com.dailyrecycling.service.rule;
+
+import com.dailyrecycling.model.PolicyField;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.MappedPolicyRecord;
+
+/**
+ * Field values as the detectors need them: blank checks, dates packed into an
+ * int and amounts as a long in minor units. Fields of a mapped batch record that
+ * no correction has set are read straight from the input buffer, so checking a
+ * record allocates nothing; other records go through their String values.
+ */
+final class RecordValues {
+
+    private RecordValues() {
+    }
+
+    static boolean isBlank(PolicyRecord record, PolicyField field) {
+        MappedPolicyRecord mapped = unmodified(record, field);
+        if (mapped != null) {
+            return mapped.isBlankInBuffer(field);
+        }
+        String value = field.get(record);
+        return value == null || value.trim().isEmpty();
+    }
+
+    /**
+     * yyyyMMdd date packed into an int, or {@link MappedPolicyRecord#NO_DATE} if not eight digits
+     */
+    static int date(PolicyRecord record, PolicyField field) {
+        MappedPolicyRecord mapped = unmodified(record, field);
+        if (mapped != null) {
+            return mapped.dateInBuffer(field);
+        }
+        String value = field.get(record);
+        if (value == null || value.length() != 8) {
+            return MappedPolicyRecord.NO_DATE;
+        }
+        int date = 0;
+        for (int i = 0; i < 8; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return MappedPolicyRecord.NO_DATE;
+            }
+            date = date * 10 + digit;
+        }
+        return date;
+    }
+
+    /**
+     * Unsigned amount in minor units, or {@link MappedPolicyRecord#NO_AMOUNT} if empty or not all digits
+     */
+    static long amount(PolicyRecord record, PolicyField field) {
+        MappedPolicyRecord mapped = unmodified(record, field);
+        if (mapped != null) {
+            return mapped.amountInBuffer(field);
+        }
+        String value = field.get(record);
+        if (value == null || value.isEmpty()) {
+            return MappedPolicyRecord.NO_AMOUNT;
+        }
+        long amount = 0;
+        int digits = 0;
+        for (int i = 0; i < value.length(); i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return MappedPolicyRecord.NO_AMOUNT;
+            }
+            if (amount != 0 || digit != 0) {
+                if (++digits > 18) {
+                    return MappedPolicyRecord.NO_AMOUNT;
+                }
+                amount = amount * 10 + digit;
+            }
+        }
+        return amount;
+    }
+
+    static boolean contains(PolicyRecord record, PolicyField field, char c) {
+        MappedPolicyRecord mapped = unmodified(record, field);
+        if (mapped != null) {
+            return mapped.containsInBuffer(field, c);
+        }
+        String value = field.get(record);
+        return value != null && value.indexOf(c) >= 0;
+    }
+
+    static boolean equal(PolicyRecord record, PolicyField first, PolicyField second) {
+        MappedPolicyRecord mapped = unmodified(record, first);
+        if (mapped != null && !mapped.isModified(second)) {
+            return mapped.equalInBuffer(first, second);
+        }
+        String value = first.get(record);
+        return value == null ? second.get(record) == null : value.equals(second.get(record));
+    }
+
+    private static MappedPolicyRecord unmodified(PolicyRecord record, PolicyField field) {
+        if (record instanceof MappedPolicyRecord && !((MappedPolicyRecord) record).isModified(field)) {
+            return (MappedPolicyRecord) record;
+        }
+        return null;
+    }
+}
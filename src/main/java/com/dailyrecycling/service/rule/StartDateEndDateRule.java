@@ -0,0 +1,63 @@
+package com.dailyrecycling.service.rule;
+
+import com.dailyrecycling.model.ErrorType;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.CorrectionContext;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Start Date - End Date Issue (Event Type 1RA): the policy starts after it ends
+ */
+@Component
+@Order(1)
+public class StartDateEndDateRule implements CorrectionRule {
+
+    public static final String NAME = "START_DATE_END_DATE";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Start Date - End Date Issue (Event Type 1RA)";
+    }
+
+    @Override
+    public Set<ErrorType> getErrorTypes() {
+        return EnumSet.of(ErrorType.START_DATE_LATE_END_DATE);
+    }
+
+    @Override
+    public int getCost() {
+        return COST_FIELDS;
+    }
+
+    @Override
+    public boolean requiresReferenceData() {
+        return false;
+    }
+
+    @Override
+    public boolean detect(PolicyRecord record) {
+        long duration = PolicyDates.duration(record);
+        return duration != PolicyDates.INVALID && duration < 0;
+    }
+
+    @Override
+    public void correct(PolicyRecord record, CorrectionContext context) {
+        // Update Policy Start Date = Policy End Date
+        record.setPolicyStartDate(record.getPolicyEndDate());
+
+        // Update Duration of Insurance = 0
+        record.setDurationOfInsurance("000");
+
+        // Update Total Premium Amount = 00000000000
+        record.setTotalPremiumAmount("00000000000");
+    }
+}
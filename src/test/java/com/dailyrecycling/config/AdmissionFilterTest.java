@@ -0,0 +1,107 @@
+package com.dailyrecycling.config;
+
+import com.dailyrecycling.service.AdmissionControlService;
+import com.dailyrecycling.service.AdmissionLimiter;
+import com.dailyrecycling.service.DatabaseService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Which lane each endpoint runs in, and that GET requests such as /health still
+ * answer while every lane is full
+ */
+class AdmissionFilterTest {
+
+    private static final String[] LANES = {AdmissionControlService.CORRECT, AdmissionControlService.STREAM,
+            AdmissionControlService.REACTIVE, AdmissionControlService.BATCH, AdmissionControlService.PARSE,
+            AdmissionControlService.ADMIN};
+
+    private AdmissionControlService admissionControlService;
+    private AdmissionFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        admissionControlService = new AdmissionControlService();
+        ReflectionTestUtils.setField(admissionControlService, "databaseService", new DatabaseService());
+        ReflectionTestUtils.setField(admissionControlService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(admissionControlService, "enabled", true);
+        ReflectionTestUtils.setField(admissionControlService, "adaptive", false);
+        ReflectionTestUtils.setField(admissionControlService, "maxQueueWait", Duration.ZERO);
+        ReflectionTestUtils.setField(admissionControlService, "servletThreads", 200);
+        for (String lane : LANES) {
+            ReflectionTestUtils.setField(admissionControlService, lane + "MaxConcurrency", 1);
+            ReflectionTestUtils.setField(admissionControlService, lane + "QueueSize", 0);
+        }
+        ReflectionTestUtils.invokeMethod(admissionControlService, "start");
+        filter = new AdmissionFilter(admissionControlService, new ObjectMapper(), Duration.ofSeconds(2));
+    }
+
+    @Test
+    void endpointsRunInTheirLanes() throws Exception {
+        assertEquals(AdmissionControlService.CORRECT, laneOf("POST", "/api/recycling/correct"));
+        assertEquals(AdmissionControlService.STREAM, laneOf("POST", "/api/recycling/correct/stream"));
+        assertEquals(AdmissionControlService.REACTIVE, laneOf("POST", "/api/recycling/reactive/correct"));
+        assertEquals(AdmissionControlService.BATCH, laneOf("POST", "/api/recycling/batch"));
+        assertEquals(AdmissionControlService.BATCH, laneOf("POST", "/api/recycling/batch/42/resume"));
+        assertEquals(AdmissionControlService.PARSE, laneOf("POST", "/api/recycling/parse"));
+        assertEquals(AdmissionControlService.ADMIN, laneOf("POST", "/api/recycling/admin/preload/reload"));
+        assertEquals(AdmissionControlService.ADMIN, laneOf("POST", "/api/recycling/admin/gross-amounts/reload"));
+        assertEquals(AdmissionControlService.ADMIN, laneOf("POST", "/api/recycling/admin/cache/flush"));
+        assertNull(laneOf("GET", "/api/recycling/health"));
+        assertNull(laneOf("GET", "/api/recycling/admin/admission"));
+        assertNull(laneOf("GET", "/api/recycling/batch/42"));
+    }
+
+    @Test
+    void healthAnswersWhileEveryLaneIsFull() throws Exception {
+        for (String lane : LANES) {
+            admissionControlService.getLane(lane).acquire(0);
+        }
+
+        MockHttpServletResponse parse = filter(new MockHttpServletRequest("POST", "/api/recycling/parse"));
+        MockHttpServletResponse reload = filter(new MockHttpServletRequest("POST", "/api/recycling/admin/preload/reload"));
+        MockHttpServletResponse health = filter(new MockHttpServletRequest("GET", "/api/recycling/health"));
+
+        assertEquals(429, parse.getStatus());
+        assertEquals("2", parse.getHeader("Retry-After"));
+        assertEquals(429, reload.getStatus());
+        assertEquals(200, health.getStatus());
+    }
+
+    /**
+     * Lane holding a permit while the request runs, null if none does
+     */
+    private String laneOf(String method, String path) throws Exception {
+        List<String> lanes = new ArrayList<>();
+        filter.doFilter(new MockHttpServletRequest(method, path), new MockHttpServletResponse(), (request, response) -> {
+            for (String lane : LANES) {
+                if (admissionControlService.getLane(lane).getInFlight() > 0) {
+                    lanes.add(lane);
+                }
+            }
+        });
+        for (String lane : LANES) {
+            AdmissionLimiter limiter = admissionControlService.getLane(lane);
+            assertEquals(0, limiter.getInFlight(), lane + " permit released");
+        }
+        return lanes.isEmpty() ? null : lanes.get(0);
+    }
+
+    private MockHttpServletResponse filter(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> { });
+        return response;
+    }
+}
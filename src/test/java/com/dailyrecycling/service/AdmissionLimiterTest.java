@@ -0,0 +1,193 @@
+package com.dailyrecycling.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Limit, queue and timeout of one admission lane, the order waiters are admitted
+ * in, and a changed limit with requests running
+ */
+class AdmissionLimiterTest {
+
+    private static final long WAIT = TimeUnit.SECONDS.toNanos(10);
+
+    private final ExecutorService waiters = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        waiters.shutdownNow();
+    }
+
+    @Test
+    void requestsBeyondTheLimitQueueAndBeyondTheQueueAreTurnedAway() throws Exception {
+        AdmissionLimiter limiter = new AdmissionLimiter("correct", 2, 1);
+        assertEquals(AdmissionLimiter.Result.ADMITTED, limiter.acquire(0));
+        assertEquals(AdmissionLimiter.Result.ADMITTED, limiter.acquire(0));
+
+        Future<AdmissionLimiter.Result> queued = waiters.submit(() -> limiter.acquire(WAIT));
+        awaitWaiting(limiter, 1);
+        assertEquals(AdmissionLimiter.Result.QUEUE_FULL, limiter.acquire(WAIT));
+
+        limiter.release();
+        assertEquals(AdmissionLimiter.Result.ADMITTED, queued.get(10, TimeUnit.SECONDS));
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(0, limiter.getWaiting());
+    }
+
+    @Test
+    void waitThatRunsOutLeavesTheQueue() throws Exception {
+        AdmissionLimiter limiter = new AdmissionLimiter("stream", 1, 4);
+        limiter.acquire(0);
+
+        assertEquals(AdmissionLimiter.Result.TIMED_OUT, limiter.acquire(TimeUnit.MILLISECONDS.toNanos(20)));
+
+        assertEquals(0, limiter.getWaiting());
+        limiter.release();
+        assertEquals(AdmissionLimiter.Result.ADMITTED, limiter.acquire(0));
+    }
+
+    @Test
+    void waitersAreAdmittedInArrivalOrder() throws Exception {
+        AdmissionLimiter limiter = new AdmissionLimiter("correct", 1, 3);
+        limiter.acquire(0);
+        List<Integer> admitted = new ArrayList<>();
+        List<Future<?>> queued = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int arrival = i;
+            queued.add(waiters.submit(() -> {
+                limiter.acquire(WAIT);
+                synchronized (admitted) {
+                    admitted.add(arrival);
+                }
+                limiter.release();
+                return null;
+            }));
+            awaitWaiting(limiter, i + 1);
+        }
+        assertEquals(AdmissionLimiter.Result.QUEUE_FULL, limiter.acquire(WAIT));
+
+        limiter.release();
+        for (Future<?> request : queued) {
+            request.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(0, limiter.getInFlight());
+        synchronized (admitted) {
+            assertEquals(3, admitted.size());
+            assertEquals(Integer.valueOf(0), admitted.get(0));
+            assertEquals(Integer.valueOf(1), admitted.get(1));
+            assertEquals(Integer.valueOf(2), admitted.get(2));
+        }
+    }
+
+    @Test
+    void loweredLimitLetsRunningRequestsFinishBeforeAdmittingMore() throws Exception {
+        AdmissionLimiter limiter = new AdmissionLimiter("correct", 4, 4);
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire(0);
+        }
+
+        limiter.setLimit(2);
+        Future<AdmissionLimiter.Result> queued = waiters.submit(() -> limiter.acquire(WAIT));
+        awaitWaiting(limiter, 1);
+        limiter.release();
+        assertFalse(queued.isDone());
+        assertEquals(2, limiter.getInFlight());
+
+        limiter.release();
+        assertEquals(AdmissionLimiter.Result.ADMITTED, queued.get(10, TimeUnit.SECONDS));
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    void raisedLimitAdmitsWaitersAtOnce() throws Exception {
+        AdmissionLimiter limiter = new AdmissionLimiter("reactive", 4, 4);
+        limiter.setLimit(1);
+        limiter.acquire(0);
+        Future<AdmissionLimiter.Result> queued = waiters.submit(() -> limiter.acquire(WAIT));
+        awaitWaiting(limiter, 1);
+
+        limiter.setLimit(2);
+
+        assertEquals(AdmissionLimiter.Result.ADMITTED, queued.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void limitStaysBetweenOneAndTheMaximum() {
+        AdmissionLimiter limiter = new AdmissionLimiter("correct", 8, 0);
+        limiter.setLimit(0);
+        assertEquals(1, limiter.getLimit());
+        limiter.setLimit(100);
+        assertEquals(8, limiter.getLimit());
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionLimiter("correct", 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionLimiter("correct", 1, -1));
+    }
+
+    @Test
+    void peakInFlightIsTakenSinceThePreviousCall() throws Exception {
+        AdmissionLimiter limiter = new AdmissionLimiter("correct", 4, 0);
+        limiter.acquire(0);
+        limiter.acquire(0);
+        limiter.acquire(0);
+        limiter.release();
+        limiter.release();
+
+        assertEquals(3, limiter.takePeakInFlight());
+        assertEquals(1, limiter.takePeakInFlight());
+    }
+
+    @Test
+    void concurrentRequestsNeverExceedTheLimit() throws Exception {
+        AdmissionLimiter limiter = new AdmissionLimiter("correct", 3, 64);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> requests = new ArrayList<>();
+        for (int thread = 0; thread < 16; thread++) {
+            requests.add(waiters.submit(() -> {
+                start.await();
+                for (int i = 0; i < 200; i++) {
+                    if (limiter.acquire(WAIT) == AdmissionLimiter.Result.ADMITTED) {
+                        peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        admitted.incrementAndGet();
+                        Thread.yield();
+                        running.decrementAndGet();
+                        limiter.release();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> request : requests) {
+            request.get(60, TimeUnit.SECONDS);
+        }
+
+        assertTrue(peak.get() <= 3, "peak " + peak.get());
+        assertEquals(16 * 200, admitted.get());
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getWaiting());
+    }
+
+    private static void awaitWaiting(AdmissionLimiter limiter, int waiting) throws InterruptedException {
+        long deadline = System.nanoTime() + WAIT;
+        while (limiter.getWaiting() < waiting) {
+            assertTrue(System.nanoTime() < deadline, "no request queued");
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.ActorAddress;
+import com.dailyrecycling.model.BackOfficeNotification;
+import com.dailyrecycling.model.BatchJob;
+import com.dailyrecycling.model.BatchJobStatus;
+import com.dailyrecycling.model.ErrorType;
+import com.dailyrecycling.model.PolicyEnrichment;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.rule.AddressFieldsRule;
+import com.dailyrecycling.service.rule.CorrectionRule;
+import com.dailyrecycling.service.rule.CorrectionRuleRegistry;
+import com.dailyrecycling.service.rule.DurationExceedsRule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checkpoints and resume of batch jobs, with the database and mail stubbed out:
+ * a job failed mid-file and resumed must write the same file as a job that ran
+ * through, and release each notification once
+ */
+class BatchProcessingServiceTest {
+
+    private static final int RECORDS = 100;
+    private static final int CHUNK_SIZE = 10;
+    private static final int RECORD_LENGTH = 4060;
+    private static final String FAILING_POLICY = policyNumber(45);
+
+    @TempDir
+    Path workDir;
+
+    private final StubDatabaseService databaseService = new StubDatabaseService();
+    private final RecordingEmailService emailService = new RecordingEmailService();
+    private final ThreadPoolTaskExecutor workers = new ThreadPoolTaskExecutor();
+    private BatchProcessingService service;
+    private Path inputDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        inputDir = Files.createDirectories(workDir.resolve("input"));
+        Files.write(inputDir.resolve("policies.dat"), input());
+        workers.setCorePoolSize(2);
+        workers.setMaxPoolSize(2);
+        workers.initialize();
+        service = service();
+    }
+
+    @AfterEach
+    void tearDown() {
+        workers.shutdown();
+    }
+
+    @Test
+    void resumedJobWritesTheSameOutputAsAnUninterruptedJob() throws IOException {
+        BatchJob uninterrupted = service.submitFile("policies.dat", "ALL");
+        assertEquals(BatchJobStatus.COMPLETED, uninterrupted.getStatus());
+        byte[] expected = Files.readAllBytes(service.getOutput(uninterrupted));
+        List<String> expectedNotifications = emailService.takeReleased();
+
+        databaseService.failOn = FAILING_POLICY;
+        BatchJob failed = service.submitFile("policies.dat", "ALL");
+        assertEquals(BatchJobStatus.FAILED, failed.getStatus());
+        assertTrue(failed.getRecordsProcessed() > 0 && failed.getRecordsProcessed() < RECORDS,
+                "failed after " + failed.getRecordsProcessed() + " records");
+        List<String> releasedBeforeResume = emailService.takeReleased();
+        for (String policyNumber : releasedBeforeResume) {
+            // Only notifications of checkpointed records are released
+            assertTrue(policyNumber.compareTo(FAILING_POLICY) < 0, policyNumber);
+        }
+
+        // A crash after writing past the checkpoint leaves bytes the resume must drop
+        Path output = service.getOutput(failed);
+        Files.write(output, "PARTIAL RECORD".getBytes(StandardCharsets.ISO_8859_1), StandardOpenOption.APPEND);
+        databaseService.failOn = null;
+        BatchJob resumed = service.resume(failed.getJobId());
+
+        assertEquals(BatchJobStatus.COMPLETED, resumed.getStatus());
+        assertEquals(RECORDS, resumed.getRecordsProcessed());
+        assertArrayEquals(expected, Files.readAllBytes(output));
+        List<String> released = new ArrayList<>(releasedBeforeResume);
+        released.addAll(emailService.takeReleased());
+        Collections.sort(released);
+        assertEquals(expectedNotifications, released);
+    }
+
+    @Test
+    void notificationsOfRecordsThatFailToCorrectAreNotReleased() throws IOException {
+        BatchJob job = service.submitFile("policies.dat", "ALL");
+
+        assertEquals(BatchJobStatus.COMPLETED, job.getStatus());
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < RECORDS; i++) {
+            if (exceedsDuration(i) && !failsCorrection(i)) {
+                expected.add(policyNumber(i));
+            }
+        }
+        assertEquals(expected, emailService.takeReleased());
+        assertEquals(RECORDS / 9 + 1, job.getRecordsFailed());
+    }
+
+    private BatchProcessingService service() throws IOException {
+        FixedWidthParser parser = new FixedWidthParser();
+        ReflectionTestUtils.setField(parser, "recordLayout", layout());
+        parser.init();
+
+        BackOfficeRouter router = new BackOfficeRouter();
+        ReflectionTestUtils.setField(router, "rules", Collections.singletonList("FR=backoffice.fr@example.com"));
+        ReflectionTestUtils.setField(router, "defaultMailbox", "backoffice.default@example.com");
+        ReflectionTestUtils.setField(router, "cacheSize", 100L);
+        router.init();
+        ReflectionTestUtils.setField(emailService, "backOfficeRouter", router);
+
+        DurationExceedsRule durationExceedsRule = new DurationExceedsRule();
+        ReflectionTestUtils.setField(durationExceedsRule, "emailService", emailService);
+        CorrectionRuleRegistry ruleRegistry = new CorrectionRuleRegistry();
+        ReflectionTestUtils.setField(ruleRegistry, "correctionRules",
+                Arrays.asList(new AddressFieldsRule(), durationExceedsRule, new FailingRule()));
+        ReflectionTestUtils.setField(ruleRegistry, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(ruleRegistry, "init");
+        ErrorCorrectionService errorCorrectionService = new ErrorCorrectionService();
+        ReflectionTestUtils.setField(errorCorrectionService, "databaseService", databaseService);
+        ReflectionTestUtils.setField(errorCorrectionService, "ruleRegistry", ruleRegistry);
+
+        BatchJobJournal journal = new BatchJobJournal();
+        ReflectionTestUtils.setField(journal, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(journal, "workDir", workDir.toString());
+        // Disabled: every chunk is corrected, none answered from the cache
+        CorrectionResultCache cache = new CorrectionResultCache();
+        ReflectionTestUtils.setField(cache, "databaseService", databaseService);
+
+        BatchProcessingService batch = new BatchProcessingService();
+        ReflectionTestUtils.setField(batch, "fixedWidthParser", parser);
+        ReflectionTestUtils.setField(batch, "errorCorrectionService", errorCorrectionService);
+        ReflectionTestUtils.setField(batch, "databaseService", databaseService);
+        ReflectionTestUtils.setField(batch, "emailService", emailService);
+        ReflectionTestUtils.setField(batch, "journal", journal);
+        ReflectionTestUtils.setField(batch, "correctionResultCache", cache);
+        ReflectionTestUtils.setField(batch, "correctionReportService", new CorrectionReportService());
+        ReflectionTestUtils.setField(batch, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(batch, "batchExecutor", new SyncTaskExecutor());
+        ReflectionTestUtils.setField(batch, "batchWorkerExecutor", workers);
+        ReflectionTestUtils.setField(batch, "workDir", workDir.toString());
+        ReflectionTestUtils.setField(batch, "inputDir", inputDir.toString());
+        ReflectionTestUtils.setField(batch, "charsetName", "ISO-8859-1");
+        ReflectionTestUtils.setField(batch, "ioBufferSize", 8192);
+        ReflectionTestUtils.setField(batch, "mapWindowSize", 64 * 1024);
+        ReflectionTestUtils.setField(batch, "chunkSize", CHUNK_SIZE);
+        // One chunk in flight and a checkpoint after every chunk written
+        ReflectionTestUtils.setField(batch, "maxInFlightChunks", 1);
+        ReflectionTestUtils.setField(batch, "checkpointInterval", Duration.ZERO);
+        ReflectionTestUtils.invokeMethod(batch, "restoreJobs");
+        return batch;
+    }
+
+    /**
+     * The shipped layout with the policy number mapped, so chunks run their bulk lookup
+     */
+    private static RecordLayout layout() throws IOException {
+        String layout;
+        try (InputStream in = BatchProcessingServiceTest.class.getResourceAsStream("/record-layout.csv")) {
+            layout = new String(readAll(in), StandardCharsets.UTF_8) + "\npolicyNumber,0,20,SPACES_RIGHT,true\n";
+        }
+        return RecordLayout.load(new ByteArrayInputStream(layout.getBytes(StandardCharsets.UTF_8)), RECORD_LENGTH);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Records with a blank address every 5th, an overlong duration every 3rd
+     * and a failing correction every 9th
+     */
+    private static byte[] input() {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < RECORDS; i++) {
+            char[] record = new char[RECORD_LENGTH];
+            Arrays.fill(record, ' ');
+            put(record, 0, policyNumber(i));
+            put(record, 310, exceedsDuration(i) ? "19000101" : "20200101");
+            put(record, 318, exceedsDuration(i) ? "20991231" : "20210101");
+            if (i % 5 != 0) {
+                put(record, 3928, "1 RUE DU PORT");
+                put(record, 3960, "BAT " + i);
+                put(record, 4024, "NANTES");
+                put(record, 4050, "44000");
+            }
+            input.append(record).append('\n');
+        }
+        return input.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static void put(char[] record, int offset, String value) {
+        value.getChars(0, value.length(), record, offset);
+    }
+
+    private static String policyNumber(int record) {
+        return String.format("FR%012dFR5H01", record);
+    }
+
+    private static boolean exceedsDuration(int record) {
+        return record % 3 == 0;
+    }
+
+    private static boolean failsCorrection(int record) {
+        return record % 9 == 0;
+    }
+
+    /**
+     * Fails the correction of every 9th record, after the cheaper rules ran
+     */
+    private static final class FailingRule implements CorrectionRule {
+
+        @Override
+        public String getName() {
+            return "FAILING";
+        }
+
+        @Override
+        public String getDescription() {
+            return "Fails every 9th record";
+        }
+
+        @Override
+        public Set<ErrorType> getErrorTypes() {
+            return EnumSet.noneOf(ErrorType.class);
+        }
+
+        @Override
+        public int getCost() {
+            return COST_GROSS_AMOUNT;
+        }
+
+        @Override
+        public boolean requiresReferenceData() {
+            return false;
+        }
+
+        @Override
+        public boolean detect(PolicyRecord record) {
+            return failsCorrection(Integer.parseInt(record.getPolicyNumber().substring(2, 14)));
+        }
+
+        @Override
+        public void correct(PolicyRecord record, CorrectionContext context) {
+            throw new IllegalStateException("Correction failed");
+        }
+    }
+
+    /**
+     * Answers bulk lookups from memory; fails the chunk holding failOn while it is set
+     */
+    private static final class StubDatabaseService extends DatabaseService {
+        private volatile String failOn;
+
+        @Override
+        public long getFailureCount() {
+            return 0;
+        }
+
+        @Override
+        public Map<String, PolicyEnrichment> getEnrichmentByPolicyNumbers(Collection<String> policyNumbers) {
+            if (failOn != null && policyNumbers.contains(failOn)) {
+                throw new IllegalStateException("Database unavailable");
+            }
+            Map<String, PolicyEnrichment> result = new HashMap<>();
+            for (String policyNumber : policyNumbers) {
+                ActorAddress address = new ActorAddress("2 QUAI DE LA FOSSE", "ETAGE 1", "NANTES", "44000");
+                result.put(policyNumber, new PolicyEnrichment(policyNumber, 42L, address, null, null));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Records the policy numbers of released notifications instead of queueing them
+     */
+    private static final class RecordingEmailService extends EmailService {
+        private final List<String> released = new ArrayList<>();
+
+        @Override
+        public synchronized void release(List<BackOfficeNotification> notifications) {
+            for (BackOfficeNotification notification : notifications) {
+                released.add(notification.getPolicyNumber());
+            }
+        }
+
+        synchronized List<String> takeReleased() {
+            List<String> taken = new ArrayList<>(released);
+            released.clear();
+            Collections.sort(taken);
+            return taken;
+        }
+    }
+}
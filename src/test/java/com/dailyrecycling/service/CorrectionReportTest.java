@@ -0,0 +1,166 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.BackOfficeNotification;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rows written by the report thread, read back from the workbook: full sheets
+ * continue on numbered sheets, so no correction or notification is dropped
+ */
+class CorrectionReportTest {
+
+    private static final int MAX_ROWS = 4;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void correctionsAndNotificationsContinueOnNumberedSheets() throws Exception {
+        CorrectionReport report = report(dir.resolve("report.xlsx"));
+        List<CorrectionReport.Row> rows = new ArrayList<>();
+        for (int record = 1; record <= 4; record++) {
+            rows.add(new CorrectionReport.Row(record, policyNumber(record), "ADDRESS_FIELDS",
+                    Arrays.asList(new CorrectionReport.Change("city", "", "NANTES"),
+                            new CorrectionReport.Change("postalCode", "", "44000")), null));
+        }
+        report.addRows(100, rows);
+        List<BackOfficeNotification> released = new ArrayList<>();
+        for (int record = 1; record <= 7; record++) {
+            released.add(notification(policyNumber(record)));
+        }
+        report.addNotifications(released.subList(0, 5), CorrectionReport.QUEUED);
+        report.addNotifications(released.subList(5, 7), CorrectionReport.NOT_RELEASED);
+
+        assertTrue(report.finish());
+
+        try (XSSFWorkbook workbook = read(report.getPath())) {
+            assertEquals(Arrays.asList("Corrections", "Notifications", "Corrections 2", "Corrections 3",
+                    "Notifications 2", "Notifications 3"), sheetNames(workbook));
+            List<String> corrections = new ArrayList<>();
+            for (String sheet : Arrays.asList("Corrections", "Corrections 2", "Corrections 3")) {
+                corrections.addAll(rows(workbook.getSheet(sheet), "Record"));
+            }
+            assertEquals(Arrays.asList(
+                    "101|" + policyNumber(1) + "|ADDRESS_FIELDS|city||NANTES|",
+                    "101|" + policyNumber(1) + "|ADDRESS_FIELDS|postalCode||44000|",
+                    "102|" + policyNumber(2) + "|ADDRESS_FIELDS|city||NANTES|",
+                    "102|" + policyNumber(2) + "|ADDRESS_FIELDS|postalCode||44000|",
+                    "103|" + policyNumber(3) + "|ADDRESS_FIELDS|city||NANTES|",
+                    "103|" + policyNumber(3) + "|ADDRESS_FIELDS|postalCode||44000|",
+                    "104|" + policyNumber(4) + "|ADDRESS_FIELDS|city||NANTES|",
+                    "104|" + policyNumber(4) + "|ADDRESS_FIELDS|postalCode||44000|"), corrections);
+
+            List<String> notifications = new ArrayList<>();
+            for (String sheet : Arrays.asList("Notifications", "Notifications 2", "Notifications 3")) {
+                notifications.addAll(rows(workbook.getSheet(sheet), "Policy number"));
+            }
+            assertEquals(7, notifications.size());
+            for (int record = 1; record <= 7; record++) {
+                String status = record <= 5 ? CorrectionReport.QUEUED : CorrectionReport.NOT_RELEASED;
+                assertEquals(policyNumber(record) + "|DURATION_EXCEEDS|backoffice.fr@example.com|" + status,
+                        notifications.get(record - 1));
+            }
+        }
+        assertFalse(Files.exists(dir.resolve("report.xlsx.tmp")));
+    }
+
+    @Test
+    void recordThatOnlyRaisedNotificationsGetsOneRow() throws Exception {
+        CorrectionReport report = report(dir.resolve("report.xlsx"));
+        report.addRows(0, Collections.singletonList(new CorrectionReport.Row(3, policyNumber(3), "DURATION_EXCEEDS",
+                Collections.<CorrectionReport.Change>emptyList(), "DURATION_EXCEEDS")));
+
+        assertTrue(report.finish());
+
+        try (XSSFWorkbook workbook = read(report.getPath())) {
+            assertEquals(Collections.singletonList("3|" + policyNumber(3) + "|DURATION_EXCEEDS||||DURATION_EXCEEDS"),
+                    rows(workbook.getSheet("Corrections"), "Record"));
+            assertNull(workbook.getSheet("Corrections 2"));
+        }
+    }
+
+    @Test
+    void reportThatCannotBeWrittenFailsWithoutLeavingFiles() throws Exception {
+        Path path = dir.resolve("missing").resolve("report.xlsx");
+        CorrectionReport report = report(path);
+        report.addNotifications(Collections.singletonList(notification(policyNumber(1))), CorrectionReport.QUEUED);
+
+        assertFalse(report.finish());
+        assertFalse(Files.exists(path));
+        assertFalse(Files.exists(path.resolveSibling("report.xlsx.tmp")));
+    }
+
+    private static CorrectionReport report(Path path) {
+        return new CorrectionReport(path, 2, 1, new SimpleAsyncTaskExecutor("report-"), MAX_ROWS);
+    }
+
+    private static XSSFWorkbook read(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return new XSSFWorkbook(in);
+        }
+    }
+
+    private static List<String> sheetNames(XSSFWorkbook workbook) {
+        List<String> names = new ArrayList<>();
+        for (Sheet sheet : workbook) {
+            names.add(sheet.getSheetName());
+        }
+        return names;
+    }
+
+    /**
+     * Data rows of a sheet as pipe-separated cells, after checking its header
+     */
+    private static List<String> rows(Sheet sheet, String firstHeader) {
+        assertEquals(firstHeader, sheet.getRow(0).getCell(0).getStringCellValue());
+        assertTrue(sheet.getLastRowNum() < MAX_ROWS, sheet.getSheetName());
+        List<String> rows = new ArrayList<>();
+        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+            Row row = sheet.getRow(i);
+            StringBuilder cells = new StringBuilder();
+            for (int column = 0; column < sheet.getRow(0).getLastCellNum(); column++) {
+                if (column > 0) {
+                    cells.append('|');
+                }
+                Cell cell = row.getCell(column);
+                if (cell != null && cell.getCellType() == CellType.NUMERIC) {
+                    cells.append((long) cell.getNumericCellValue());
+                } else if (cell != null) {
+                    cells.append(cell.getStringCellValue());
+                }
+            }
+            rows.add(cells.toString());
+        }
+        return rows;
+    }
+
+    private static BackOfficeNotification notification(String policyNumber) {
+        return new BackOfficeNotification(BackOfficeNotification.Type.DURATION_EXCEEDS, "backoffice.fr@example.com",
+                policyNumber, "FR", 101, 0L);
+    }
+
+    private static String policyNumber(int record) {
+        return String.format("FR%012dFR5H01", record);
+    }
+}
@@ -0,0 +1,132 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.PolicyRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Results stored under a stamp taken before the cache was invalidated or a
+ * reference query failed are dropped; results stored under a current stamp are kept
+ */
+class CorrectionResultCacheTest {
+
+    private static final int RECORD_LENGTH = 4060;
+
+    private final StubDatabaseService databaseService = new StubDatabaseService();
+    private CorrectionResultCache cache;
+    private FixedWidthParser parser;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        RecordLayout layout;
+        try (InputStream in = CorrectionResultCacheTest.class.getResourceAsStream("/record-layout.csv")) {
+            layout = RecordLayout.load(in, RECORD_LENGTH);
+        }
+        parser = new FixedWidthParser();
+        ReflectionTestUtils.setField(parser, "recordLayout", layout);
+        parser.init();
+
+        cache = new CorrectionResultCache();
+        ReflectionTestUtils.setField(cache, "databaseService", databaseService);
+        ReflectionTestUtils.setField(cache, "fixedWidthParser", parser);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxBytes", 1L << 20);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofHours(24));
+        ReflectionTestUtils.setField(cache, "referenceTtl", Duration.ofMinutes(30));
+        cache.init();
+    }
+
+    @Test
+    void resultStoredUnderCurrentStampIsReturned() {
+        ByteBuffer record = record("20200101");
+        byte[] corrected = "CORRECTED".getBytes(StandardCharsets.ISO_8859_1);
+
+        cache.store(record, 0, RECORD_LENGTH, "ALL", corrected, "START_DATE_END_DATE", cache.stamp());
+
+        CorrectionResultCache.Result result = cache.lookup(record, 0, RECORD_LENGTH, "all");
+        assertNotNull(result);
+        assertArrayEquals(corrected, result.getCorrected());
+        assertEquals("START_DATE_END_DATE", result.getRules());
+        assertNull(cache.lookup(record("20200102"), 0, RECORD_LENGTH, "ALL"));
+    }
+
+    @Test
+    void resultCorrectedBeforeInvalidationIsDropped() {
+        ByteBuffer record = record("20200101");
+        long stamp = cache.stamp();
+
+        cache.invalidateAll();
+        cache.store(record, 0, RECORD_LENGTH, "ALL", CorrectionResultCache.UNCHANGED, null, stamp);
+
+        assertNull(cache.lookup(record, 0, RECORD_LENGTH, "ALL"));
+    }
+
+    @Test
+    void resultCorrectedAcrossReferenceQueryFailureIsDropped() {
+        ByteBuffer record = record("20200101");
+        long stamp = cache.stamp();
+
+        databaseService.failures++;
+        cache.store(record, 0, RECORD_LENGTH, "ALL", CorrectionResultCache.UNCHANGED, null, stamp);
+
+        assertNull(cache.lookup(record, 0, RECORD_LENGTH, "ALL"));
+        cache.store(record, 0, RECORD_LENGTH, "ALL", CorrectionResultCache.UNCHANGED, null, cache.stamp());
+        assertNotNull(cache.lookup(record, 0, RECORD_LENGTH, "ALL"));
+    }
+
+    @Test
+    void parsedResultCorrectedBeforeInvalidationIsDropped() {
+        String record = StandardCharsets.ISO_8859_1.decode(record("20200101")).toString();
+        PolicyRecord corrected = parser.parseRecord(record);
+        corrected.setPolicyEndDate("20210101");
+        String correctedRecord = parser.updateRecord(record, corrected);
+
+        long stamp = cache.stamp();
+        cache.invalidateAll();
+        cache.store(record, "ALL", corrected, correctedRecord, stamp);
+        assertNull(cache.lookup(record, "ALL"));
+
+        cache.store(record, "ALL", corrected, correctedRecord, cache.stamp());
+        CorrectionResultCache.Hit hit = cache.lookup(record, "ALL");
+        assertNotNull(hit);
+        assertEquals(correctedRecord, hit.getCorrectedRecord());
+        PolicyRecord reparsed = parser.parseRecord(record);
+        hit.applyTo(reparsed);
+        assertEquals("20210101", reparsed.getPolicyEndDate());
+    }
+
+    private static ByteBuffer record(String startDate) {
+        byte[] bytes = new byte[RECORD_LENGTH];
+        Arrays.fill(bytes, (byte) ' ');
+        byte[] date = startDate.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(date, 0, bytes, 310, date.length);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Counts reference query failures as the test sets them
+     */
+    private static final class StubDatabaseService extends DatabaseService {
+        private long failures;
+
+        @Override
+        public long getFailureCount() {
+            return failures;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.BackOfficeNotification;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Outbox digests, retries and dead letters against an SMTP stand-in that
+ * records messages and fails a set number of sends
+ */
+class EmailOutboxTest {
+
+    private static final String MAILBOX = "backoffice.ww@example.com";
+
+    @TempDir
+    Path workDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final StubMailSender mailSender = new StubMailSender();
+    private EmailOutbox outbox;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        outbox.stop();
+    }
+
+    @Test
+    void notificationsForOneMailboxAreSentAsOneDigest() {
+        outbox = start(5, Duration.ofMillis(1));
+
+        outbox.enqueue(notification("POL-1"));
+        outbox.enqueue(notification("POL-2"));
+        outbox.enqueue(notification("POL-3"));
+
+        await(() -> stat("notificationsSent") == 3);
+        assertEquals(1, mailSender.sent.size());
+        SimpleMailMessage message = mailSender.sent.get(0);
+        assertEquals(MAILBOX, message.getTo()[0]);
+        assertEquals("Daily Recycling - 3 Policies Require Action", message.getSubject());
+        assertTrue(message.getText().contains("Policy Number: POL-2"));
+        assertEquals(0, stat("deadLettered"));
+    }
+
+    @Test
+    void failedSendIsRetried() {
+        mailSender.failures.set(2);
+        outbox = start(5, Duration.ofMillis(1));
+
+        outbox.enqueue(notification("POL-1"));
+
+        await(() -> stat("messagesSent") == 1);
+        assertEquals(2, stat("sendFailures"));
+        assertEquals(0, stat("deadLettered"));
+        assertFalse(Files.exists(deadLetterFile()));
+    }
+
+    @Test
+    void notificationsGivenUpOnAreWrittenToTheDeadLetterFile() throws Exception {
+        mailSender.failures.set(Integer.MAX_VALUE);
+        outbox = start(2, Duration.ofMillis(1));
+
+        outbox.enqueue(notification("POL-1"));
+        outbox.enqueue(notification("POL-2"));
+
+        await(() -> stat("deadLettered") == 2);
+        assertEquals(0, stat("messagesSent"));
+        assertEquals(0, stat("deadLettersUnsaved"));
+        List<String> lines = Files.readAllLines(deadLetterFile(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        JsonNode deadLetter = objectMapper.readTree(lines.get(1));
+        assertEquals("POL-2", deadLetter.get("notification").get("policyNumber").asText());
+        assertEquals(MAILBOX, deadLetter.get("notification").get("mailbox").asText());
+        assertTrue(deadLetter.get("reason").asText().startsWith("send failed after 2 attempts"));
+    }
+
+    @Test
+    void notificationsAfterShutdownAreDeadLettered() throws Exception {
+        outbox = start(5, Duration.ofMillis(1));
+        outbox.stop();
+
+        outbox.enqueue(notification("POL-1"));
+
+        assertEquals(1, stat("deadLettered"));
+        assertTrue(mailSender.sent.isEmpty());
+        List<String> lines = Files.readAllLines(deadLetterFile(), StandardCharsets.UTF_8);
+        assertEquals("outbox stopped", objectMapper.readTree(lines.get(0)).get("reason").asText());
+    }
+
+    private EmailOutbox start(int maxAttempts, Duration retryBackoff) {
+        EmailOutbox started = new EmailOutbox();
+        ReflectionTestUtils.setField(started, "mailSender", mailSender);
+        ReflectionTestUtils.setField(started, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(started, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(started, "fromEmail", "noreply@dailyrecycling.com");
+        ReflectionTestUtils.setField(started, "capacity", 100);
+        ReflectionTestUtils.setField(started, "maxDigestSize", 500);
+        ReflectionTestUtils.setField(started, "flushInterval", Duration.ofMillis(50));
+        ReflectionTestUtils.setField(started, "maxAttempts", maxAttempts);
+        ReflectionTestUtils.setField(started, "retryBackoff", retryBackoff);
+        ReflectionTestUtils.setField(started, "deadLetterFile", deadLetterFile().toString());
+        started.start();
+        return started;
+    }
+
+    private Path deadLetterFile() {
+        return workDir.resolve("email-dead-letters.jsonl");
+    }
+
+    private long stat(String name) {
+        Map<String, Object> stats = outbox.getStats();
+        return ((Number) stats.get(name)).longValue();
+    }
+
+    private static BackOfficeNotification notification(String policyNumber) {
+        return new BackOfficeNotification(BackOfficeNotification.Type.BCU_NUMBER_MISSING, MAILBOX,
+                policyNumber, "WW01", null, System.currentTimeMillis());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Condition not met within 10 s");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /**
+     * SMTP stand-in: records sent messages, failing the first sends as configured
+     */
+    private static final class StubMailSender extends JavaMailSenderImpl {
+        private final List<SimpleMailMessage> sent = new CopyOnWriteArrayList<>();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        @Override
+        public void send(SimpleMailMessage message) {
+            if (failures.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+                throw new MailSendException("SMTP server unavailable");
+            }
+            sent.add(message);
+        }
+
+        @Override
+        public void send(SimpleMailMessage... messages) {
+            for (SimpleMailMessage message : messages) {
+                send(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.GrossAmount;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The open-addressing index against a HashMap fed the same rows, through its
+ * growth, trimming and copies, and the zero sum told apart from no rows
+ */
+class GrossAmountIndexTest {
+
+    @Test
+    void sumsMatchAHashMapThroughGrowthAndTrim() {
+        GrossAmountIndex index = new GrossAmountIndex(16);
+        Map<String, Double> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int row = 0; row < 50000; row++) {
+            String policyNumber = policyNumber(random.nextInt(20000));
+            double amount = random.nextInt(1000);
+            index.add(policyNumber, amount);
+            expected.merge(policyNumber, amount, Double::sum);
+        }
+
+        assertSums(expected, index);
+        index.trim();
+        assertSums(expected, index);
+        assertEquals(GrossAmount.noRows(), index.get(policyNumber(20000)));
+    }
+
+    @Test
+    void zeroSumIsToldFromNoRows() {
+        GrossAmountIndex index = new GrossAmountIndex(16);
+        index.add(policyNumber(1), 0.0);
+        index.add(policyNumber(2), 150.0);
+        index.add(policyNumber(2), -150.0);
+
+        assertEquals(GrossAmount.of(0.0), index.get(policyNumber(1)));
+        assertEquals(GrossAmount.Status.FOUND, index.get(policyNumber(2)).getStatus());
+        assertEquals(0.0, index.get(policyNumber(2)).getAmount());
+        assertEquals(GrossAmount.Status.NO_ROWS, index.get(policyNumber(3)).getStatus());
+        assertEquals(2, index.size());
+    }
+
+    /**
+     * An incremental refresh adds to a copy while readers keep the original
+     */
+    @Test
+    void copyIsIndependentOfItsSource() {
+        GrossAmountIndex index = new GrossAmountIndex(16);
+        for (int actor = 0; actor < 100; actor++) {
+            index.add(policyNumber(actor), actor);
+        }
+        index.trim();
+
+        GrossAmountIndex copy = index.copy();
+        copy.add(policyNumber(5), 10.0);
+        for (int actor = 100; actor < 200; actor++) {
+            copy.add(policyNumber(actor), actor);
+        }
+
+        assertEquals(GrossAmount.of(5.0), index.get(policyNumber(5)));
+        assertEquals(GrossAmount.noRows(), index.get(policyNumber(150)));
+        assertEquals(100, index.size());
+        assertEquals(GrossAmount.of(15.0), copy.get(policyNumber(5)));
+        assertEquals(GrossAmount.of(150.0), copy.get(policyNumber(150)));
+        assertEquals(200, copy.size());
+    }
+
+    @Test
+    void keysOutsideLatin1AndOfOtherLengthsAreKeptApart() {
+        GrossAmountIndex index = new GrossAmountIndex(16);
+        index.add("FRŒ", 1.0);
+        index.add("FRÉ", 2.0);
+        index.add("FR", 3.0);
+        index.add("", 4.0);
+        index.add("FRŒ", 1.0);
+
+        assertEquals(GrossAmount.of(2.0), index.get("FRŒ"));
+        assertEquals(GrossAmount.of(2.0), index.get("FRÉ"));
+        assertEquals(GrossAmount.of(3.0), index.get("FR"));
+        assertEquals(GrossAmount.of(4.0), index.get(""));
+        assertEquals(GrossAmount.noRows(), index.get("FRœ"));
+        assertEquals(4, index.size());
+        assertEquals(GrossAmount.of(2.0), index.copy().get("FRŒ"));
+    }
+
+    private static void assertSums(Map<String, Double> expected, GrossAmountIndex index) {
+        assertEquals(expected.size(), index.size());
+        for (Map.Entry<String, Double> entry : expected.entrySet()) {
+            assertEquals(GrossAmount.of(entry.getValue()), index.get(entry.getKey()), entry.getKey());
+        }
+    }
+
+    private static String policyNumber(int actor) {
+        return String.format("FR%012dFR5H01", actor);
+    }
+}
@@ -0,0 +1,269 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.ActorAddress;
+import com.dailyrecycling.model.ErrorType;
+import com.dailyrecycling.model.GrossAmount;
+import com.dailyrecycling.model.PolicyEnrichment;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.rule.AddressFieldsRule;
+import com.dailyrecycling.service.rule.CorrectionRule;
+import com.dailyrecycling.service.rule.CorrectionRuleRegistry;
+import com.dailyrecycling.service.rule.GrossAmountZeroRule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reference data is prefetched through the non-blocking lookups, only as far as the
+ * detectors need it, and the corrections run on the bounded elastic scheduler
+ * rather than on the thread that completed the lookups
+ */
+class ReactiveCorrectionServiceTest {
+
+    private static final int RECORD_LENGTH = 4060;
+    private static final String POLICY_NUMBER = "FR000000000042FR5H01";
+
+    private final StubDatabaseService databaseService = new StubDatabaseService();
+    private final ThreadRecordingRule threadRecordingRule = new ThreadRecordingRule();
+    private ReactiveCorrectionService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FixedWidthParser parser = new FixedWidthParser();
+        ReflectionTestUtils.setField(parser, "recordLayout", layout());
+        parser.init();
+
+        CorrectionRuleRegistry ruleRegistry = new CorrectionRuleRegistry();
+        ReflectionTestUtils.setField(ruleRegistry, "correctionRules",
+                Arrays.asList(new AddressFieldsRule(), new GrossAmountZeroRule(), threadRecordingRule));
+        ReflectionTestUtils.setField(ruleRegistry, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(ruleRegistry, "init");
+        ErrorCorrectionService errorCorrectionService = new ErrorCorrectionService();
+        ReflectionTestUtils.setField(errorCorrectionService, "databaseService", databaseService);
+        ReflectionTestUtils.setField(errorCorrectionService, "ruleRegistry", ruleRegistry);
+
+        CorrectionResultCache cache = new CorrectionResultCache();
+        ReflectionTestUtils.setField(cache, "databaseService", databaseService);
+        ReflectionTestUtils.setField(cache, "fixedWidthParser", parser);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxBytes", 1L << 20);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofHours(24));
+        ReflectionTestUtils.setField(cache, "referenceTtl", Duration.ofMinutes(30));
+        cache.init();
+
+        service = new ReactiveCorrectionService();
+        ReflectionTestUtils.setField(service, "fixedWidthParser", parser);
+        ReflectionTestUtils.setField(service, "errorCorrectionService", errorCorrectionService);
+        ReflectionTestUtils.setField(service, "databaseService", databaseService);
+        ReflectionTestUtils.setField(service, "correctionResultCache", cache);
+    }
+
+    @Test
+    void allCorrectionsRunOnPrefetchedReferenceDataOffTheLookupThread() {
+        ReactiveCorrectionService.Result result = service.correct(record(null, "20200101", "20210101"), "ALL").block();
+
+        String corrected = result.getCorrectedRecord();
+        assertEquals("2 QUAI DE LA FOSSE", corrected.substring(3928, 3946));
+        assertEquals("NANTES", corrected.substring(4024, 4030));
+        assertEquals("20200101", corrected.substring(318, 326));
+        assertEquals("00000000000", corrected.substring(338, 349));
+        assertFalse(result.isCached());
+        assertEquals(1, databaseService.actorReferenceLookups.get());
+        assertEquals(1, databaseService.grossAmountLookups.get());
+        assertEquals(0, databaseService.blockingLookups.get());
+        assertTrue(threadRecordingRule.thread.startsWith("boundedElastic"), threadRecordingRule.thread);
+    }
+
+    @Test
+    void grossAmountIsNotFetchedWhenItsCorrectionWillNotRun() {
+        String corrected = service.correct(record(null, "20200101", "20210101"), "ADDRESS_FIELDS").block()
+                .getCorrectedRecord();
+
+        assertEquals("2 QUAI DE LA FOSSE", corrected.substring(3928, 3946));
+        assertEquals("20210101", corrected.substring(318, 326));
+        assertEquals(1, databaseService.actorReferenceLookups.get());
+        assertEquals(0, databaseService.grossAmountLookups.get());
+        assertEquals(0, databaseService.blockingLookups.get());
+    }
+
+    @Test
+    void nothingIsFetchedWhenNoDetectorNeedsReferenceData() {
+        String record = record("1 RUE DU PORT", "20200101", "20200101");
+
+        String corrected = service.correct(record, "ALL").block().getCorrectedRecord();
+
+        assertEquals(record, corrected);
+        assertEquals(0, databaseService.actorReferenceLookups.get());
+        assertEquals(0, databaseService.grossAmountLookups.get());
+        assertEquals(0, databaseService.blockingLookups.get());
+    }
+
+    @Test
+    void repeatedRecordIsAnsweredFromTheResultCacheWithoutLookups() {
+        String record = record(null, "20200101", "20210101");
+        String first = service.correct(record, "ADDRESS_FIELDS").block().getCorrectedRecord();
+
+        ReactiveCorrectionService.Result second = service.correct(record, "ADDRESS_FIELDS").block();
+
+        assertTrue(second.isCached());
+        assertEquals(first, second.getCorrectedRecord());
+        assertEquals("2 QUAI DE LA FOSSE", second.getPolicyRecord().getFirstLineAddress());
+        assertEquals(1, databaseService.actorReferenceLookups.get());
+    }
+
+    /**
+     * A rule reading data that was not prefetched falls back to one blocking lookup
+     */
+    @Test
+    void contextQueriesWhatWasNotPrefetchedOnce() {
+        PolicyEnrichment reference = new PolicyEnrichment(POLICY_NUMBER, 42L, null, "BCU42", null);
+        CorrectionContext context = CorrectionContext.prefetched(databaseService, reference);
+
+        assertEquals("BCU42", context.getBcuNumber());
+        assertEquals(0, databaseService.blockingLookups.get());
+        assertEquals(GrossAmount.of(0.0), context.getGrossAmount());
+        assertEquals(GrossAmount.of(0.0), context.getGrossAmount());
+        assertEquals(1, databaseService.blockingLookups.get());
+    }
+
+    /**
+     * The shipped layout with the policy number mapped, so records are looked up
+     */
+    private static RecordLayout layout() throws IOException {
+        String layout;
+        try (InputStream in = ReactiveCorrectionServiceTest.class.getResourceAsStream("/record-layout.csv");
+             Scanner scanner = new Scanner(in, "UTF-8").useDelimiter("\\A")) {
+            layout = scanner.next() + "\npolicyNumber,0,20,SPACES_RIGHT,true\n";
+        }
+        return RecordLayout.load(new ByteArrayInputStream(layout.getBytes(StandardCharsets.UTF_8)), RECORD_LENGTH);
+    }
+
+    /**
+     * One filler column past the layout, as columns are only read when the record extends past them
+     */
+    private static String record(String firstLineAddress, String startDate, String endDate) {
+        char[] record = new char[RECORD_LENGTH + 1];
+        Arrays.fill(record, ' ');
+        put(record, 0, POLICY_NUMBER);
+        put(record, 299, "012");
+        put(record, 310, startDate);
+        put(record, 318, endDate);
+        put(record, 338, "00000000000");
+        if (firstLineAddress != null) {
+            put(record, 3928, firstLineAddress);
+            put(record, 3960, "BAT 2");
+            put(record, 4024, "NANTES");
+            put(record, 4050, "44000");
+        }
+        return new String(record);
+    }
+
+    private static void put(char[] record, int offset, String value) {
+        value.getChars(0, value.length(), record, offset);
+    }
+
+    /**
+     * Records the thread corrections run on; runs on every record, needing no reference data
+     */
+    private static final class ThreadRecordingRule implements CorrectionRule {
+        private volatile String thread;
+
+        @Override
+        public String getName() {
+            return "THREAD";
+        }
+
+        @Override
+        public String getDescription() {
+            return "Records the correction thread";
+        }
+
+        @Override
+        public Set<ErrorType> getErrorTypes() {
+            return EnumSet.noneOf(ErrorType.class);
+        }
+
+        @Override
+        public int getCost() {
+            return COST_FIELDS;
+        }
+
+        @Override
+        public boolean requiresReferenceData() {
+            return false;
+        }
+
+        @Override
+        public boolean detect(PolicyRecord record) {
+            return true;
+        }
+
+        @Override
+        public void correct(PolicyRecord record, CorrectionContext context) {
+            thread = Thread.currentThread().getName();
+        }
+    }
+
+    /**
+     * Answers the non-blocking lookups on a parallel thread, as R2DBC completes them on
+     * its own, and counts them apart from blocking lookups
+     */
+    private static final class StubDatabaseService extends DatabaseService {
+        private final AtomicInteger actorReferenceLookups = new AtomicInteger();
+        private final AtomicInteger grossAmountLookups = new AtomicInteger();
+        private final AtomicInteger blockingLookups = new AtomicInteger();
+
+        @Override
+        public long getFailureCount() {
+            return 0;
+        }
+
+        @Override
+        public Mono<PolicyEnrichment> findActorReference(String policyNumber) {
+            return Mono.fromCallable(() -> {
+                actorReferenceLookups.incrementAndGet();
+                ActorAddress address = new ActorAddress("2 QUAI DE LA FOSSE", "ETAGE 1", "NANTES", "44000");
+                return new PolicyEnrichment(policyNumber, 42L, address, "BCU42", null);
+            }).subscribeOn(Schedulers.parallel());
+        }
+
+        @Override
+        public Mono<GrossAmount> findGrossAmount(String policyNumber) {
+            return Mono.fromCallable(() -> {
+                grossAmountLookups.incrementAndGet();
+                return GrossAmount.of(0.0);
+            }).subscribeOn(Schedulers.parallel());
+        }
+
+        @Override
+        public PolicyEnrichment getActorReferenceByPolicyNumber(String policyNumber) {
+            blockingLookups.incrementAndGet();
+            return PolicyEnrichment.notFound(policyNumber);
+        }
+
+        @Override
+        public GrossAmount getGrossAmountByPolicyNumber(String policyNumber) {
+            blockingLookups.incrementAndGet();
+            return GrossAmount.of(0.0);
+        }
+    }
+}
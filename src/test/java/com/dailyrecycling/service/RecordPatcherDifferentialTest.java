@@ -0,0 +1,220 @@
+package com.dailyrecycling.service;
+
+import com.dailyrecycling.model.PolicyField;
+import com.dailyrecycling.model.PolicyRecord;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Randomized comparison of the in-place record updates of {@link RecordPatcher}
+ * with the String.format update they replaced, kept below as {@link #formatRecord}.
+ * Records and values are random, including blanks, values longer or shorter than
+ * their column, records too short for the last columns and financing types that
+ * shift the rest of the record. A failure message names the seed to replay.
+ */
+class RecordPatcherDifferentialTest {
+
+    private static final int MIN_RECORD_LENGTH = 4060;
+    private static final int ITERATIONS = 20_000;
+    private static final long SEED = Long.getLong("differential.seed", System.nanoTime());
+
+    private static final PolicyField[] MAPPED_FIELDS = {
+            PolicyField.DURATION_OF_INSURANCE, PolicyField.POLICY_START_DATE, PolicyField.POLICY_END_DATE,
+            PolicyField.FINANCING_TYPE, PolicyField.FINANCING_RATE, PolicyField.TOTAL_PREMIUM_AMOUNT,
+            PolicyField.FIRST_LINE_ADDRESS, PolicyField.SECOND_LINE_ADDRESS, PolicyField.CITY,
+            PolicyField.POSTAL_CODE};
+
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdez -./,'éÀü";
+
+    private static FixedWidthParser parser;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        RecordLayout layout;
+        try (InputStream in = RecordPatcherDifferentialTest.class.getResourceAsStream("/record-layout.csv")) {
+            layout = RecordLayout.load(in, MIN_RECORD_LENGTH);
+        }
+        parser = new FixedWidthParser();
+        ReflectionTestUtils.setField(parser, "recordLayout", layout);
+        parser.init();
+    }
+
+    /**
+     * Sparse updates, as the correction endpoints send them
+     */
+    @Test
+    void patchedUpdatesMatchFormattedUpdates() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < ITERATIONS; i++) {
+            String original = randomRecord(random);
+            PolicyRecord updates = new PolicyRecord();
+            randomUpdates(random, updates);
+
+            assertEquals(formatRecord(original, updates), parser.updateRecord(original, updates),
+                    "seed " + SEED + ", iteration " + i);
+        }
+    }
+
+    /**
+     * Parsed records with corrections applied: every field is written back, so untouched
+     * columns get trimmed and re-padded on both paths
+     */
+    @Test
+    void patchedParsedRecordsMatchFormattedRecords() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < ITERATIONS; i++) {
+            String original = randomRecord(random);
+            PolicyRecord record = parser.parseRecord(original);
+            randomUpdates(random, record);
+
+            assertEquals(formatRecord(original, record), parser.updateRecord(original, record),
+                    "seed " + SEED + ", iteration " + i);
+        }
+    }
+
+    /**
+     * The batch path: ISO-8859-1 bytes patched without decoding untouched fields,
+     * against the formatted String re-encoded
+     */
+    @Test
+    void patchedMappedRecordsMatchFormattedRecords() {
+        Random random = new Random(SEED);
+        byte[] target = new byte[MIN_RECORD_LENGTH * 2];
+        for (int i = 0; i < ITERATIONS; i++) {
+            String original = randomRecord(random);
+            byte[] bytes = original.getBytes(StandardCharsets.ISO_8859_1);
+            MappedPolicyRecord mapped = parser.parseRecord(ByteBuffer.wrap(bytes), 0, bytes.length,
+                    StandardCharsets.ISO_8859_1);
+            PolicyRecord parsed = parser.parseRecord(original);
+            long updateSeed = random.nextLong();
+            randomUpdates(new Random(updateSeed), mapped);
+            randomUpdates(new Random(updateSeed), parsed);
+            if (!parser.canUpdateInPlace(mapped, bytes.length)) {
+                // Length-changing updates take the String path, covered above
+                continue;
+            }
+
+            boolean changed = parser.updateRecord(mapped, target);
+            byte[] expected = formatRecord(original, parsed).getBytes(StandardCharsets.ISO_8859_1);
+            byte[] actual = Arrays.copyOf(target, bytes.length);
+            assertArrayEquals(expected, actual, "seed " + SEED + ", iteration " + i);
+            assertEquals(!Arrays.equals(bytes, expected), changed, "seed " + SEED + ", iteration " + i);
+        }
+    }
+
+    private static String randomRecord(Random random) {
+        // Mostly full records, some cut short so the last columns are absent
+        int length = random.nextInt(4) == 0
+                ? MIN_RECORD_LENGTH + random.nextInt(3)
+                : MIN_RECORD_LENGTH + random.nextInt(200);
+        char[] record = new char[length];
+        for (int i = 0; i < length; i++) {
+            int pick = random.nextInt(20);
+            record[i] = pick < 4 ? ' ' : pick == 4 ? '\t' : ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        }
+        return new String(record);
+    }
+
+    private static void randomUpdates(Random random, PolicyRecord record) {
+        for (PolicyField field : MAPPED_FIELDS) {
+            if (random.nextInt(3) != 0) {
+                continue;
+            }
+            if (field == PolicyField.FINANCING_TYPE && random.nextInt(4) != 0) {
+                // Mostly the single character the column holds; otherwise the record shifts
+                field.set(record, String.valueOf(ALPHABET.charAt(random.nextInt(ALPHABET.length()))));
+            } else {
+                field.set(record, randomValue(random));
+            }
+        }
+    }
+
+    private static String randomValue(Random random) {
+        int length = random.nextInt(40);
+        StringBuilder value = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            int pick = random.nextInt(30);
+            value.append(pick < 3 ? ' ' : pick == 3 ? 'Ω' : ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return value.toString();
+    }
+
+    /**
+     * The record update as it was before {@link RecordPatcher}, one String.format per field
+     */
+    private static String formatRecord(String originalRecord, PolicyRecord updates) {
+        StringBuilder record = new StringBuilder(originalRecord);
+
+        // Update Duration of Insurance (Position 299, Length 3)
+        if (updates.getDurationOfInsurance() != null && record.length() > 302) {
+            String duration = String.format("%3s", updates.getDurationOfInsurance()).replace(' ', '0');
+            record.replace(299, 302, duration.substring(0, Math.min(3, duration.length())));
+        }
+
+        // Update Policy Start Date (Positions 310-318)
+        if (updates.getPolicyStartDate() != null && record.length() > 318) {
+            String startDate = String.format("%-8s", updates.getPolicyStartDate()).substring(0, 8);
+            record.replace(310, 318, startDate);
+        }
+
+        // Update Policy End Date (Positions 318-326)
+        if (updates.getPolicyEndDate() != null && record.length() > 326) {
+            String endDate = String.format("%-8s", updates.getPolicyEndDate()).substring(0, 8);
+            record.replace(318, 326, endDate);
+        }
+
+        // Update Financing Type (Position 124-125)
+        if (updates.getFinancingType() != null && record.length() > 125) {
+            record.replace(124, 125, updates.getFinancingType());
+        }
+
+        // Update Financing Rate (Positions 213-218)
+        if (updates.getFinancingRate() != null && record.length() > 218) {
+            String rate = String.format("%-5s", updates.getFinancingRate()).substring(0, 5);
+            record.replace(213, 218, rate);
+        }
+
+        // Update Total Premium Amount (Positions 338-349)
+        if (updates.getTotalPremiumAmount() != null && record.length() > 349) {
+            String premium = String.format("%-11s", updates.getTotalPremiumAmount()).substring(0, 11);
+            record.replace(338, 349, premium);
+        }
+
+        // Update First Line Address (Positions 3928-3960)
+        if (updates.getFirstLineAddress() != null && record.length() > 3960) {
+            String address1 = String.format("%-32s", updates.getFirstLineAddress()).substring(0, 32);
+            record.replace(3928, 3960, address1);
+        }
+
+        // Update Second Line Address (Positions 3960-3992)
+        if (updates.getSecondLineAddress() != null && record.length() > 3992) {
+            String address2 = String.format("%-32s", updates.getSecondLineAddress()).substring(0, 32);
+            record.replace(3960, 3992, address2);
+        }
+
+        // Update City (Positions 4024-4050)
+        if (updates.getCity() != null && record.length() > 4050) {
+            String city = String.format("%-26s", updates.getCity()).substring(0, 26);
+            record.replace(4024, 4050, city);
+        }
+
+        // Update Postal Code (Positions 4050-4060)
+        if (updates.getPostalCode() != null && record.length() > 4060) {
+            String postal = String.format("%-10s", updates.getPostalCode()).substring(0, 10);
+            record.replace(4050, 4060, postal);
+        }
+
+        return record.toString();
+    }
+}
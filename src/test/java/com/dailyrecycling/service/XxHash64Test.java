@@ -0,0 +1,152 @@
+package com.dailyrecycling.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link XxHash64} against the reference vectors of the xxHash sanity check, then against
+ * a byte-at-a-time transcription of the XXH64 specification for every length up to two
+ * stripes, at unaligned offsets, in both buffer byte orders and in direct buffers
+ */
+class XxHash64Test {
+
+    private static final long PRIME32 = 2654435761L;
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    /**
+     * Results published with xxHash for its generated sanity buffer
+     */
+    @Test
+    void matchesReferenceVectors() {
+        byte[] sanity = sanityBuffer(222);
+
+        assertEquals(0xEF46DB3751D8E999L, hash(sanity, 0, 0, 0));
+        assertEquals(0xAC75FDA2929B17EFL, hash(sanity, 0, 0, PRIME32));
+        assertEquals(0xE934A84ADB052768L, hash(sanity, 0, 1, 0));
+        assertEquals(0x5014607643A9B4C3L, hash(sanity, 0, 1, PRIME32));
+        assertEquals(0x8282DCC4994E35C8L, hash(sanity, 0, 14, 0));
+        assertEquals(0xC3BD6BF63DEB6DF0L, hash(sanity, 0, 14, PRIME32));
+        assertEquals(0xB641AE8CB691C174L, hash(sanity, 0, 222, 0));
+        assertEquals(0x20CB8AB7AE10C14AL, hash(sanity, 0, 222, PRIME32));
+        byte[] abc = "abc".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0x44BC2CF5AD770999L, hash(abc, 0, abc.length, 0));
+    }
+
+    /**
+     * Lengths 0 to 64 take every path: the short input, one and two stripes, and each
+     * combination of 8-byte, 4-byte and single-byte tail
+     */
+    @Test
+    void matchesSpecificationForEveryTailLengthOffsetAndByteOrder() {
+        byte[] bytes = sanityBuffer(64 + 8);
+        for (int offset = 0; offset < 8; offset++) {
+            for (int length = 0; length <= 64; length++) {
+                for (long seed : new long[] {0, PRIME32, -1}) {
+                    long expected = specification(bytes, offset, length, seed);
+                    String message = "offset " + offset + ", length " + length + ", seed " + seed;
+                    for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+                        ByteBuffer heap = ByteBuffer.wrap(bytes).order(order);
+                        assertEquals(expected, XxHash64.hash(heap, offset, length, seed), message + ", heap " + order);
+                        assertEquals(0, heap.position());
+
+                        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).order(order);
+                        direct.put(bytes).position(3);
+                        assertEquals(expected, XxHash64.hash(direct, offset, length, seed), message + ", direct " + order);
+                        assertEquals(3, direct.position());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A range in the middle of a larger buffer hashes like the same bytes on their own
+     */
+    @Test
+    void rangeHashesLikeACopyOfIt() {
+        byte[] bytes = sanityBuffer(4096);
+        byte[] range = new byte[1000];
+        System.arraycopy(bytes, 1234, range, 0, range.length);
+
+        assertEquals(hash(range, 0, range.length, 7), hash(bytes, 1234, range.length, 7));
+    }
+
+    private static long hash(byte[] bytes, int offset, int length, long seed) {
+        return XxHash64.hash(ByteBuffer.wrap(bytes), offset, length, seed);
+    }
+
+    /**
+     * The sanity buffer of the xxHash tests: the top byte of a multiplicative sequence
+     */
+    private static byte[] sanityBuffer(int length) {
+        byte[] buffer = new byte[length];
+        long generator = PRIME32;
+        for (int i = 0; i < length; i++) {
+            buffer[i] = (byte) (generator >>> 56);
+            generator *= 0x9E3779B185EBCA8DL;
+        }
+        return buffer;
+    }
+
+    /**
+     * XXH64 as the specification words it, reading every lane byte by byte in little-endian order
+     */
+    private static long specification(byte[] bytes, int offset, int length, long seed) {
+        int end = offset + length;
+        int i = offset;
+        long acc;
+        if (length >= 32) {
+            long[] lanes = {seed + PRIME1 + PRIME2, seed + PRIME2, seed, seed - PRIME1};
+            while (end - i >= 32) {
+                for (int lane = 0; lane < 4; lane++) {
+                    lanes[lane] = round(lanes[lane], littleEndian(bytes, i, 8));
+                    i += 8;
+                }
+            }
+            acc = Long.rotateLeft(lanes[0], 1) + Long.rotateLeft(lanes[1], 7)
+                    + Long.rotateLeft(lanes[2], 12) + Long.rotateLeft(lanes[3], 18);
+            for (long lane : lanes) {
+                acc = (acc ^ round(0, lane)) * PRIME1 + PRIME4;
+            }
+        } else {
+            acc = seed + PRIME5;
+        }
+        acc += length;
+        while (end - i >= 8) {
+            acc = Long.rotateLeft(acc ^ round(0, littleEndian(bytes, i, 8)), 27) * PRIME1 + PRIME4;
+            i += 8;
+        }
+        if (end - i >= 4) {
+            acc = Long.rotateLeft(acc ^ littleEndian(bytes, i, 4) * PRIME1, 23) * PRIME2 + PRIME3;
+            i += 4;
+        }
+        while (i < end) {
+            acc = Long.rotateLeft(acc ^ (bytes[i] & 0xFFL) * PRIME5, 11) * PRIME1;
+            i++;
+        }
+        acc = (acc ^ (acc >>> 33)) * PRIME2;
+        acc = (acc ^ (acc >>> 29)) * PRIME3;
+        return acc ^ (acc >>> 32);
+    }
+
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input * PRIME2, 31) * PRIME1;
+    }
+
+    private static long littleEndian(byte[] bytes, int index, int size) {
+        long value = 0;
+        for (int b = size - 1; b >= 0; b--) {
+            value = value << 8 | (bytes[index + b] & 0xFFL);
+        }
+        return value;
+    }
+}
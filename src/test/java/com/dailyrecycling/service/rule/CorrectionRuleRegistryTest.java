@@ -0,0 +1,179 @@
+package com.dailyrecycling.service.rule;
+
+import com.dailyrecycling.model.ErrorType;
+import com.dailyrecycling.model.PolicyEnrichment;
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.CorrectionContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Cost ordering, lookup by name or error type, and the detector counters of the rule registry
+ */
+class CorrectionRuleRegistryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void rulesRunCheapestFirstKeepingRegistrationOrderOnTies() {
+        TestRule lookup = new TestRule("LOOKUP", CorrectionRule.COST_ACTOR_REFERENCE, record -> true);
+        TestRule fieldsA = new TestRule("FIELDS_A", CorrectionRule.COST_FIELDS, record -> true);
+        TestRule notify = new TestRule("NOTIFY", CorrectionRule.COST_NOTIFICATION, record -> true);
+        TestRule fieldsB = new TestRule("FIELDS_B", CorrectionRule.COST_FIELDS, record -> true);
+        CorrectionRuleRegistry registry = registry(lookup, fieldsA, notify, fieldsB);
+
+        List<String> order = new ArrayList<>();
+        for (CorrectionRuleRegistry.Registration registration : registry.getRules()) {
+            order.add(registration.getRule().getName());
+        }
+        assertEquals(Arrays.asList("FIELDS_A", "FIELDS_B", "NOTIFY", "LOOKUP"), order);
+        assertEquals(Arrays.asList("FIELDS_A", "FIELDS_B", "NOTIFY", "LOOKUP"),
+                new ArrayList<>(registry.getDescriptions().keySet()));
+    }
+
+    @Test
+    void ruleIsFoundByNameOrErrorTypeIgnoringCase() {
+        TestRule address = new TestRule("ADDRESS", CorrectionRule.COST_FIELDS, record -> true,
+                ErrorType.CITY_NULL, ErrorType.POSTAL_CODE_NULL);
+        CorrectionRuleRegistry registry = registry(address);
+
+        assertSame(address, registry.find("address").getRule());
+        assertSame(address, registry.find("City_Null").getRule());
+        assertSame(address, registry.get("POSTAL_CODE_NULL").getRule());
+        assertNull(registry.find("ALL"));
+        assertNull(registry.find(null));
+        assertThrows(IllegalArgumentException.class, () -> registry.get("ALL"));
+    }
+
+    @Test
+    void twoRulesForOneErrorTypeAreRejected() {
+        TestRule first = new TestRule("FIRST", CorrectionRule.COST_FIELDS, record -> true, ErrorType.CITY_NULL);
+        TestRule second = new TestRule("SECOND", CorrectionRule.COST_FIELDS, record -> true, ErrorType.CITY_NULL);
+
+        assertThrows(IllegalStateException.class, () -> registry(first, second));
+    }
+
+    /**
+     * Hits and misses are disjoint, so the two series of the counter add up to the records checked
+     */
+    @Test
+    void detectionsAreCountedAsHitsAndMisses() {
+        TestRule rule = new TestRule("BLANK_CITY", CorrectionRule.COST_FIELDS, record -> record.getCity() == null);
+        CorrectionRuleRegistry registry = registry(rule);
+        CorrectionRuleRegistry.Registration registration = registry.get("BLANK_CITY");
+
+        for (int i = 0; i < 10; i++) {
+            PolicyRecord record = new PolicyRecord();
+            record.setCity(i < 3 ? null : "LYON");
+            registration.detectAndCorrect(record, context());
+        }
+        registration.correct(new PolicyRecord(), context());
+
+        assertEquals(3, detections("BLANK_CITY", "hit"));
+        assertEquals(7, detections("BLANK_CITY", "miss"));
+        Map<String, Object> stats = registry.getStats().get(0);
+        assertEquals(10L, stats.get("evaluated"));
+        assertEquals(3L, stats.get("detected"));
+        assertEquals(0.3, (Double) stats.get("hitRate"), 1e-9);
+        assertEquals(1L, stats.get("forced"));
+        assertEquals(4L, stats.get("corrections"));
+        assertEquals(4, rule.corrected);
+    }
+
+    @Test
+    void correctionIsRecordedInTheContextOnlyWhenTheDetectorFires() {
+        TestRule rule = new TestRule("BLANK_CITY", CorrectionRule.COST_FIELDS, record -> record.getCity() == null);
+        CorrectionRuleRegistry.Registration registration = registry(rule).get("BLANK_CITY");
+        PolicyRecord clean = new PolicyRecord();
+        clean.setCity("LYON");
+
+        CorrectionContext missed = context();
+        registration.detectAndCorrect(clean, missed);
+        CorrectionContext hit = context();
+        registration.detectAndCorrect(new PolicyRecord(), hit);
+
+        assertEquals(0, missed.getAppliedRules().size());
+        assertEquals(Arrays.asList("BLANK_CITY"), hit.getAppliedRules());
+    }
+
+    private CorrectionRuleRegistry registry(CorrectionRule... rules) {
+        CorrectionRuleRegistry registry = new CorrectionRuleRegistry();
+        ReflectionTestUtils.setField(registry, "correctionRules", Arrays.asList(rules));
+        ReflectionTestUtils.setField(registry, "meterRegistry", meterRegistry);
+        registry.init();
+        return registry;
+    }
+
+    private double detections(String rule, String result) {
+        return meterRegistry.get("recycling.rule.detections").tag("rule", rule).tag("result", result)
+                .functionCounter().count();
+    }
+
+    private static CorrectionContext context() {
+        return CorrectionContext.prefetched(PolicyEnrichment.notFound(null));
+    }
+
+    private static final class TestRule implements CorrectionRule {
+        private final String name;
+        private final int cost;
+        private final Predicate<PolicyRecord> detector;
+        private final Set<ErrorType> errorTypes;
+        private int corrected;
+
+        private TestRule(String name, int cost, Predicate<PolicyRecord> detector, ErrorType... errorTypes) {
+            this.name = name;
+            this.cost = cost;
+            this.detector = detector;
+            this.errorTypes = errorTypes.length == 0 ? EnumSet.noneOf(ErrorType.class) : EnumSet.copyOf(Arrays.asList(errorTypes));
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getDescription() {
+            return name;
+        }
+
+        @Override
+        public Set<ErrorType> getErrorTypes() {
+            return errorTypes;
+        }
+
+        @Override
+        public int getCost() {
+            return cost;
+        }
+
+        @Override
+        public boolean requiresReferenceData() {
+            return false;
+        }
+
+        @Override
+        public boolean detect(PolicyRecord record) {
+            return detector.test(record);
+        }
+
+        @Override
+        public void correct(PolicyRecord record, CorrectionContext context) {
+            corrected++;
+        }
+    }
+}
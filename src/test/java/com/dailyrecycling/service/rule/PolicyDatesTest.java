@@ -0,0 +1,117 @@
+package com.dailyrecycling.service.rule;
+
+import com.dailyrecycling.model.PolicyRecord;
+import com.dailyrecycling.service.FixedWidthParser;
+import com.dailyrecycling.service.MappedPolicyRecord;
+import com.dailyrecycling.service.RecordLayout;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The arithmetic epoch-day conversion against {@link LocalDate} for every
+ * year, month and day a yyyyMMdd column can hold, and the sign of durations
+ * on parsed and memory-mapped records
+ */
+class PolicyDatesTest {
+
+    private static final int RECORD_LENGTH = 4060;
+
+    private static FixedWidthParser parser;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        RecordLayout layout;
+        try (InputStream in = PolicyDatesTest.class.getResourceAsStream("/record-layout.csv")) {
+            layout = RecordLayout.load(in, RECORD_LENGTH);
+        }
+        parser = new FixedWidthParser();
+        ReflectionTestUtils.setField(parser, "recordLayout", layout);
+        ReflectionTestUtils.invokeMethod(parser, "init");
+    }
+
+    /**
+     * Months 0 to 13 and days 0 to 32 of every year 0000 to 9999: valid dates match
+     * LocalDate.toEpochDay(), every other combination is invalid
+     */
+    @Test
+    void epochDayMatchesLocalDateForEveryDate() {
+        for (int year = 0; year <= 9999; year++) {
+            for (int month = 0; month <= 13; month++) {
+                for (int day = 0; day <= 32; day++) {
+                    int date = year * 10000 + month * 100 + day;
+                    assertEquals(localEpochDay(year, month, day), PolicyDates.epochDay(date), () -> String.valueOf(date));
+                }
+            }
+        }
+    }
+
+    @Test
+    void leapDaysFollowTheGregorianRules() {
+        assertEquals(PolicyDates.INVALID, PolicyDates.epochDay(19000229));
+        assertEquals(LocalDate.of(2000, 2, 29).toEpochDay(), PolicyDates.epochDay(20000229));
+        assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), PolicyDates.epochDay(20240229));
+        assertEquals(PolicyDates.INVALID, PolicyDates.epochDay(20230229));
+        assertEquals(PolicyDates.INVALID, PolicyDates.epochDay(21000229));
+        assertEquals(PolicyDates.INVALID, PolicyDates.epochDay(20000230));
+        assertEquals(0, PolicyDates.epochDay(19700101));
+        assertEquals(-1, PolicyDates.epochDay(19691231));
+    }
+
+    @Test
+    void malformedDatesAreInvalid() {
+        assertEquals(PolicyDates.INVALID, PolicyDates.epochDay(MappedPolicyRecord.NO_DATE));
+        assertEquals(PolicyDates.INVALID, PolicyDates.epochDay(20241301));
+        assertEquals(PolicyDates.INVALID, PolicyDates.epochDay(20240001));
+        assertEquals(PolicyDates.INVALID, PolicyDates.epochDay(20240100));
+        assertEquals(PolicyDates.INVALID, PolicyDates.epochDay(20240431));
+        assertEquals(PolicyDates.INVALID, PolicyDates.epochDay(20240832));
+    }
+
+    /**
+     * Positive when the policy ends after it starts, negative when it starts after it ends
+     */
+    @Test
+    void durationIsSignedOnParsedAndMappedRecords() {
+        assertDuration(365, "20230101", "20240101");
+        assertDuration(-365, "20240101", "20230101");
+        assertDuration(-366, "20250101", "20240101");
+        assertDuration(0, "20240229", "20240229");
+        assertDuration(1, "20000228", "20000229");
+        assertDuration(36523, "19000101", "19991231");
+        assertDuration(PolicyDates.INVALID, "20240101", "20240230");
+        assertDuration(PolicyDates.INVALID, "2024010A", "20250101");
+        assertDuration(PolicyDates.INVALID, "        ", "20250101");
+    }
+
+    private static void assertDuration(long expected, String start, String end) {
+        char[] chars = new char[RECORD_LENGTH];
+        Arrays.fill(chars, ' ');
+        start.getChars(0, 8, chars, 310);
+        end.getChars(0, 8, chars, 318);
+        String record = new String(chars);
+
+        PolicyRecord parsed = parser.parseRecord(record);
+        assertEquals(expected, PolicyDates.duration(parsed), start + "-" + end + " parsed");
+        byte[] bytes = record.getBytes(StandardCharsets.ISO_8859_1);
+        PolicyRecord mapped = parser.parseRecord(ByteBuffer.wrap(bytes), 0, bytes.length, StandardCharsets.ISO_8859_1);
+        assertEquals(expected, PolicyDates.duration(mapped), start + "-" + end + " mapped");
+    }
+
+    private static long localEpochDay(int year, int month, int day) {
+        if (month < 1 || month > 12 || day < 1 || day > YearMonth.of(year, month).lengthOfMonth()) {
+            return PolicyDates.INVALID;
+        }
+        return LocalDate.of(year, month, day).toEpochDay();
+    }
+}